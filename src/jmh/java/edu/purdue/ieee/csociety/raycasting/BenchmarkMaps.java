@@ -0,0 +1,74 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.world.ArrayGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.GeneratedGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.GridMap;
+
+import java.util.Random;
+
+/**
+ * Maps and camera placements for benchmarking traversal, by name
+ */
+final class BenchmarkMaps {
+
+    private static final int SIZE = 2048;
+
+    /**
+     * Spacing of the walls of the rooms of the corridor map
+     */
+    private static final int ROOM_SIZE = 8;
+
+    private BenchmarkMaps() {}
+
+    /**
+     * Creates a map
+     *
+     * @param name OPEN for scattered settlements in open space, CORRIDORS for a grid of small rooms joined by doors
+     * @return The map, held in memory
+     */
+    static ArrayGridMap create(String name) {
+        switch (name) {
+            case "OPEN":
+                return ArrayGridMap.copyOf(new GeneratedGridMap(SIZE, SIZE, true));
+            case "CORRIDORS":
+                ArrayGridMap map = new ArrayGridMap(SIZE, SIZE);
+                for (int y = 0; y < SIZE; y++) {
+                    for (int x = 0; x < SIZE; x++) {
+                        boolean border = x == 0 || y == 0 || x == SIZE - 1 || y == SIZE - 1;
+                        boolean wall = x % ROOM_SIZE == 0 && y % ROOM_SIZE != ROOM_SIZE / 2 ||
+                                y % ROOM_SIZE == 0 && x % ROOM_SIZE != ROOM_SIZE / 2;
+                        if (border || wall) {
+                            map.setTile(x, y, 1 + (x + y) % 7);
+                        }
+                    }
+                }
+                return map;
+            default:
+                throw new IllegalArgumentException("Unknown map " + name);
+        }
+    }
+
+    /**
+     * Picks camera placements in empty cells of a map, the same for every run
+     *
+     * @param map   The map
+     * @param count The number of placements
+     * @return The placements, as x, y and angle triples
+     */
+    static double[] cameras(GridMap map, int count) {
+        Random random = new Random(42);
+        double[] cameras = new double[count * 3];
+        for (int i = 0; i < count; i++) {
+            double x;
+            double y;
+            do {
+                x = 1 + random.nextDouble() * (map.getWidth() - 2);
+                y = 1 + random.nextDouble() * (map.getHeight() - 2);
+            } while (map.getTile((int) x, (int) y) != 0);
+            cameras[i * 3] = x;
+            cameras[i * 3 + 1] = y;
+            cameras[i * 3 + 2] = random.nextDouble() * 2 * Math.PI;
+        }
+        return cameras;
+    }
+}
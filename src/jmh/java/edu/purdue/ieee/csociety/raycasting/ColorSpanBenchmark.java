@@ -0,0 +1,149 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.ColorUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ColorUtils}'s span operations against calling its scalar forms of the same operations a pixel at a
+ * time, in pixels per microsecond, over a span the height of a tall column
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ColorSpanBenchmark {
+
+    private static final int LENGTH = 2048;
+
+    private static final int FOG_COLOR = ColorUtils.color(150, 190, 230);
+
+    private int[] source;
+
+    private int[] pixels;
+
+    private byte[] indices;
+
+    private int[] palette;
+
+    private int light;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        source = new int[LENGTH];
+        pixels = new int[LENGTH];
+        indices = new byte[LENGTH];
+        palette = new int[256];
+        for (int i = 0; i < LENGTH; i++) {
+            source[i] = random.nextInt();
+            pixels[i] = random.nextInt();
+            indices[i] = (byte) random.nextInt();
+        }
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = random.nextInt();
+        }
+    }
+
+    /**
+     * Varies the light level between calls, so a span stays the same colors rather than fading to black
+     */
+    private int nextLight() {
+        light = light + 1 & ColorUtils.MAX_LIGHT;
+        return light | 0x80;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int[] shadeScalar() {
+        int light = nextLight();
+        int[] pixels = this.pixels;
+        for (int i = 0; i < LENGTH; i++) {
+            pixels[i] = ColorUtils.shade(pixels[i], light);
+        }
+        return pixels;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int[] shadeTable() {
+        int light = nextLight();
+        int[] pixels = this.pixels;
+        for (int i = 0; i < LENGTH; i++) {
+            int color = pixels[i];
+            pixels[i] = ColorUtils.color(
+                    ColorUtils.shadeChannel(ColorUtils.getRed(color), light),
+                    ColorUtils.shadeChannel(ColorUtils.getGreen(color), light),
+                    ColorUtils.shadeChannel(ColorUtils.getBlue(color), light),
+                    ColorUtils.getAlpha(color));
+        }
+        return pixels;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int[] shadeSpan() {
+        ColorUtils.shade(pixels, 0, LENGTH, nextLight());
+        return pixels;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int[] fogScalar() {
+        System.arraycopy(source, 0, pixels, 0, LENGTH);
+        int amount = nextLight();
+        int[] pixels = this.pixels;
+        for (int i = 0; i < LENGTH; i++) {
+            pixels[i] = ColorUtils.fog(pixels[i], FOG_COLOR, amount);
+        }
+        return pixels;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int[] fogSpan() {
+        System.arraycopy(source, 0, pixels, 0, LENGTH);
+        ColorUtils.fog(pixels, 0, LENGTH, FOG_COLOR, nextLight());
+        return pixels;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int[] blendScalar() {
+        int[] source = this.source;
+        int[] pixels = this.pixels;
+        for (int i = 0; i < LENGTH; i++) {
+            pixels[i] = ColorUtils.blend(source[i], pixels[i]);
+        }
+        return pixels;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int[] blendSpan() {
+        ColorUtils.blend(source, 0, pixels, 0, LENGTH);
+        return pixels;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int[] lookUpScalar() {
+        byte[] indices = this.indices;
+        int[] pixels = this.pixels;
+        for (int i = 0; i < LENGTH; i++) {
+            pixels[i] = palette[indices[i] & 0xFF];
+        }
+        return pixels;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int[] lookUpSpan() {
+        ColorUtils.lookUp(indices, 0, palette, pixels, 0, LENGTH);
+        return pixels;
+    }
+}
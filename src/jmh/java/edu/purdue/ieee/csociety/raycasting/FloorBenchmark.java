@@ -0,0 +1,65 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.world.ArrayGridMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of a frame filled with textured floor and ceiling against one filled with textured wall, at
+ * 1080p. The open scene is a large empty room seen from its center, so walls are a thin band at the horizon; the walled
+ * scene is a single cell, so walls cover every pixel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FloorBenchmark {
+
+    private static final int WIDTH = 1920;
+
+    private static final int HEIGHT = 1080;
+
+    @Param({"OPEN", "WALLED"})
+    public String scene;
+
+    private AJRaycaster raycaster;
+
+    private IntBuffer output;
+
+    private int[] columnPixels;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int size = scene.equals("OPEN") ? 256 : 3;
+        ArrayGridMap map = new ArrayGridMap(size, size);
+        for (int i = 0; i < size; i++) {
+            map.setTile(i, 0, 1);
+            map.setTile(i, size - 1, 2);
+            map.setTile(0, i, 3);
+            map.setTile(size - 1, i, 4);
+        }
+        raycaster = new AJRaycaster();
+        raycaster.setMap(map);
+        raycaster.setTextures(TextureAtlas.generate(64, 16));
+        raycaster.setFloorTexture(2);
+        raycaster.setCeilingTexture(7);
+        raycaster.setViewportSize(WIDTH, HEIGHT);
+        raycaster.setCamera(size / 2.0 + 0.1, size / 2.0 + 0.2, 0.3, raycaster.getFov());
+        output = IntBuffer.allocate(WIDTH * HEIGHT);
+        columnPixels = new int[HEIGHT];
+    }
+
+    @Benchmark
+    public IntBuffer fillFrame() {
+        //  Move the camera a little so the per-frame tables are rebuilt, as they would be while walking
+        raycaster.setCamera(raycaster.getCameraX(), raycaster.getCameraY(), 0.3, raycaster.getFov());
+        raycaster.startFrame();
+        output.clear();
+        raycaster.fillStrips(output, columnPixels, 0, WIDTH);
+        return output;
+    }
+}
@@ -0,0 +1,51 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of raycasting a full frame through the {@link HeadlessRenderer}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameBenchmark {
+
+    @Param({"RendererTestRaycaster", "NOPRaycaster", "AJRaycaster"})
+    public String raycasterName;
+
+    @Param({"640x480", "1280x720", "1920x1080", "2560x1440", "3840x2160"})
+    public String resolution;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int workers;
+
+    private HeadlessRenderer renderer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        renderer = new HeadlessRenderer(Main.createRaycaster(raycasterName));
+        renderer.setWorkerCount(workers);
+        //  Every frame is cast in full, as if the camera moved every frame
+        renderer.setDirtyTracking(false);
+        renderer.init(Resolutions.width(resolution), Resolutions.height(resolution));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        renderer.destroy();
+    }
+
+    @Benchmark
+    public IntBuffer renderFrame() {
+        renderer.startFrame();
+        renderer.renderFrame();
+        renderer.finishFrame();
+        return renderer.getFramebuffer();
+    }
+}
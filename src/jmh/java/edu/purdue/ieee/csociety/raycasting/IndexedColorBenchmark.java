@@ -0,0 +1,97 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.ColorUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link AJRaycaster}'s frames cast in RGBA against frames cast as palette indices, in microseconds per
+ * frame, with walls textured and floors flat as indexed strips draw them. Frames are cast into direct buffers like the
+ * renderer's upload buffers. {@link #presentIndexed()} is the cost of looking an indexed frame up to RGBA on the CPU,
+ * as the headless renderer does; a windowed renderer does it on the GPU instead
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IndexedColorBenchmark {
+
+    private static final int WIDTH = 1280;
+
+    private static final int HEIGHT = 720;
+
+    private static final int CAMERA_COUNT = 64;
+
+    private AJRaycaster raycaster;
+
+    private double[] cameras;
+
+    private int camera;
+
+    private IntBuffer pixels;
+
+    private ByteBuffer indices;
+
+    private int[] columnPixels;
+
+    private byte[] columnIndices;
+
+    private int[] colors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        raycaster = new AJRaycaster();
+        raycaster.setMap(BenchmarkMaps.create("CORRIDORS"));
+        raycaster.setTextures(TextureAtlas.generate(64, 16));
+        raycaster.setIndexedColor(true);
+        raycaster.setViewportSize(WIDTH, HEIGHT);
+        cameras = BenchmarkMaps.cameras(raycaster.getMap(), CAMERA_COUNT);
+        pixels = ByteBuffer.allocateDirect(WIDTH * HEIGHT * Integer.BYTES).order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+        indices = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+        columnPixels = new int[HEIGHT];
+        columnIndices = new byte[HEIGHT];
+        colors = raycaster.getPalette().getColors();
+    }
+
+    private void nextCamera() {
+        raycaster.setCamera(cameras[camera * 3], cameras[camera * 3 + 1], cameras[camera * 3 + 2],
+                raycaster.getFov());
+        camera = (camera + 1) % CAMERA_COUNT;
+        raycaster.startFrame();
+    }
+
+    @Benchmark
+    public IntBuffer castRgba() {
+        nextCamera();
+        pixels.clear();
+        raycaster.fillStrips(pixels, columnPixels, 0, WIDTH);
+        return pixels;
+    }
+
+    @Benchmark
+    public ByteBuffer castIndexed() {
+        nextCamera();
+        indices.clear();
+        raycaster.fillIndexedStrips(indices, columnIndices, 0, WIDTH);
+        return indices;
+    }
+
+    @Benchmark
+    public IntBuffer presentIndexed() {
+        indices.clear();
+        pixels.clear();
+        for (int x = 0; x < WIDTH; x++) {
+            indices.get(columnIndices);
+            ColorUtils.lookUp(columnIndices, 0, colors, columnPixels, 0, HEIGHT);
+            pixels.put(columnPixels);
+        }
+        return pixels;
+    }
+}
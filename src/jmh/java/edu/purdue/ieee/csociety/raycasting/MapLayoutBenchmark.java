@@ -0,0 +1,83 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.world.ArrayGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.TileLayout;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link AJRaycaster}'s traversal over maps stored in each {@link TileLayout}, in columns per second, from
+ * maps that fit in L2 up to ones far larger than the last level cache. Walls are scattered thinly and empty-space
+ * skipping is off, so every ray steps through a couple of hundred cells from a random point on the map. Run with
+ * {@code -prof perfnorm} on Linux to see the cache misses per column behind the differences
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Thread)
+public class MapLayoutBenchmark {
+
+    private static final int WIDTH = 640;
+
+    private static final int HEIGHT = 480;
+
+    private static final int CAMERA_COUNT = 256;
+
+    /**
+     * Fraction of cells that are walls
+     */
+    private static final double WALL_DENSITY = 0.005;
+
+    @Param({"256", "1024", "4096", "16384"})
+    public int size;
+
+    @Param({"ROW_MAJOR", "MORTON", "BRICK"})
+    public TileLayout layout;
+
+    private AJRaycaster raycaster;
+
+    private double[] cameras;
+
+    private int camera;
+
+    private int[] columnPixels;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ArrayGridMap map = new ArrayGridMap(size, size, layout);
+        Random random = new Random(42);
+        long wallCount = (long) (WALL_DENSITY * size * size);
+        for (long i = 0; i < wallCount; i++) {
+            map.setTile(random.nextInt(size), random.nextInt(size), 1 + random.nextInt(7));
+        }
+        for (int i = 0; i < size; i++) {
+            map.setTile(i, 0, 1);
+            map.setTile(i, size - 1, 1);
+            map.setTile(0, i, 1);
+            map.setTile(size - 1, i, 1);
+        }
+        raycaster = new AJRaycaster();
+        raycaster.setEmptySpaceSkipping(false);
+        raycaster.setMap(map);
+        raycaster.setViewportSize(WIDTH, HEIGHT);
+        cameras = BenchmarkMaps.cameras(map, CAMERA_COUNT);
+        columnPixels = new int[HEIGHT];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int[] castFrame() {
+        raycaster.setCamera(cameras[camera * 3], cameras[camera * 3 + 1], cameras[camera * 3 + 2],
+                raycaster.getFov());
+        camera = (camera + 1) % CAMERA_COUNT;
+        raycaster.startFrame();
+        for (int x = 0; x < WIDTH; x++) {
+            raycaster.castColumn(columnPixels, x);
+        }
+        return columnPixels;
+    }
+}
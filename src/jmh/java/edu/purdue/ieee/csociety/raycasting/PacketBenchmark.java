@@ -0,0 +1,68 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link AJRaycaster}'s frames cast in ray packets of several sizes against frames cast a column at a time,
+ * in columns per second. Walls are flat colored so the traversal dominates
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PacketBenchmark {
+
+    private static final int WIDTH = 640;
+
+    private static final int HEIGHT = 480;
+
+    private static final int CAMERA_COUNT = 64;
+
+    @Param({"OPEN", "CORRIDORS"})
+    public String map;
+
+    @Param({"true", "false"})
+    public boolean emptySpaceSkipping;
+
+    @Param({"1", "4", "8", "16"})
+    public int packetSize;
+
+    private AJRaycaster raycaster;
+
+    private double[] cameras;
+
+    private int camera;
+
+    private IntBuffer output;
+
+    private int[] columnPixels;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        raycaster = new AJRaycaster();
+        raycaster.setMap(BenchmarkMaps.create(map));
+        raycaster.setEmptySpaceSkipping(emptySpaceSkipping);
+        raycaster.setPacketSize(packetSize);
+        raycaster.setViewportSize(WIDTH, HEIGHT);
+        cameras = BenchmarkMaps.cameras(raycaster.getMap(), CAMERA_COUNT);
+        output = IntBuffer.allocate(WIDTH * HEIGHT);
+        columnPixels = new int[HEIGHT];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public IntBuffer castFrame() {
+        raycaster.setCamera(cameras[camera * 3], cameras[camera * 3 + 1], cameras[camera * 3 + 2],
+                raycaster.getFov());
+        camera = (camera + 1) % CAMERA_COUNT;
+        raycaster.startFrame();
+        output.clear();
+        raycaster.fillStrips(output, columnPixels, 0, WIDTH);
+        return output;
+    }
+}
@@ -0,0 +1,17 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+/**
+ * Parses benchmark resolution parameters of the form WIDTHxHEIGHT
+ */
+final class Resolutions {
+
+    private Resolutions() {}
+
+    static int width(String resolution) {
+        return Integer.parseInt(resolution.substring(0, resolution.indexOf('x')));
+    }
+
+    static int height(String resolution) {
+        return Integer.parseInt(resolution.substring(resolution.indexOf('x') + 1));
+    }
+}
@@ -0,0 +1,91 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.world.ArrayGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.SpriteSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.IntBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures sprites that all move every frame, scattered over a large empty room, at 1080p. prepareFrame moves them and
+ * culls, sorts and lays out those in view; fillFrame also draws the frame. Run with {@code -prof gc} to check that
+ * neither allocates
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpriteBenchmark {
+
+    private static final int WIDTH = 1920;
+
+    private static final int HEIGHT = 1080;
+
+    private static final int MAP_SIZE = 512;
+
+    @Param({"1000", "10000", "100000"})
+    public int spriteCount;
+
+    private AJRaycaster raycaster;
+
+    private SpriteSet sprites;
+
+    private IntBuffer output;
+
+    private int[] columnPixels;
+
+    private int frame;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ArrayGridMap map = new ArrayGridMap(MAP_SIZE, MAP_SIZE);
+        for (int i = 0; i < MAP_SIZE; i++) {
+            map.setTile(i, 0, 1);
+            map.setTile(i, MAP_SIZE - 1, 2);
+            map.setTile(0, i, 3);
+            map.setTile(MAP_SIZE - 1, i, 4);
+        }
+        sprites = new SpriteSet();
+        Random random = new Random(1);
+        for (int i = 0; i < spriteCount; i++) {
+            sprites.add(2 + random.nextDouble() * (MAP_SIZE - 4), 2 + random.nextDouble() * (MAP_SIZE - 4),
+                    random.nextInt(8), 0.75F);
+        }
+        raycaster = new AJRaycaster();
+        raycaster.setMap(map);
+        raycaster.setTextures(TextureAtlas.generate(64, 16));
+        raycaster.setSprites(sprites, TextureAtlas.generateSprites(64, 8));
+        raycaster.setViewportSize(WIDTH, HEIGHT);
+        raycaster.setCamera(MAP_SIZE / 2.0, MAP_SIZE / 2.0, 0.3, raycaster.getFov());
+        output = IntBuffer.allocate(WIDTH * HEIGHT);
+        columnPixels = new int[HEIGHT];
+    }
+
+    private void moveSprites() {
+        //  Nudge every sprite back and forth, so the spatial hash is rebuilt
+        double offset = (frame++ & 1) == 0 ? 0.01 : -0.01;
+        for (int i = 0; i < sprites.getCount(); i++) {
+            sprites.setPosition(i, sprites.getX(i) + offset, sprites.getY(i) - offset);
+        }
+    }
+
+    @Benchmark
+    public int prepareFrame() {
+        moveSprites();
+        raycaster.startFrame();
+        return raycaster.getVisibleSpriteCount();
+    }
+
+    @Benchmark
+    public IntBuffer fillFrame() {
+        moveSprites();
+        raycaster.startFrame();
+        output.clear();
+        raycaster.fillStrips(output, columnPixels, 0, WIDTH);
+        return output;
+    }
+}
@@ -0,0 +1,51 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of a single {@link Raycaster#fillStrip(int[], int)} call, cycling through the columns of a frame
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StripBenchmark {
+
+    @Param({"RendererTestRaycaster", "NOPRaycaster", "AJRaycaster"})
+    public String raycasterName;
+
+    @Param({"640x480", "1920x1080", "3840x2160"})
+    public String resolution;
+
+    private Raycaster raycaster;
+
+    private int[] columnPixels;
+
+    private int width;
+
+    private int x;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        raycaster = Main.createRaycaster(raycasterName);
+        width = Resolutions.width(resolution);
+        int height = Resolutions.height(resolution);
+        raycaster.setViewportSize(width, height);
+        raycaster.startFrame();
+        columnPixels = new int[height];
+        x = 0;
+    }
+
+    @Benchmark
+    public int[] fillStrip() {
+        raycaster.fillStrip(columnPixels, x);
+        if (++x == width) {
+            x = 0;
+        }
+        return columnPixels;
+    }
+}
@@ -0,0 +1,60 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import org.lwjgl.BufferUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of copying every column of a frame from the column array into the direct texture buffer, as
+ * {@link Renderer#renderFrame()} does, independently of any raycasting
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransferBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080", "2560x1440", "3840x2160"})
+    public String resolution;
+
+    /**
+     * The texture buffer is in native order and uploaded as packed ints. Big-endian, which would put the bytes in
+     * RGBA order but costs a byte swap on little-endian machines, is measured alongside for comparison
+     */
+    @Param({"NATIVE", "BIG_ENDIAN"})
+    public String byteOrder;
+
+    private int width;
+
+    private int[] columnPixels;
+
+    private IntBuffer renderTextureBuffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        width = Resolutions.width(resolution);
+        int height = Resolutions.height(resolution);
+        columnPixels = new int[height];
+        for (int y = 0; y < height; y++) {
+            columnPixels[y] = y * 0x01010101;
+        }
+        renderTextureBuffer = BufferUtils.createByteBuffer(height * width * Integer.BYTES).
+                order("NATIVE".equals(byteOrder) ? ByteOrder.nativeOrder() : ByteOrder.BIG_ENDIAN).
+                asIntBuffer();
+    }
+
+    @Benchmark
+    public IntBuffer transferFrame() {
+        renderTextureBuffer.rewind();
+        for (int xPos = 0; xPos < width; xPos++) {
+            renderTextureBuffer.put(columnPixels);
+        }
+        renderTextureBuffer.flip();
+        return renderTextureBuffer;
+    }
+}
@@ -0,0 +1,82 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link AJRaycaster}'s traversal with and without empty-space skipping, in columns per second. The
+ * {@code steps} and {@code rays} counters give the steps taken per ray
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TraversalBenchmark {
+
+    private static final int WIDTH = 640;
+
+    private static final int HEIGHT = 480;
+
+    private static final int CAMERA_COUNT = 64;
+
+    @Param({"OPEN", "CORRIDORS"})
+    public String map;
+
+    @Param({"true", "false"})
+    public boolean emptySpaceSkipping;
+
+    /**
+     * Traversal work done, reported as totals per iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long steps;
+
+        public long rays;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            steps = 0;
+            rays = 0;
+        }
+    }
+
+    private AJRaycaster raycaster;
+
+    private double[] cameras;
+
+    private int camera;
+
+    private int[] columnPixels;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        raycaster = new AJRaycaster();
+        raycaster.setMap(BenchmarkMaps.create(map));
+        raycaster.setEmptySpaceSkipping(emptySpaceSkipping);
+        raycaster.setViewportSize(WIDTH, HEIGHT);
+        cameras = BenchmarkMaps.cameras(raycaster.getMap(), CAMERA_COUNT);
+        columnPixels = new int[HEIGHT];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int[] castFrame(Counters counters) {
+        raycaster.setCamera(cameras[camera * 3], cameras[camera * 3 + 1], cameras[camera * 3 + 2],
+                raycaster.getFov());
+        camera = (camera + 1) % CAMERA_COUNT;
+        raycaster.startFrame();
+        long steps = 0;
+        for (int x = 0; x < WIDTH; x++) {
+            steps += raycaster.castColumn(columnPixels, x);
+        }
+        counters.steps += steps;
+        counters.rays += WIDTH;
+        return columnPixels;
+    }
+}
@@ -1,21 +1,1130 @@
 package edu.purdue.ieee.csociety.raycasting;
 
+import edu.purdue.ieee.csociety.raycasting.util.ColorUtils;
+import edu.purdue.ieee.csociety.raycasting.util.Palette;
+import edu.purdue.ieee.csociety.raycasting.world.ArrayGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.ChunkedGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.GeneratedGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.GridMap;
+import edu.purdue.ieee.csociety.raycasting.world.MappedGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.OccupancyPyramid;
+import edu.purdue.ieee.csociety.raycasting.world.ReadOnlyGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.SpriteSet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
 /**
- *
+ * A grid raycaster that finds the wall hit by each column's ray with a DDA traversal of a tile map.
+ * <p>
+ * The map is a {@link GridMap} of tiles, where 0 is empty space and any other value is a wall whose color is looked
+ * up from a table, or which is drawn with a texture from a {@link TextureAtlas} if one is set. It is only read
+ * through the interface, so a {@link MappedGridMap} is cast against straight out of its file. All trigonometry is
+ * done when the camera is set; the per-column ray tables are precomputed in {@link #setViewportSize(int, int)} and
+ * {@link #startFrame()}, so filling a strip does no trig and no allocation. Textured floors and ceilings are drawn by
+ * a {@link FloorCaster} a row at a time, after the walls of each batch of columns. Rays cross open space a block at a
+ * time using an {@link OccupancyPyramid} of the map, only stepping cell by cell near walls, and neighboring rays may
+ * be traced together in packets that share cell fetches until they spread apart. The distance to each
+ * column's wall is kept as a depth buffer, against which a {@link SpriteRenderer} draws the sprites of a
+ * {@link SpriteSet} last.
+ * <p>
+ * Strips can also be filled as indices into a {@link Palette}, lit through its colormaps: walls, floors and ceilings
+ * fade into the dark with distance, Doom style, with y-facing walls at half brightness. Indexed strips draw floors and
+ * ceilings in their flat colors and leave out sprites.
+ * <p>
+ * Moving the camera or changing the map or colors invalidates every column, so an unchanged scene is not re-cast.
+ * Anything else drawn over the output that changes between frames can invalidate columns with
+ * {@link #invalidateColumns(int, int)}.
  */
-public class AJRaycaster implements Raycaster {
+public class AJRaycaster implements ParallelRaycaster, IndexedRaycaster {
+
+    /**
+     * Number of distinct tile values
+     */
+    public static final int TILE_TYPES = 256;
+
+    private static final double DEFAULT_FOV = Math.toRadians(66);
+
+    private static final int DEFAULT_MAP_SIZE = 64;
+
+    /**
+     * Stand-in for the distance between grid lines of an axis the ray runs parallel to
+     */
+    private static final double PARALLEL_DELTA_DIST = 1e30;
+
+    /**
+     * Closest a wall may be, so the wall height stays finite
+     */
+    private static final double MIN_WALL_DISTANCE = 1e-6;
+
+    /**
+     * Number of columns whose walls are cast before their floors, ceilings and sprites are drawn
+     */
+    private static final int FLOOR_BATCH_COLUMNS = 32;
+
+    private static final double DEFAULT_SPRITE_VIEW_DISTANCE = 64;
+
+    /**
+     * Largest number of adjacent columns whose rays may be traced together
+     */
+    public static final int MAX_PACKET_SIZE = 16;
+
+    /**
+     * Distance at which indexed strips fade to the darkest light level, in tiles
+     */
+    private static final int LIGHT_FADE_DISTANCE = 24;
+
+    /**
+     * Width of the viewport (in pixels)
+     */
+    private int width;
+    /**
+     * Height of the viewport (in pixels)
+     */
+    private int height;
+
+    /**
+     * The map to cast against
+     */
+    private GridMap map;
+    /**
+     * The map as handed out, read-only if it can be edited, so every edit goes through {@link #setTile}
+     */
+    private GridMap mapView;
+    private int mapWidth;
+    private int mapHeight;
+    /**
+     * The revision of the map when the screen was last invalidated
+     */
+    private int mapRevision;
+    /**
+     * Whether rays skip over empty blocks of the map
+     */
+    private boolean emptySpaceSkipping;
+    /**
+     * Occupancy of blocks of the map, or null if rays step through every cell
+     */
+    private OccupancyPyramid pyramid;
+    /**
+     * Number of adjacent columns whose rays are traced together when filling ranges of strips, 1 for every ray alone
+     */
+    private int packetSize;
+
+    /**
+     * Wall color of each tile type, as seen from an x-facing side
+     */
+    private final int[] tileColors;
+    /**
+     * Wall color of each tile type, as seen from a y-facing side, which is shaded darker for contrast
+     */
+    private final int[] shadedTileColors;
+    private int ceilingColor;
+    private int floorColor;
+    /**
+     * Textures to draw walls with, or null to draw them in flat colors
+     */
+    private TextureAtlas textures;
+    /**
+     * Texture of the floor and ceiling, or -1 to draw them in flat colors
+     */
+    private int floorTexture;
+    private int ceilingTexture;
+    /**
+     * Draws textured floors and ceilings, or null if both are flat
+     */
+    private FloorCaster floorCaster;
+    /**
+     * Draws sprites over the walls, or null if there are none
+     */
+    private SpriteRenderer spriteRenderer;
+
+    /**
+     * Whether strips are filled as palette indices, which the indexed state below is only prepared for
+     */
+    private boolean indexedColor;
+    /**
+     * Palette indexed strips are filled with, generated when first needed
+     */
+    private Palette palette;
+    /**
+     * Palette index of each tile type's wall color
+     */
+    private final byte[] tileIndices;
+    /**
+     * Palette index of every row of the ceiling and floor, lit by its distance
+     */
+    private byte[] rowIndices;
+    /**
+     * Whether the palette indices are up to date with the colors, palette and viewport
+     */
+    private boolean indicesValid;
+
+    /**
+     * Camera position, in map tiles
+     */
+    private double posX;
+    private double posY;
+    /**
+     * Camera direction, in radians counterclockwise from the +x axis, and as a unit vector
+     */
+    private double angle;
+    private double dirX;
+    private double dirY;
+    /**
+     * Camera plane, perpendicular to the direction with a length of tan(fov / 2)
+     */
+    private double planeX;
+    private double planeY;
+    /**
+     * Whether the camera moved since the ray tables were last computed
+     */
+    private boolean cameraChanged;
+    /**
+     * Horizontal field of view, in radians
+     */
+    private double fov;
+
+    /**
+     * Position of each column on the camera plane, from -1 on the left to 1 on the right
+     */
+    private double[] cameraX;
+    /**
+     * Ray direction of each column
+     */
+    private double[] rayDirX;
+    private double[] rayDirY;
+    /**
+     * Distance along each column's ray between successive vertical and horizontal grid lines
+     */
+    private double[] deltaDistX;
+    private double[] deltaDistY;
+    /**
+     * The first row and the row after the last row of each column's wall, as last cast
+     */
+    private int[] wallTops;
+    private int[] wallBottoms;
+    /**
+     * The tile, cell and side each column's ray last hit, tile 0 where it left the map
+     */
+    private int[] hitTiles;
+    private int[] hitMapX;
+    private int[] hitMapY;
+    private boolean[] hitYSides;
+    /**
+     * Perpendicular distance to each column's wall, or infinity where the ray left the map, as last cast
+     */
+    private double[] wallDistances;
+    /**
+     * Distance along each column's ray to its next grid lines, while it is traced in a packet
+     */
+    private double[] packetSideDistX;
+    private double[] packetSideDistY;
+
+    /**
+     * The columns invalidated since they were last collected by the renderer
+     */
+    private final DirtyColumns invalidColumns;
+
+    public AJRaycaster() {
+        tileColors = new int[TILE_TYPES];
+        shadedTileColors = new int[TILE_TYPES];
+        tileIndices = new byte[TILE_TYPES];
+        rowIndices = new byte[0];
+        invalidColumns = new DirtyColumns();
+        emptySpaceSkipping = true;
+        packetSize = 1;
+        floorTexture = -1;
+        ceilingTexture = -1;
+        for (int tile = 1; tile < TILE_TYPES; tile++) {
+            //  Spread the defaults around the color wheel so neighboring tile types are distinguishable
+            int hue = tile * 97 % 360;
+            setTileColor(tile, ColorUtils.hue(hue));
+        }
+        ceilingColor = ColorUtils.gray(0x30);
+        floorColor = ColorUtils.gray(0x60);
+        setViewportSize(0, 0);
+        setMap(ArrayGridMap.copyOf(new GeneratedGridMap(DEFAULT_MAP_SIZE, DEFAULT_MAP_SIZE)));
+        setCamera(DEFAULT_MAP_SIZE / 2 + 0.5, DEFAULT_MAP_SIZE / 2 + 0.5, 0, DEFAULT_FOV);
+    }
+
+    /**
+     * Sets the map to cast against. The array is used directly, not copied, and must only be edited through
+     * {@link #setTile} afterwards
+     *
+     * @param tiles     The tiles of the map, row-major, 0 for empty space
+     * @param mapWidth  The width of the map, in tiles
+     * @param mapHeight The height of the map, in tiles
+     */
+    public void setMap(int[] tiles, int mapWidth, int mapHeight) {
+        setMap(new ArrayGridMap(tiles, mapWidth, mapHeight));
+    }
+
+    /**
+     * Sets the map to cast against. The camera is left where it is. A map held in memory must only be edited through
+     * {@link #setTile} afterwards, which keeps the raycaster's occupancy pyramid in step with it. The raycaster takes
+     * ownership of a streamed map, closing it once it is replaced or by {@link #closeMap()}
+     *
+     * @param map The map
+     */
+    public void setMap(GridMap map) {
+        if (map != this.map) {
+            closeMap();
+        }
+        this.map = map;
+        this.mapView = map instanceof ArrayGridMap ? new ReadOnlyGridMap(map) : map;
+        this.mapWidth = map.getWidth();
+        this.mapHeight = map.getHeight();
+        this.mapRevision = map.getRevision();
+        pyramid = null;
+        buildPyramid();
+        invalidate();
+    }
+
+    /**
+     * Closes the map if it is streamed, stopping its loader thread and closing its file. Chunks already loaded stay
+     * readable, and the rest read as empty. To be called once the raycaster is no longer used
+     */
+    public void closeMap() {
+        if (map instanceof ChunkedGridMap) {
+            try {
+                ((ChunkedGridMap) map).close();
+            } catch (IOException e) {
+                Main.LOGGER.warn("Unable to close map " + ((ChunkedGridMap) map).getPath(), e);
+            }
+        }
+    }
+
+    /**
+     * Sets whether rays cross empty blocks of the map in one step, using an {@link OccupancyPyramid} of the map.
+     * Mapped maps only skip chunks their file records as empty, and streamed maps are always stepped through cell by
+     * cell, since their contents aren't all known up front
+     *
+     * @param emptySpaceSkipping True to skip empty space
+     */
+    public void setEmptySpaceSkipping(boolean emptySpaceSkipping) {
+        this.emptySpaceSkipping = emptySpaceSkipping;
+        buildPyramid();
+        invalidate();
+    }
+
+    /**
+     * Sets how many adjacent columns' rays are traced through the grid together when filling ranges of strips. Rays
+     * of a packet share cell fetches while they cross the same cells, and carry on alone once they spread apart
+     *
+     * @param packetSize The number of columns per packet, a power of two up to {@value #MAX_PACKET_SIZE}, or 1 to
+     *                   trace every ray alone
+     */
+    public void setPacketSize(int packetSize) {
+        if (Integer.bitCount(packetSize) != 1 || packetSize > MAX_PACKET_SIZE) {
+            throw new IllegalArgumentException("Packet size must be a power of two up to " + MAX_PACKET_SIZE);
+        }
+        this.packetSize = packetSize;
+    }
+
+    public int getPacketSize() {
+        return packetSize;
+    }
+
+    private void buildPyramid() {
+        if (!emptySpaceSkipping || map instanceof ChunkedGridMap) {
+            pyramid = null;
+        } else if (pyramid == null) {
+            pyramid = new OccupancyPyramid(map);
+        }
+    }
+
+    /**
+     * Gets the map being cast against. A map held in memory is handed out read-only, as it may only be edited through
+     * {@link #setTile}
+     *
+     * @return The map
+     */
+    public GridMap getMap() {
+        return mapView;
+    }
+
+    /**
+     * Sets a single tile of the map. Only maps held in memory can be edited
+     *
+     * @param x    The x coordinate of the tile
+     * @param y    The y coordinate of the tile
+     * @param tile The tile type, 0 for empty space
+     * @throws UnsupportedOperationException If the map is not an {@link ArrayGridMap}
+     */
+    public void setTile(int x, int y, int tile) {
+        if (!(map instanceof ArrayGridMap)) {
+            throw new UnsupportedOperationException("Map " + map.getClass().getSimpleName() + " is read-only");
+        }
+        int oldTile = map.getTile(x, y);
+        if (oldTile != tile) {
+            ((ArrayGridMap) map).setTile(x, y, tile);
+            if (pyramid != null && (oldTile == 0) != (tile == 0)) {
+                pyramid.setOccupied(x, y, tile != 0);
+            }
+            invalidate();
+        }
+    }
+
+    public int getTile(int x, int y) {
+        return map.getTile(x, y);
+    }
+
+    public int getMapWidth() {
+        return mapWidth;
+    }
+
+    public int getMapHeight() {
+        return mapHeight;
+    }
+
+    /**
+     * Sets the wall color of a tile type
+     *
+     * @param tile  The tile type, [1, {@value #TILE_TYPES})
+     * @param color The RGBA color of walls of the tile type
+     */
+    public void setTileColor(int tile, int color) {
+        tileColors[tile] = color;
+        shadedTileColors[tile] = ColorUtils.color(
+                ColorUtils.getRed(color) / 2,
+                ColorUtils.getGreen(color) / 2,
+                ColorUtils.getBlue(color) / 2,
+                ColorUtils.getAlpha(color));
+        indicesValid = false;
+        invalidate();
+    }
+
+    public int getTileColor(int tile) {
+        return tileColors[tile];
+    }
+
+    /**
+     * Sets the textures to draw walls with. A wall is drawn with the texture of its material, or for material 0, of
+     * its tile type, counting from 1 and wrapping around the atlas
+     *
+     * @param textures The textures, or null to draw walls in flat colors
+     */
+    public void setTextures(TextureAtlas textures) {
+        this.textures = textures;
+        updateFloorCaster();
+    }
+
+    /**
+     * Sets the texture to draw the floor with. Takes effect once textures are set
+     *
+     * @param floorTexture The texture, [0, textureCount), or -1 to draw the floor in its flat color
+     */
+    public void setFloorTexture(int floorTexture) {
+        this.floorTexture = floorTexture;
+        updateFloorCaster();
+    }
+
+    /**
+     * Sets the texture to draw the ceiling with. Takes effect once textures are set
+     *
+     * @param ceilingTexture The texture, [0, textureCount), or -1 to draw the ceiling in its flat color
+     */
+    public void setCeilingTexture(int ceilingTexture) {
+        this.ceilingTexture = ceilingTexture;
+        updateFloorCaster();
+    }
+
+    private void updateFloorCaster() {
+        if (textures == null || floorTexture < 0 && ceilingTexture < 0) {
+            floorCaster = null;
+        } else {
+            floorCaster = new FloorCaster(textures, floorTexture % textures.getTextureCount(),
+                    ceilingTexture % textures.getTextureCount());
+        }
+        //  The new caster needs its row tables
+        cameraChanged = true;
+        invalidate();
+    }
+
+    public TextureAtlas getTextures() {
+        return textures;
+    }
+
+    /**
+     * Sets the sprites to draw over the walls, out to a default view distance
+     *
+     * @param sprites  The sprites, or null to draw none
+     * @param textures The textures to draw them with
+     */
+    public void setSprites(SpriteSet sprites, TextureAtlas textures) {
+        setSprites(sprites, textures, DEFAULT_SPRITE_VIEW_DISTANCE);
+    }
+
+    /**
+     * Sets the sprites to draw over the walls. The set is read at the start of every frame, so sprites may be added,
+     * moved and removed between frames, and only the columns they leave or enter are redrawn
+     *
+     * @param sprites      The sprites, or null to draw none
+     * @param textures     The textures to draw them with. A sprite's texture wraps around the atlas
+     * @param viewDistance The furthest a sprite may be from the camera and still be drawn, in tiles
+     */
+    public void setSprites(SpriteSet sprites, TextureAtlas textures, double viewDistance) {
+        spriteRenderer = sprites == null ? null : new SpriteRenderer(sprites, textures, viewDistance);
+        invalidate();
+    }
+
+    public SpriteSet getSprites() {
+        return spriteRenderer == null ? null : spriteRenderer.getSprites();
+    }
+
+    /**
+     * Gets the number of sprites drawn in the current frame
+     *
+     * @return The number of sprites in view
+     */
+    public int getVisibleSpriteCount() {
+        return spriteRenderer == null ? 0 : spriteRenderer.getVisibleCount();
+    }
+
+    public void setCeilingColor(int ceilingColor) {
+        this.ceilingColor = ceilingColor;
+        indicesValid = false;
+        invalidate();
+    }
+
+    public void setFloorColor(int floorColor) {
+        this.floorColor = floorColor;
+        indicesValid = false;
+        invalidate();
+    }
+
+    public int getCeilingColor() {
+        return ceilingColor;
+    }
+
+    public int getFloorColor() {
+        return floorColor;
+    }
+
+    /**
+     * Sets the palette to fill indexed strips with. Textures are quantized to it at the start of the next frame
+     *
+     * @param palette The palette
+     */
+    public void setPalette(Palette palette) {
+        this.palette = palette;
+        indicesValid = false;
+        invalidate();
+    }
+
+    @Override
+    public Palette getPalette() {
+        if (palette == null) {
+            palette = Palette.generate();
+        }
+        return palette;
+    }
+
+    @Override
+    public void setIndexedColor(boolean indexedColor) {
+        this.indexedColor = indexedColor;
+        invalidate();
+    }
+
+    /**
+     * Brings the palette indices of the colors, ceiling and floor rows and textures up to date, if filling indexed
+     * strips. Called at the start of every frame
+     */
+    void prepareIndexedFrame() {
+        if (!indexedColor) {
+            return;
+        }
+        Palette palette = getPalette();
+        if (textures != null && textures.getIndexedPalette() != palette) {
+            textures.quantize(palette);
+        }
+        if (indicesValid) {
+            return;
+        }
+        for (int tile = 1; tile < TILE_TYPES; tile++) {
+            tileIndices[tile] = (byte) palette.nearest(tileColors[tile]);
+        }
+        int ceilingIndex = palette.nearest(ceilingColor);
+        int floorIndex = palette.nearest(floorColor);
+        rowIndices = new byte[height];
+        for (int y = 0; y < height; y++) {
+            //  The floor and ceiling are half a tile from the camera, so a row p pixels from the horizon is
+            //  height / 2p tiles away
+            int horizonDistance = y < height / 2 ? height / 2 - y : y - height / 2;
+            long distance = ((long) height << 15) / Math.max(horizonDistance, 1);
+            rowIndices[y] = palette.getColormap(lightLevel(distance, false))[y < height / 2 ? ceilingIndex :
+                    floorIndex];
+        }
+        indicesValid = true;
+    }
+
+    /**
+     * Picks the light level of a surface in an indexed strip, fading linearly with distance
+     *
+     * @param distance The perpendicular distance of the surface, in tiles, with 16 fractional bits
+     * @param ySide    True for walls facing y, which are drawn at half brightness
+     * @return The level of the colormap to draw with, [0, {@link Palette#LIGHT_LEVELS})
+     */
+    static int lightLevel(long distance, boolean ySide) {
+        int fade = (int) Math.min(distance * Palette.LIGHT_LEVELS / ((long) LIGHT_FADE_DISTANCE << 16),
+                Palette.LIGHT_LEVELS - 1);
+        int level = Palette.LIGHT_LEVELS - 1 - fade;
+        return ySide ? Math.max((level + 1) / 2 - 1, 0) : level;
+    }
+
+    /**
+     * Gets the palette index of a tile type's wall color, as of the last {@link #prepareIndexedFrame()}
+     */
+    int getTileIndex(int tile) {
+        return tileIndices[tile] & 0xFF;
+    }
+
+    /**
+     * Gets the lit palette index of every ceiling and floor row, as of the last {@link #prepareIndexedFrame()}.
+     * Must not be modified
+     */
+    byte[] getRowIndices() {
+        return rowIndices;
+    }
+
+    /**
+     * Marks every column to be re-cast next frame
+     */
+    public void invalidate() {
+        invalidColumns.markAllDirty();
+    }
+
+    /**
+     * Marks a range of columns to be re-cast next frame
+     *
+     * @param xStart The first column of the range
+     * @param xEnd   The column after the last column of the range
+     */
+    public void invalidateColumns(int xStart, int xEnd) {
+        invalidColumns.markDirty(xStart, xEnd);
+    }
+
+    /**
+     * Places the camera. Takes effect at the start of the next frame
+     *
+     * @param posX  The x position of the camera, in map tiles
+     * @param posY  The y position of the camera, in map tiles
+     * @param angle The direction the camera faces, in radians counterclockwise from the +x axis
+     * @param fov   The horizontal field of view, in radians
+     */
+    public void setCamera(double posX, double posY, double angle, double fov) {
+        this.posX = posX;
+        this.posY = posY;
+        this.angle = angle;
+        dirX = Math.cos(angle);
+        dirY = Math.sin(angle);
+        double planeLength = Math.tan(fov / 2);
+        planeX = -dirY * planeLength;
+        planeY = dirX * planeLength;
+        this.fov = fov;
+        cameraChanged = true;
+        invalidate();
+    }
+
+    public double getCameraX() {
+        return posX;
+    }
+
+    public double getCameraY() {
+        return posY;
+    }
+
+    public double getCameraAngle() {
+        return angle;
+    }
+
+    public double getFov() {
+        return fov;
+    }
+
+    /**
+     * Places the camera at the map's spawn point, keeping the field of view
+     */
+    public void moveToSpawn() {
+        setCamera(map.getSpawnX(), map.getSpawnY(), map.getSpawnAngle(), fov);
+    }
+
     @Override
     public void setViewportSize(int width, int height) {
-        //  NOP
+        this.width = width;
+        this.height = height;
+        cameraX = new double[width];
+        for (int x = 0; x < width; x++) {
+            //  Sample through the center of each column
+            cameraX[x] = 2 * (x + 0.5) / width - 1;
+        }
+        rayDirX = new double[width];
+        rayDirY = new double[width];
+        deltaDistX = new double[width];
+        deltaDistY = new double[width];
+        wallTops = new int[width];
+        wallBottoms = new int[width];
+        hitTiles = new int[width];
+        hitMapX = new int[width];
+        hitMapY = new int[width];
+        hitYSides = new boolean[width];
+        wallDistances = new double[width];
+        packetSideDistX = new double[width];
+        packetSideDistY = new double[width];
+        invalidColumns.setWidth(width);
+        cameraChanged = true;
+        indicesValid = false;
     }
 
     @Override
     public void startFrame() {
-        //  NOP
+        if (cameraChanged) {
+            for (int x = 0; x < width; x++) {
+                double rdx = dirX + planeX * cameraX[x];
+                double rdy = dirY + planeY * cameraX[x];
+                rayDirX[x] = rdx;
+                rayDirY[x] = rdy;
+                deltaDistX[x] = rdx == 0 ? PARALLEL_DELTA_DIST : Math.abs(1 / rdx);
+                deltaDistY[x] = rdy == 0 ? PARALLEL_DELTA_DIST : Math.abs(1 / rdy);
+            }
+            if (floorCaster != null) {
+                floorCaster.setCamera(width, height, posX, posY, dirX, dirY, planeX, planeY);
+            }
+            cameraChanged = false;
+        }
+        //  Sprites may move without the camera moving
+        if (spriteRenderer != null) {
+            spriteRenderer.prepare(width, height, posX, posY, dirX, dirY, planeX, planeY);
+        }
+        prepareIndexedFrame();
+    }
+
+    @Override
+    public void collectDirtyColumns(DirtyColumns dirtyColumns) {
+        //  Chunks may have streamed in since the last frame
+        int revision = map.getRevision();
+        if (revision != mapRevision) {
+            mapRevision = revision;
+            invalidate();
+        }
+        if (spriteRenderer != null) {
+            spriteRenderer.markChangedColumns(invalidColumns);
+        }
+        dirtyColumns.addAll(invalidColumns);
+        invalidColumns.clear();
     }
 
     @Override
     public void fillStrip(int[] pixelOutput, int x) {
-        //  NOP
+        castColumn(pixelOutput, x);
+        if (floorCaster != null) {
+            floorCaster.fillColumn(pixelOutput, x, wallTops[x], wallBottoms[x]);
+        }
+        if (spriteRenderer != null) {
+            spriteRenderer.fillColumn(pixelOutput, x, wallDistances[x]);
+        }
+    }
+
+    @Override
+    public void fillStrips(IntBuffer pixelOutput, int[] columnPixels, int xStart, int xEnd) {
+        FloorCaster floorCaster = this.floorCaster;
+        SpriteRenderer spriteRenderer = this.spriteRenderer;
+        if (floorCaster == null && spriteRenderer == null) {
+            castColumns(pixelOutput, columnPixels, xStart, xEnd);
+            return;
+        }
+        //  Floors and sprites are drawn across the columns just written, while they are still in cache
+        for (int batchStart = xStart; batchStart < xEnd; batchStart += FLOOR_BATCH_COLUMNS) {
+            int batchEnd = Math.min(batchStart + FLOOR_BATCH_COLUMNS, xEnd);
+            int batchOffset = pixelOutput.position();
+            castColumns(pixelOutput, columnPixels, batchStart, batchEnd);
+            if (floorCaster != null) {
+                floorCaster.fillRows(pixelOutput, batchOffset, batchStart, batchEnd, wallTops, wallBottoms);
+            }
+            if (spriteRenderer != null) {
+                spriteRenderer.fillColumns(pixelOutput, batchOffset, batchStart, batchEnd, wallDistances);
+            }
+        }
+    }
+
+    @Override
+    public void fillIndexedStrip(byte[] pixelOutput, int x) {
+        traceColumn(x);
+        shadeIndexedColumn(pixelOutput, x);
+    }
+
+    @Override
+    public void fillIndexedStrips(ByteBuffer pixelOutput, byte[] columnPixels, int xStart, int xEnd) {
+        int packetSize = this.packetSize;
+        if (packetSize == 1) {
+            for (int x = xStart; x < xEnd; x++) {
+                traceColumn(x);
+                shadeIndexedColumn(columnPixels, x);
+                pixelOutput.put(columnPixels);
+            }
+            return;
+        }
+        for (int x = xStart; x < xEnd; x += packetSize) {
+            tracePacket(x, Math.min(x + packetSize, xEnd));
+        }
+        for (int x = xStart; x < xEnd; x++) {
+            shadeIndexedColumn(columnPixels, x);
+            pixelOutput.put(columnPixels);
+        }
+    }
+
+    /**
+     * Casts a range of columns into the output, in packets if enabled, leaving out the floors and ceilings the floor
+     * caster draws
+     */
+    private void castColumns(IntBuffer pixelOutput, int[] columnPixels, int xStart, int xEnd) {
+        int packetSize = this.packetSize;
+        if (packetSize == 1) {
+            for (int x = xStart; x < xEnd; x++) {
+                castColumn(columnPixels, x);
+                putColumn(pixelOutput, columnPixels, x);
+            }
+            return;
+        }
+        for (int x = xStart; x < xEnd; x += packetSize) {
+            tracePacket(x, Math.min(x + packetSize, xEnd));
+        }
+        for (int x = xStart; x < xEnd; x++) {
+            shadeColumn(columnPixels, x);
+            putColumn(pixelOutput, columnPixels, x);
+        }
+    }
+
+    /**
+     * Writes a shaded column to the output, except for the floor and ceiling pixels the floor caster draws over it
+     */
+    private void putColumn(IntBuffer pixelOutput, int[] columnPixels, int x) {
+        FloorCaster floorCaster = this.floorCaster;
+        if (floorCaster == null) {
+            pixelOutput.put(columnPixels);
+            return;
+        }
+        int position = pixelOutput.position();
+        int first = floorCaster.drawsCeiling() ? wallTops[x] : 0;
+        int end = floorCaster.drawsFloor() ? wallBottoms[x] : height;
+        pixelOutput.position(position + first);
+        pixelOutput.put(columnPixels, first, end - first);
+        pixelOutput.position(position + height);
+    }
+
+    /**
+     * Casts the ray of a column and fills its pixels, except for textured floors and ceilings
+     *
+     * @return The number of steps the ray took, for benchmarking
+     */
+    int castColumn(int[] pixelOutput, int x) {
+        int steps = traceColumn(x);
+        shadeColumn(pixelOutput, x);
+        return steps;
+    }
+
+    /**
+     * Finds the wall hit by the ray of a column, on its own
+     *
+     * @return The number of steps the ray took
+     */
+    private int traceColumn(int x) {
+        int mapX = (int) Math.floor(posX);
+        int mapY = (int) Math.floor(posY);
+        //  Distance along the ray to the first vertical and horizontal grid lines
+        double sideDistX = rayDirX[x] < 0 ? (posX - mapX) * deltaDistX[x] : (mapX + 1 - posX) * deltaDistX[x];
+        double sideDistY = rayDirY[x] < 0 ? (posY - mapY) * deltaDistY[x] : (mapY + 1 - posY) * deltaDistY[x];
+        return traceRay(x, mapX, mapY, sideDistX, sideDistY, false);
+    }
+
+    /**
+     * Finds the wall hit by the rays of a run of adjacent columns, stepping them through the grid together.
+     * <p>
+     * Neighboring rays start in the camera's cell and cross the same cells until they have spread a cell apart, so
+     * while every ray of the packet agrees on whether to step in x or y next, they share a cell, and it is fetched
+     * once for all of them. Only the distances along each ray differ, and advancing those is a loop over adjacent
+     * array elements. As soon as the rays disagree, or the shared cell is in an empty block that single rays would
+     * skip across, each ray carries on alone from where the packet left it, so packets find exactly the walls single
+     * rays do.
+     *
+     * @param xStart The first column of the packet
+     * @param xEnd   The column after the last column of the packet
+     * @return The number of steps taken, counting a step of the whole packet once
+     */
+    int tracePacket(int xStart, int xEnd) {
+        int mapX = (int) Math.floor(posX);
+        int mapY = (int) Math.floor(posY);
+        int mapWidth = this.mapWidth;
+        int mapHeight = this.mapHeight;
+        double[] rayDirX = this.rayDirX;
+        double[] rayDirY = this.rayDirY;
+        //  Rays stepping different ways along an axis share nothing past the first cell
+        boolean negativeX = rayDirX[xStart] < 0;
+        boolean negativeY = rayDirY[xStart] < 0;
+        boolean coherent = mapX >= 0 && mapX < mapWidth && mapY >= 0 && mapY < mapHeight;
+        for (int x = xStart + 1; x < xEnd && coherent; x++) {
+            coherent = rayDirX[x] < 0 == negativeX && rayDirY[x] < 0 == negativeY;
+        }
+        if (!coherent) {
+            int steps = 0;
+            for (int x = xStart; x < xEnd; x++) {
+                steps += traceColumn(x);
+            }
+            return steps;
+        }
+        double[] deltaDistX = this.deltaDistX;
+        double[] deltaDistY = this.deltaDistY;
+        double[] sideDistX = packetSideDistX;
+        double[] sideDistY = packetSideDistY;
+        double firstX = negativeX ? posX - mapX : mapX + 1 - posX;
+        double firstY = negativeY ? posY - mapY : mapY + 1 - posY;
+        for (int x = xStart; x < xEnd; x++) {
+            sideDistX[x] = firstX * deltaDistX[x];
+            sideDistY[x] = firstY * deltaDistY[x];
+        }
+        int stepX = negativeX ? -1 : 1;
+        int stepY = negativeY ? -1 : 1;
+        GridMap map = this.map;
+        OccupancyPyramid pyramid = this.pyramid;
+        boolean ySide = false;
+        int steps = 0;
+        while (true) {
+            int xSteps = 0;
+            for (int x = xStart; x < xEnd; x++) {
+                if (sideDistX[x] < sideDistY[x]) {
+                    xSteps++;
+                }
+            }
+            if (xSteps != 0 && xSteps != xEnd - xStart || pyramid != null && pyramid.isEmpty(1, mapX, mapY)) {
+                for (int x = xStart; x < xEnd; x++) {
+                    steps += traceRay(x, mapX, mapY, sideDistX[x], sideDistY[x], ySide);
+                }
+                return steps;
+            }
+            steps++;
+            if (xSteps != 0) {
+                for (int x = xStart; x < xEnd; x++) {
+                    sideDistX[x] += deltaDistX[x];
+                }
+                mapX += stepX;
+                ySide = false;
+            } else {
+                for (int x = xStart; x < xEnd; x++) {
+                    sideDistY[x] += deltaDistY[x];
+                }
+                mapY += stepY;
+                ySide = true;
+            }
+            int tile = 0;
+            if (mapX >= 0 && mapX < mapWidth && mapY >= 0 && mapY < mapHeight) {
+                tile = map.getTile(mapX, mapY);
+                if (tile == 0) {
+                    continue;
+                }
+            }
+            for (int x = xStart; x < xEnd; x++) {
+                recordHit(x, tile, mapX, mapY, ySide,
+                        ySide ? sideDistY[x] - deltaDistY[x] : sideDistX[x] - deltaDistX[x]);
+            }
+            return steps;
+        }
+    }
+
+    /**
+     * Steps the ray of a column through the grid until it enters a wall or leaves the map, from a cell it has
+     * reached, and records what it hit
+     *
+     * @param mapX      The x coordinate of the empty cell the ray is in
+     * @param mapY      The y coordinate of the empty cell the ray is in
+     * @param sideDistX The distance along the ray to the next vertical grid line
+     * @param sideDistY The distance along the ray to the next horizontal grid line
+     * @param ySide     True if the ray entered the cell through a horizontal grid line
+     * @return The number of steps the ray took
+     */
+    private int traceRay(int x, int mapX, int mapY, double sideDistX, double sideDistY, boolean ySide) {
+        double ddx = deltaDistX[x];
+        double ddy = deltaDistY[x];
+        int stepX = rayDirX[x] < 0 ? -1 : 1;
+        int stepY = rayDirY[x] < 0 ? -1 : 1;
+        //  Step from grid line to grid line until we enter a wall or leave the map
+        GridMap map = this.map;
+        int mapWidth = this.mapWidth;
+        int mapHeight = this.mapHeight;
+        //  The pyramid can only be queried from within the map
+        OccupancyPyramid pyramid = mapX >= 0 && mapX < mapWidth && mapY >= 0 && mapY < mapHeight ?
+                this.pyramid : null;
+        int levelCount = pyramid != null ? pyramid.getLevelCount() : 0;
+        int tile = 0;
+        int steps = 0;
+        while (true) {
+            //  Find the largest empty block around the (empty) current cell
+            int level = 0;
+            while (level < levelCount && pyramid.isEmpty(level + 1, mapX, mapY)) {
+                level++;
+            }
+            steps++;
+            if (level == 0) {
+                if (sideDistX < sideDistY) {
+                    sideDistX += ddx;
+                    mapX += stepX;
+                    ySide = false;
+                } else {
+                    sideDistY += ddy;
+                    mapY += stepY;
+                    ySide = true;
+                }
+            } else {
+                //  Jump to the cell just past the block, crossing every grid line in between at once, with the
+                //  same tie breaking as single steps so both find the same walls
+                int shift = level * OccupancyPyramid.LEVEL_SHIFT;
+                int blockStartX = mapX >> shift << shift;
+                int blockStartY = mapY >> shift << shift;
+                int blockEndX = blockStartX + (1 << shift) - 1;
+                int blockEndY = blockStartY + (1 << shift) - 1;
+                //  Distances along the ray to the block's exit through its x and y sides
+                double exitX = sideDistX + (stepX > 0 ? blockEndX - mapX : mapX - blockStartX) * ddx;
+                double exitY = sideDistY + (stepY > 0 ? blockEndY - mapY : mapY - blockStartY) * ddy;
+                if (exitX < exitY) {
+                    //  Lines of the other axis crossed first are those at or before the exit
+                    int crossed = sideDistY > exitX ? 0 : (int) ((exitX - sideDistY) / ddy) + 1;
+                    crossed = Math.min(crossed, stepY > 0 ? blockEndY - mapY : mapY - blockStartY);
+                    mapY += crossed * stepY;
+                    sideDistY += crossed * ddy;
+                    mapX = stepX > 0 ? blockEndX + 1 : blockStartX - 1;
+                    sideDistX = exitX + ddx;
+                    ySide = false;
+                } else {
+                    //  Lines of the other axis crossed first are those strictly before the exit
+                    int crossed = sideDistX >= exitY ? 0 : (int) Math.ceil((exitY - sideDistX) / ddx);
+                    crossed = Math.min(crossed, stepX > 0 ? blockEndX - mapX : mapX - blockStartX);
+                    mapX += crossed * stepX;
+                    sideDistX += crossed * ddx;
+                    mapY = stepY > 0 ? blockEndY + 1 : blockStartY - 1;
+                    sideDistY = exitY + ddy;
+                    ySide = true;
+                }
+            }
+            if (mapX < 0 || mapX >= mapWidth || mapY < 0 || mapY >= mapHeight) {
+                break;
+            }
+            tile = map.getTile(mapX, mapY);
+            if (tile != 0) {
+                break;
+            }
+        }
+        double wallDistance = Double.POSITIVE_INFINITY;
+        if (tile != 0) {
+            //  Perpendicular distance to the camera plane, which avoids fisheye distortion
+            wallDistance = ySide ? sideDistY - ddy : sideDistX - ddx;
+        }
+        recordHit(x, tile, mapX, mapY, ySide, wallDistance);
+        return steps;
+    }
+
+    private void recordHit(int x, int tile, int mapX, int mapY, boolean ySide, double wallDistance) {
+        hitTiles[x] = tile;
+        hitMapX[x] = mapX;
+        hitMapY[x] = mapY;
+        hitYSides[x] = ySide;
+        wallDistances[x] = tile != 0 ? wallDistance : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Fills the pixels of a column from the wall its ray last hit, except for textured floors and ceilings
+     */
+    private void shadeColumn(int[] pixelOutput, int x) {
+        int tile = hitTiles[x];
+        boolean ySide = hitYSides[x];
+        int drawStart = height / 2;
+        int drawEnd = drawStart;
+        if (tile != 0) {
+            double wallDistance = wallDistances[x];
+            int lineHeight = (int) Math.min(height / Math.max(wallDistance, MIN_WALL_DISTANCE), Integer.MAX_VALUE / 2);
+            drawStart = Math.max(0, height / 2 - lineHeight / 2);
+            drawEnd = Math.min(height, height / 2 + lineHeight / 2);
+            TextureAtlas textures = this.textures;
+            if (textures != null) {
+                int material = map.getMaterial(hitMapX[x], hitMapY[x]);
+                int texture = ((material != 0 ? material : tile) - 1) % textures.getTextureCount();
+                drawTexturedWall(pixelOutput, drawStart, drawEnd, lineHeight, wallDistance, rayDirX[x], rayDirY[x],
+                        ySide, textures, texture);
+            } else {
+                Arrays.fill(pixelOutput, drawStart, drawEnd, ySide ? shadedTileColors[tile] : tileColors[tile]);
+            }
+        }
+        wallTops[x] = drawStart;
+        wallBottoms[x] = drawEnd;
+        FloorCaster floorCaster = this.floorCaster;
+        if (floorCaster == null || !floorCaster.drawsCeiling()) {
+            Arrays.fill(pixelOutput, 0, drawStart, ceilingColor);
+        }
+        if (floorCaster == null || !floorCaster.drawsFloor()) {
+            Arrays.fill(pixelOutput, drawEnd, height, floorColor);
+        }
+    }
+
+    /**
+     * Fills the palette indices of a column from the wall its ray last hit
+     */
+    private void shadeIndexedColumn(byte[] pixelOutput, int x) {
+        int tile = hitTiles[x];
+        int drawStart = height / 2;
+        int drawEnd = drawStart;
+        if (tile != 0) {
+            double wallDistance = wallDistances[x];
+            int lineHeight = (int) Math.min(height / Math.max(wallDistance, MIN_WALL_DISTANCE), Integer.MAX_VALUE / 2);
+            drawStart = Math.max(0, height / 2 - lineHeight / 2);
+            drawEnd = Math.min(height, height / 2 + lineHeight / 2);
+            boolean ySide = hitYSides[x];
+            byte[] colormap = palette.getColormap(lightLevel((long) (wallDistance * 65536), ySide));
+            TextureAtlas textures = this.textures;
+            if (textures != null) {
+                int material = map.getMaterial(hitMapX[x], hitMapY[x]);
+                int texture = ((material != 0 ? material : tile) - 1) % textures.getTextureCount();
+                int level = textures.selectLevel(lineHeight);
+                int levelSize = textures.getLevelSize(level);
+                int u = wallTextureU(wallDistance, rayDirX[x], rayDirY[x], ySide, levelSize);
+                int vStep = (int) (((long) levelSize << TextureAtlas.FRACTION_BITS) / Math.max(lineHeight, 1));
+                int v = (drawStart - height / 2 + lineHeight / 2) * vStep;
+                textures.sampleIndexedColumn(pixelOutput, drawStart, drawEnd, texture, level, u, v, vStep, colormap);
+            } else {
+                Arrays.fill(pixelOutput, drawStart, drawEnd, colormap[tileIndices[tile] & 0xFF]);
+            }
+        }
+        byte[] rowIndices = this.rowIndices;
+        System.arraycopy(rowIndices, 0, pixelOutput, 0, drawStart);
+        System.arraycopy(rowIndices, drawEnd, pixelOutput, drawEnd, height - drawEnd);
+    }
+
+    /**
+     * Finds the column of a wall's texture level a ray hit
+     */
+    private int wallTextureU(double wallDistance, double rdx, double rdy, boolean ySide, int levelSize) {
+        //  Where along the wall the ray hit, [0, 1)
+        double wallX = ySide ? posX + wallDistance * rdx : posY + wallDistance * rdy;
+        wallX -= Math.floor(wallX);
+        int u = Math.min((int) (wallX * levelSize), levelSize - 1);
+        //  Keep textures reading left to right on walls facing either way
+        if (!ySide && rdx > 0 || ySide && rdy < 0) {
+            u = levelSize - 1 - u;
+        }
+        return u;
+    }
+
+    /**
+     * Samples the strip of a wall from its texture
+     */
+    private void drawTexturedWall(int[] pixelOutput, int drawStart, int drawEnd, int lineHeight, double wallDistance,
+                                  double rdx, double rdy, boolean ySide, TextureAtlas textures, int texture) {
+        int level = textures.selectLevel(lineHeight);
+        int levelSize = textures.getLevelSize(level);
+        int u = wallTextureU(wallDistance, rdx, rdy, ySide, levelSize);
+        //  Rows of the level per pixel, and the row at the first drawn pixel, in fixed point. Wall heights are capped
+        //  well below 2^31 and the starting row never exceeds the level size, so neither overflows
+        int vStep = (int) (((long) levelSize << TextureAtlas.FRACTION_BITS) / Math.max(lineHeight, 1));
+        int v = (drawStart - height / 2 + lineHeight / 2) * vStep;
+        textures.sampleColumn(pixelOutput, drawStart, drawEnd, texture, level, u, v, vStep, ySide);
     }
 }
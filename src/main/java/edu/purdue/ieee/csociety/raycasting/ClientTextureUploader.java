@@ -0,0 +1,74 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.GrowableDirectBuffer;
+
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.GL_UNSIGNED_INT_8_8_8_8;
+
+/**
+ * Uploads from a buffer in client memory. The driver copies the whole frame out of the buffer before
+ * {@code glTexSubImage2D} returns, so the calling thread stalls for the duration of the copy. The buffer's memory is
+ * kept across resizes that fit in it
+ */
+public class ClientTextureUploader implements TextureUploader {
+
+    /**
+     * Width of the viewport (in pixels)
+     */
+    private int width;
+    /**
+     * Height of the viewport (in pixels)
+     */
+    private int height;
+    /**
+     * Backs {@link #renderTextureBuffer}
+     */
+    private final GrowableDirectBuffer bufferMemory = new GrowableDirectBuffer();
+    /**
+     * The buffer containing the pixel data
+     */
+    private IntBuffer renderTextureBuffer;
+
+    @Override
+    public void setViewportSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        renderTextureBuffer = bufferMemory.resize(height * width * Integer.BYTES).asIntBuffer();
+    }
+
+    @Override
+    public IntBuffer beginFrame() {
+        renderTextureBuffer.clear();
+        return renderTextureBuffer;
+    }
+
+    @Override
+    public boolean endFrame(DirtyColumns dirtyColumns) {
+        int xEnd;
+        for (int xStart = dirtyColumns.nextDirtyColumn(0); xStart >= 0;
+             xStart = dirtyColumns.nextDirtyColumn(xEnd)) {
+            xEnd = dirtyColumns.nextCleanColumn(xStart);
+            //  LWJGL uploads from the position of the buffer
+            renderTextureBuffer.limit(xEnd * height).position(xStart * height);
+            //  We purposefully reverse width and height here because our texture is rotated 90 degrees
+            //noinspection SuspiciousNameCombination
+            glTexSubImage2D(GL_TEXTURE_2D, 0, 0, xStart, height, xEnd - xStart,
+                    GL_RGBA, GL_UNSIGNED_INT_8_8_8_8, renderTextureBuffer);
+        }
+        renderTextureBuffer.clear();
+        return true;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return bufferMemory.getAllocatedBytes();
+    }
+
+    @Override
+    public void destroy() {
+        renderTextureBuffer = null;
+        bufferMemory.release();
+    }
+}
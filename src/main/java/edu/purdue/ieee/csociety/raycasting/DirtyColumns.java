@@ -0,0 +1,116 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import java.util.BitSet;
+
+/**
+ * The set of columns of the viewport whose pixels need to be re-cast and re-uploaded.
+ * <p>
+ * Dirty columns are iterated as maximal ranges:
+ * <pre>{@code
+ * for (int xStart = dirty.nextDirtyColumn(0); xStart >= 0; xStart = dirty.nextDirtyColumn(xEnd)) {
+ *     int xEnd = dirty.nextCleanColumn(xStart);
+ *     ...
+ * }
+ * }</pre>
+ * (with xEnd declared before the loop). Marking and clearing never allocate once the set has grown to the width of
+ * the viewport.
+ */
+public class DirtyColumns {
+
+    private final BitSet columns;
+    /**
+     * Width of the viewport (in pixels)
+     */
+    private int width;
+
+    public DirtyColumns() {
+        columns = new BitSet();
+    }
+
+    /**
+     * Sets the width of the viewport and marks every column dirty
+     *
+     * @param width The width of the viewport
+     */
+    public void setWidth(int width) {
+        this.width = width;
+        columns.clear();
+        columns.set(0, width);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Marks a range of columns dirty, clipped to the viewport
+     *
+     * @param xStart The first column of the range
+     * @param xEnd   The column after the last column of the range
+     */
+    public void markDirty(int xStart, int xEnd) {
+        xStart = Math.max(xStart, 0);
+        xEnd = Math.min(xEnd, width);
+        if (xStart < xEnd) {
+            columns.set(xStart, xEnd);
+        }
+    }
+
+    /**
+     * Marks every column dirty
+     */
+    public void markAllDirty() {
+        columns.set(0, width);
+    }
+
+    /**
+     * Marks every column that is dirty in another set dirty in this one, clipped to the viewport
+     *
+     * @param other The other set
+     */
+    public void addAll(DirtyColumns other) {
+        columns.or(other.columns);
+        if (other.width > width) {
+            columns.clear(width, other.width);
+        }
+    }
+
+    /**
+     * Marks every column clean
+     */
+    public void clear() {
+        columns.clear();
+    }
+
+    public boolean isEmpty() {
+        return columns.isEmpty();
+    }
+
+    public boolean isAllDirty() {
+        return columns.nextClearBit(0) >= width;
+    }
+
+    public int getDirtyCount() {
+        return columns.cardinality();
+    }
+
+    /**
+     * Finds the first dirty column at or after the given column
+     *
+     * @param from The column to start searching from
+     * @return The dirty column, or -1 if there is none
+     */
+    public int nextDirtyColumn(int from) {
+        return columns.nextSetBit(from);
+    }
+
+    /**
+     * Finds the first clean column at or after the given column
+     *
+     * @param from The column to start searching from
+     * @return The clean column, or the width of the viewport if there is none
+     */
+    public int nextCleanColumn(int from) {
+        return Math.min(columns.nextClearBit(from), width);
+    }
+}
@@ -0,0 +1,371 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.ColorUtils;
+import edu.purdue.ieee.csociety.raycasting.world.GridMap;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * A grid raycaster that casts in 16.16 fixed-point integer math, for CPUs where floating point is slow, such as the
+ * ARM boards the project is deployed to.
+ * <p>
+ * The scene is set up exactly as for {@link AJRaycaster}, and changes to it are tracked the same way; only the casting
+ * is replaced. The camera's direction and field of view are looked up in an integer sine table of
+ * {@value #ANGLE_STEPS} steps per turn, interpolating between steps, rather than computed with trig, and the ray
+ * directions, distances between grid lines, DDA side distances, perpendicular wall distance and texture coordinates
+ * are all fixed point. The camera and ray directions are set up each frame with {@value #DIRECTION_BITS} fractional
+ * bits before being rounded to 16.16. Distances along rays are held in longs, so rays can cross maps far wider than
+ * the 32767 tiles a 16.16 int can reach.
+ * <p>
+ * Walls match those of {@link AJRaycaster} within rounding: rays that graze a corner may hit the neighboring cell,
+ * wall edges may move by a pixel, and textured walls may be sampled a texel row or so apart. Textured floors and
+ * ceilings, sprites, ray packets and empty-space skipping are only drawn or done by {@link AJRaycaster}; here floors
+ * and ceilings are flat and every ray steps cell by cell.
+ * Indexed strips are lit the same way as {@link AJRaycaster}'s, from the fixed-point wall distance.
+ */
+public class FixedPointRaycaster extends AJRaycaster {
+
+    /**
+     * Bits of the fractional part of every fixed-point value
+     */
+    public static final int FRACTION_BITS = 16;
+
+    private static final int ONE = 1 << FRACTION_BITS;
+
+    private static final int ANGLE_BITS = 12;
+
+    /**
+     * Bits of the fractional part of the sines, camera plane and ray directions while they are set up each frame,
+     * before the ray directions are rounded to 16.16
+     */
+    private static final int DIRECTION_BITS = 30;
+
+    /**
+     * Resolution of the sine table, per full turn
+     */
+    public static final int ANGLE_STEPS = 1 << ANGLE_BITS;
+
+    /**
+     * Sine of each step of a turn, and of the first step again at the end to interpolate towards, with
+     * {@value #DIRECTION_BITS} fractional bits
+     */
+    private static final int[] SINES = new int[ANGLE_STEPS + 1];
+
+    /**
+     * Stand-in for the distance between grid lines of an axis the ray runs parallel to, far past any map but small
+     * enough that scaling it by a fraction can't overflow
+     */
+    private static final long PARALLEL_DELTA_DIST = 1L << 46;
+
+    static {
+        for (int step = 0; step <= ANGLE_STEPS; step++) {
+            SINES[step] = (int) Math.round(Math.sin(2 * Math.PI * step / ANGLE_STEPS) * (1 << DIRECTION_BITS));
+        }
+    }
+
+    private int width;
+    private int height;
+
+    /**
+     * Camera position as of the start of the frame
+     */
+    private long posX;
+    private long posY;
+    /**
+     * Ray direction of each column, rounded to 16.16
+     */
+    private int[] rayDirX;
+    private int[] rayDirY;
+    /**
+     * Distance along each column's ray between successive vertical and horizontal grid lines
+     */
+    private long[] deltaDistX;
+    private long[] deltaDistY;
+    /**
+     * Tile, cell and side of the wall hit by each column's ray, and its perpendicular distance, as last traced
+     */
+    private int[] hitTiles;
+    private int[] hitMapX;
+    private int[] hitMapY;
+    private boolean[] hitYSides;
+    private long[] hitDistances;
+
+    @Override
+    public void setViewportSize(int width, int height) {
+        super.setViewportSize(width, height);
+        this.width = width;
+        this.height = height;
+        rayDirX = new int[width];
+        rayDirY = new int[width];
+        deltaDistX = new long[width];
+        deltaDistY = new long[width];
+        hitTiles = new int[width];
+        hitMapX = new int[width];
+        hitMapY = new int[width];
+        hitYSides = new boolean[width];
+        hitDistances = new long[width];
+    }
+
+    /**
+     * Converts an angle to steps of the sine table, in fixed point
+     */
+    private static int toSteps(double angle) {
+        return (int) ((long) Math.floor(angle * (ANGLE_STEPS * (double) ONE / (2 * Math.PI))) &
+                ((long) ANGLE_STEPS << FRACTION_BITS) - 1);
+    }
+
+    /**
+     * Looks up the sine of an angle, interpolating linearly between steps of the table, which is well within the
+     * precision of 16.16 at {@value #ANGLE_STEPS} steps
+     *
+     * @param angle The angle, in fixed-point steps of the table
+     * @return The sine, with {@value #DIRECTION_BITS} fractional bits
+     */
+    private static int sin(int angle) {
+        int step = angle >>> FRACTION_BITS & ANGLE_STEPS - 1;
+        int fraction = angle & ONE - 1;
+        return SINES[step] + (int) ((long) (SINES[step + 1] - SINES[step]) * fraction >> FRACTION_BITS);
+    }
+
+    private static int cos(int angle) {
+        return sin(angle + (ANGLE_STEPS / 4 << FRACTION_BITS));
+    }
+
+    @Override
+    public void startFrame() {
+        //  The camera is handed over in floating point, and converted once per frame
+        posX = (long) Math.floor(getCameraX() * ONE);
+        posY = (long) Math.floor(getCameraY() * ONE);
+        //  Directions are set up more precisely than 16.16, as a ray that grazes a wall magnifies any error in its
+        //  smaller component into its distance, and so into the height of the wall
+        int angle = toSteps(getCameraAngle());
+        long dirX = cos(angle);
+        long dirY = sin(angle);
+        int halfFov = toSteps(getFov() / 2);
+        int halfFovCos = Math.max(cos(halfFov), 1);
+        long planeX = -dirY * sin(halfFov) / halfFovCos;
+        long planeY = dirX * sin(halfFov) / halfFovCos;
+        for (int x = 0; x < width; x++) {
+            //  Sample through the center of each column, from -width on the left to width on the right
+            long cameraX = 2L * x + 1 - width;
+            long rdx = dirX + planeX * cameraX / width;
+            long rdy = dirY + planeY * cameraX / width;
+            rayDirX[x] = toFixed(rdx);
+            rayDirY[x] = toFixed(rdy);
+            deltaDistX[x] = deltaDist(rayDirX[x], rdx);
+            deltaDistY[x] = deltaDist(rayDirY[x], rdy);
+        }
+        prepareIndexedFrame();
+    }
+
+    /**
+     * Rounds a ray direction component to 16.16
+     */
+    private static int toFixed(long direction) {
+        return (int) (direction + (1L << DIRECTION_BITS - FRACTION_BITS - 1) >> DIRECTION_BITS - FRACTION_BITS);
+    }
+
+    /**
+     * Gets the distance along a ray between successive grid lines of an axis
+     *
+     * @param fixed     The ray's direction along the axis, in 16.16
+     * @param direction The same, with {@value #DIRECTION_BITS} fractional bits
+     * @return The distance, in 16.16
+     */
+    private static long deltaDist(int fixed, long direction) {
+        if (fixed == 0) {
+            return PARALLEL_DELTA_DIST;
+        }
+        //  The direction is at least half of 2^-16 here, so this is well below the stand-in for parallel rays
+        long magnitude = Math.abs(direction);
+        return ((1L << DIRECTION_BITS + FRACTION_BITS) + magnitude / 2) / magnitude;
+    }
+
+    @Override
+    public void fillStrips(IntBuffer pixelOutput, int[] columnPixels, int xStart, int xEnd) {
+        for (int x = xStart; x < xEnd; x++) {
+            fillStrip(columnPixels, x);
+            pixelOutput.put(columnPixels);
+        }
+    }
+
+    @Override
+    public void fillIndexedStrips(ByteBuffer pixelOutput, byte[] columnPixels, int xStart, int xEnd) {
+        for (int x = xStart; x < xEnd; x++) {
+            fillIndexedStrip(columnPixels, x);
+            pixelOutput.put(columnPixels);
+        }
+    }
+
+    @Override
+    public void fillStrip(int[] pixelOutput, int x) {
+        traceRay(x);
+        shadeColumn(pixelOutput, x);
+    }
+
+    @Override
+    public void fillIndexedStrip(byte[] pixelOutput, int x) {
+        traceRay(x);
+        shadeIndexedColumn(pixelOutput, x);
+    }
+
+    /**
+     * Finds the wall hit by the ray of a column
+     */
+    private void traceRay(int x) {
+        int rdx = rayDirX[x];
+        int rdy = rayDirY[x];
+        long ddx = deltaDistX[x];
+        long ddy = deltaDistY[x];
+        long posX = this.posX;
+        long posY = this.posY;
+        int mapX = (int) (posX >> FRACTION_BITS);
+        int mapY = (int) (posY >> FRACTION_BITS);
+        long fractionX = posX & ONE - 1;
+        long fractionY = posY & ONE - 1;
+        //  Distance along the ray to the first vertical and horizontal grid lines
+        int stepX;
+        int stepY;
+        long sideDistX;
+        long sideDistY;
+        if (rdx < 0) {
+            stepX = -1;
+            sideDistX = fractionX * ddx >> FRACTION_BITS;
+        } else {
+            stepX = 1;
+            sideDistX = (ONE - fractionX) * ddx >> FRACTION_BITS;
+        }
+        if (rdy < 0) {
+            stepY = -1;
+            sideDistY = fractionY * ddy >> FRACTION_BITS;
+        } else {
+            stepY = 1;
+            sideDistY = (ONE - fractionY) * ddy >> FRACTION_BITS;
+        }
+        //  Step from grid line to grid line until we enter a wall or leave the map
+        GridMap map = getMap();
+        int mapWidth = map.getWidth();
+        int mapHeight = map.getHeight();
+        int tile = 0;
+        boolean ySide = false;
+        while (true) {
+            if (sideDistX < sideDistY) {
+                sideDistX += ddx;
+                mapX += stepX;
+                ySide = false;
+            } else {
+                sideDistY += ddy;
+                mapY += stepY;
+                ySide = true;
+            }
+            if (mapX < 0 || mapX >= mapWidth || mapY < 0 || mapY >= mapHeight) {
+                break;
+            }
+            tile = map.getTile(mapX, mapY);
+            if (tile != 0) {
+                break;
+            }
+        }
+        hitTiles[x] = tile;
+        hitMapX[x] = mapX;
+        hitMapY[x] = mapY;
+        hitYSides[x] = ySide;
+        //  Perpendicular distance to the camera plane, which avoids fisheye distortion
+        hitDistances[x] = Math.max(ySide ? sideDistY - ddy : sideDistX - ddx, 1);
+    }
+
+    /**
+     * Gets the height of the wall a column's ray last hit, in pixels
+     */
+    private int lineHeight(int x) {
+        return (int) Math.min(((long) height << FRACTION_BITS) / hitDistances[x], Integer.MAX_VALUE / 2);
+    }
+
+    /**
+     * Gets the texture of the wall a column's ray last hit
+     */
+    private int wallTexture(int x, TextureAtlas textures) {
+        int material = getMap().getMaterial(hitMapX[x], hitMapY[x]);
+        return ((material != 0 ? material : hitTiles[x]) - 1) % textures.getTextureCount();
+    }
+
+    /**
+     * Fills the pixels of a column from the wall its ray last hit
+     */
+    private void shadeColumn(int[] pixelOutput, int x) {
+        int tile = hitTiles[x];
+        int drawStart = height / 2;
+        int drawEnd = drawStart;
+        if (tile != 0) {
+            int lineHeight = lineHeight(x);
+            drawStart = Math.max(0, height / 2 - lineHeight / 2);
+            drawEnd = Math.min(height, height / 2 + lineHeight / 2);
+            TextureAtlas textures = getTextures();
+            if (textures != null) {
+                int level = textures.selectLevel(lineHeight);
+                int u = wallTextureU(x, textures.getLevelSize(level));
+                int vStep = (int) (((long) textures.getLevelSize(level) << TextureAtlas.FRACTION_BITS) /
+                        Math.max(lineHeight, 1));
+                int v = (drawStart - height / 2 + lineHeight / 2) * vStep;
+                textures.sampleColumn(pixelOutput, drawStart, drawEnd, wallTexture(x, textures), level, u, v, vStep,
+                        hitYSides[x]);
+            } else {
+                int color = getTileColor(tile);
+                Arrays.fill(pixelOutput, drawStart, drawEnd, hitYSides[x] ? ColorUtils.darken(color) : color);
+            }
+        }
+        Arrays.fill(pixelOutput, 0, drawStart, getCeilingColor());
+        Arrays.fill(pixelOutput, drawEnd, height, getFloorColor());
+    }
+
+    /**
+     * Fills the palette indices of a column from the wall its ray last hit
+     */
+    private void shadeIndexedColumn(byte[] pixelOutput, int x) {
+        int tile = hitTiles[x];
+        int drawStart = height / 2;
+        int drawEnd = drawStart;
+        if (tile != 0) {
+            int lineHeight = lineHeight(x);
+            drawStart = Math.max(0, height / 2 - lineHeight / 2);
+            drawEnd = Math.min(height, height / 2 + lineHeight / 2);
+            byte[] colormap = getPalette().getColormap(lightLevel(hitDistances[x], hitYSides[x]));
+            TextureAtlas textures = getTextures();
+            if (textures != null) {
+                int level = textures.selectLevel(lineHeight);
+                int u = wallTextureU(x, textures.getLevelSize(level));
+                int vStep = (int) (((long) textures.getLevelSize(level) << TextureAtlas.FRACTION_BITS) /
+                        Math.max(lineHeight, 1));
+                int v = (drawStart - height / 2 + lineHeight / 2) * vStep;
+                textures.sampleIndexedColumn(pixelOutput, drawStart, drawEnd, wallTexture(x, textures), level, u, v,
+                        vStep, colormap);
+            } else {
+                Arrays.fill(pixelOutput, drawStart, drawEnd, colormap[getTileIndex(tile)]);
+            }
+        }
+        byte[] rowIndices = getRowIndices();
+        System.arraycopy(rowIndices, 0, pixelOutput, 0, drawStart);
+        System.arraycopy(rowIndices, drawEnd, pixelOutput, drawEnd, height - drawEnd);
+    }
+
+    /**
+     * Finds the column of a wall's texture level a column's ray last hit
+     */
+    private int wallTextureU(int x, int levelSize) {
+        int rdx = rayDirX[x];
+        int rdy = rayDirY[x];
+        boolean ySide = hitYSides[x];
+        long wallDistance = hitDistances[x];
+        //  Where along the wall the ray hit; only the fraction matters
+        long wallX = ySide ? posX + (wallDistance * rdx >> FRACTION_BITS) :
+                posY + (wallDistance * rdy >> FRACTION_BITS);
+        int u = (int) ((wallX & ONE - 1) * levelSize >> FRACTION_BITS);
+        //  Keep textures reading left to right on walls facing either way
+        if (!ySide && rdx > 0 || ySide && rdy < 0) {
+            u = levelSize - 1 - u;
+        }
+        return u;
+    }
+}
@@ -0,0 +1,316 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import java.nio.IntBuffer;
+
+/**
+ * Draws textured floors and ceilings around the walls cast by {@link AJRaycaster}, from tables computed once per
+ * screen row.
+ * <p>
+ * With the camera at half wall height, every pixel of a screen row sees the floor (or ceiling) at the same distance,
+ * so the floor position under a row's pixels changes by a constant step from one column to the next. When the camera
+ * or viewport changes, the distance, mip level, fixed-point texture position at the left edge of the screen and step
+ * per column are computed once for every row. The ceiling row as far above the horizon as a floor row is below it is
+ * at the same distance, over the same position, so the two share their tables, and each texel index is computed once
+ * for both a floor and a ceiling pixel.
+ * <p>
+ * A batch of strips is drawn a row at a time, stepping the position across the columns as a wall is stepped down its
+ * texture, and writing each pixel straight into its strip in the output, where the walls have just been written
+ * around it. The u positions are kept shifted up by their level's size, which brings the row offset of a texel to a
+ * constant shift, in longs with room for the texel column of any level size. Single strips find each pixel's texture
+ * position from the same tables, so they match strips filled in ranges exactly.
+ */
+class FloorCaster {
+
+    private final TextureAtlas textures;
+    private final int floorTexture;
+    private final int ceilingTexture;
+    /**
+     * Where the floor and ceiling textures start in the atlas' texels. Every texture lays its levels out alike, so
+     * these plus a row's level offset find the row's level of either
+     */
+    private final int floorOffset;
+    private final int ceilingOffset;
+
+    private int height;
+    /**
+     * Where the level of each row out from the horizon starts within a texture
+     */
+    private int[] rowLevelOffsets;
+    /**
+     * Masks of the texel column bits of each row's shifted u positions and of the texel row bits of its v positions
+     */
+    private long[] rowUMasks;
+    private int[] rowVMasks;
+    /**
+     * Texture position of each row at column 0, and its step per column, in fixed-point texels of the row's level,
+     * the u coordinates shifted up by log2 of the level's size. Only the position within a tile matters, so overflow
+     * wrapping the integer part away is harmless
+     */
+    private long[] rowU;
+    private int[] rowV;
+    private long[] rowUSteps;
+    private int[] rowVSteps;
+
+    /**
+     * Creates a caster for a set of textures
+     *
+     * @param textures       The textures to draw with
+     * @param floorTexture   The texture to draw the floor with, or -1 to leave the floor alone
+     * @param ceilingTexture The texture to draw the ceiling with, or -1 to leave the ceiling alone
+     */
+    FloorCaster(TextureAtlas textures, int floorTexture, int ceilingTexture) {
+        this.textures = textures;
+        this.floorTexture = floorTexture;
+        this.ceilingTexture = ceilingTexture;
+        floorOffset = floorTexture >= 0 ? textures.getLevelOffset(floorTexture, 0) : 0;
+        ceilingOffset = ceilingTexture >= 0 ? textures.getLevelOffset(ceilingTexture, 0) : 0;
+        allocateRows(0);
+    }
+
+    private void allocateRows(int height) {
+        this.height = height;
+        //  There are as many floor rows as ceiling rows, or one more for an odd height
+        int rows = height - height / 2;
+        rowLevelOffsets = new int[rows];
+        rowUMasks = new long[rows];
+        rowVMasks = new int[rows];
+        rowU = new long[rows];
+        rowV = new int[rows];
+        rowUSteps = new long[rows];
+        rowVSteps = new int[rows];
+    }
+
+    boolean drawsFloor() {
+        return floorTexture >= 0;
+    }
+
+    boolean drawsCeiling() {
+        return ceilingTexture >= 0;
+    }
+
+    /**
+     * Computes the per-row tables for a camera and viewport
+     *
+     * @param width  The width of the viewport
+     * @param height The height of the viewport
+     * @param posX   The x position of the camera, in map tiles
+     * @param posY   The y position of the camera, in map tiles
+     * @param dirX   The x component of the camera direction
+     * @param dirY   The y component of the camera direction
+     * @param planeX The x component of the camera plane
+     * @param planeY The y component of the camera plane
+     */
+    void setCamera(int width, int height, double posX, double posY, double dirX, double dirY, double planeX,
+                   double planeY) {
+        if (height != this.height) {
+            allocateRows(height);
+        }
+        //  Ray through the center of column 0, and the change in ray from one column to the next
+        double columnRayStepX = 2 * planeX / Math.max(width, 1);
+        double columnRayStepY = 2 * planeY / Math.max(width, 1);
+        double firstRayX = dirX - planeX + columnRayStepX / 2;
+        double firstRayY = dirY - planeY + columnRayStepY / 2;
+        double columnStep = Math.hypot(columnRayStepX, columnRayStepY);
+        int textureSize = textures.getTextureSize();
+        int horizon = height / 2;
+        for (int row = 0; row < rowU.length; row++) {
+            //  Rows further from the horizon look more steeply down (or up), at closer floor
+            double rowsFromHorizon = row + 0.5;
+            double distance = horizon / rowsFromHorizon;
+            //  Texels between neighboring pixels of the row, and between this row and the next one out, taking
+            //  the larger like isotropic GPU mipmapping
+            double across = distance * columnStep;
+            double along = distance / (rowsFromHorizon + 1);
+            double texelsPerPixel = Math.max(across, along) * textureSize;
+            int level = texelsPerPixel < 2 ? 0 :
+                    Math.min(Math.getExponent(texelsPerPixel), textures.getLevelCount() - 1);
+            int levelShift = Integer.numberOfTrailingZeros(textures.getLevelSize(level));
+            rowLevelOffsets[row] = textures.getLevelOffset(0, level);
+            int mask = (1 << levelShift) - 1;
+            rowUMasks[row] = (long) mask << levelShift;
+            rowVMasks[row] = mask;
+            double scale = Math.scalb(1.0, levelShift + TextureAtlas.FRACTION_BITS);
+            rowU[row] = (long) (int) (long) ((posX + distance * firstRayX) * scale) << levelShift;
+            rowV[row] = (int) (long) ((posY + distance * firstRayY) * scale);
+            rowUSteps[row] = (long) (int) (long) (distance * columnRayStepX * scale) << levelShift;
+            rowVSteps[row] = (int) (long) (distance * columnRayStepY * scale);
+        }
+    }
+
+    /**
+     * Draws the floor and ceiling of a range of columns, after their walls have been written to the output.
+     * <p>
+     * Each row is walked across the columns, stepping its texture position from one column to the next, and written
+     * straight into the strips in the output. Only the rows next to the walls need checking against them
+     *
+     * @param output       The output, which is left at the same position
+     * @param outputOffset Where the strip of the first column starts in the output
+     * @param xStart       The first column
+     * @param xEnd         The column after the last
+     * @param wallTops     The first row of the wall of each column
+     * @param wallBottoms  The row after the last row of the wall of each column
+     */
+    void fillRows(IntBuffer output, int outputOffset, int xStart, int xEnd, int[] wallTops, int[] wallBottoms) {
+        int horizon = height / 2;
+        int rows = rowU.length;
+        //  Rows out from the horizon from which the floor, or ceiling, of any column shows, and from which all do
+        int floorFirst = rows;
+        int floorAll = rows;
+        if (floorTexture >= 0) {
+            floorAll = 0;
+            for (int x = xStart; x < xEnd; x++) {
+                int floorStart = Math.max(wallBottoms[x] - horizon, 0);
+                floorFirst = Math.min(floorFirst, floorStart);
+                floorAll = Math.max(floorAll, floorStart);
+            }
+        }
+        int ceilingFirst = horizon;
+        int ceilingAll = horizon;
+        if (ceilingTexture >= 0) {
+            ceilingAll = 0;
+            for (int x = xStart; x < xEnd; x++) {
+                int ceilingStart = Math.max(horizon - wallTops[x], 0);
+                ceilingFirst = Math.min(ceilingFirst, ceilingStart);
+                ceilingAll = Math.max(ceilingAll, ceilingStart);
+            }
+        }
+        for (int row = floorFirst; row < floorAll; row++) {
+            fillRow(output, outputOffset, xStart, xEnd, row, true, wallBottoms);
+        }
+        for (int row = ceilingFirst; row < ceilingAll; row++) {
+            fillRow(output, outputOffset, xStart, xEnd, row, false, wallTops);
+        }
+        int pairedStart = Math.max(floorAll, ceilingAll);
+        for (int row = floorAll; row < Math.min(pairedStart, rows); row++) {
+            fillRow(output, outputOffset, xStart, xEnd, row, true, null);
+        }
+        for (int row = ceilingAll; row < Math.min(pairedStart, horizon); row++) {
+            fillRow(output, outputOffset, xStart, xEnd, row, false, null);
+        }
+        for (int row = pairedStart; row < horizon; row++) {
+            fillPairedRow(output, outputOffset, xStart, xEnd, row);
+        }
+        //  The extra floor row of an odd height has no ceiling row to pair with
+        for (int row = Math.max(pairedStart, horizon); row < rows; row++) {
+            fillRow(output, outputOffset, xStart, xEnd, row, true, null);
+        }
+    }
+
+    /**
+     * Draws the floor or the ceiling pixels of a row out from the horizon across a range of columns
+     *
+     * @param floor     Whether to draw the floor, below the horizon, rather than the ceiling, above it
+     * @param wallEdges The wall bottoms of the columns when drawing the floor, or their wall tops when drawing the
+     *                  ceiling, to draw only the pixels past them, or null to draw every pixel of the row
+     */
+    private void fillRow(IntBuffer output, int outputOffset, int xStart, int xEnd, int row, boolean floor,
+                         int[] wallEdges) {
+        int[] texels = textures.getTexels();
+        int height = this.height;
+        int y = floor ? height / 2 + row : height / 2 - 1 - row;
+        int texelOffset = (floor ? floorOffset : ceilingOffset) + rowLevelOffsets[row];
+        long uMask = rowUMasks[row];
+        int vMask = rowVMasks[row];
+        long uStep = rowUSteps[row];
+        int vStep = rowVSteps[row];
+        long u = rowU[row] + xStart * uStep;
+        int v = rowV[row] + xStart * vStep;
+        for (int x = xStart, index = outputOffset + y; x < xEnd; x++, index += height) {
+            if (wallEdges == null || (floor ? y >= wallEdges[x] : y < wallEdges[x])) {
+                output.put(index, texels[texelOffset + (int) (u >>> TextureAtlas.FRACTION_BITS & uMask) +
+                        (v >>> TextureAtlas.FRACTION_BITS & vMask)]);
+            }
+            u += uStep;
+            v += vStep;
+        }
+    }
+
+    /**
+     * Draws both the floor and the ceiling pixels of a row out from the horizon across a range of columns, none of
+     * which are covered by walls
+     */
+    private void fillPairedRow(IntBuffer output, int outputOffset, int xStart, int xEnd, int row) {
+        int[] texels = textures.getTexels();
+        int height = this.height;
+        int floorOffset = this.floorOffset + rowLevelOffsets[row];
+        int ceilingOffset = this.ceilingOffset + rowLevelOffsets[row];
+        long uMask = rowUMasks[row];
+        int vMask = rowVMasks[row];
+        long uStep = rowUSteps[row];
+        int vStep = rowVSteps[row];
+        long u = rowU[row] + xStart * uStep;
+        int v = rowV[row] + xStart * vStep;
+        int floorIndex = outputOffset + height / 2 + row;
+        int ceilingIndex = outputOffset + height / 2 - 1 - row;
+        for (int x = xStart; x < xEnd; x++) {
+            int texel = (int) (u >>> TextureAtlas.FRACTION_BITS & uMask) + (v >>> TextureAtlas.FRACTION_BITS & vMask);
+            output.put(floorIndex, texels[floorOffset + texel]);
+            output.put(ceilingIndex, texels[ceilingOffset + texel]);
+            u += uStep;
+            v += vStep;
+            floorIndex += height;
+            ceilingIndex += height;
+        }
+    }
+
+    /**
+     * Draws the floor and ceiling of a single strip, after its wall has been written
+     *
+     * @param pixelOutput The strip
+     * @param x           The column of the strip
+     * @param wallTop     The first row of the wall
+     * @param wallBottom  The row after the last row of the wall
+     */
+    void fillColumn(int[] pixelOutput, int x, int wallTop, int wallBottom) {
+        int horizon = height / 2;
+        //  Rows out from the horizon that the wall leaves uncovered
+        int floorStart = floorTexture >= 0 ? Math.max(wallBottom - horizon, 0) : rowU.length;
+        int ceilingStart = ceilingTexture >= 0 ? Math.max(horizon - wallTop, 0) : horizon;
+        int pairedStart = Math.max(floorStart, ceilingStart);
+        //  Walls are centered on the horizon, so both usually start at the same row
+        fillColumnRows(pixelOutput, x, horizon, true, floorStart, Math.min(pairedStart, rowU.length));
+        fillColumnRows(pixelOutput, x, horizon, false, ceilingStart, Math.min(pairedStart, horizon));
+        fillPairedColumnRows(pixelOutput, x, horizon, pairedStart, horizon);
+        //  The extra floor row of an odd height has no ceiling row to pair with
+        fillColumnRows(pixelOutput, x, horizon, true, Math.max(pairedStart, horizon), rowU.length);
+    }
+
+    /**
+     * Draws the floor or the ceiling pixels of a strip for a range of rows out from the horizon
+     *
+     * @param floor Whether to draw the floor, going down the screen from the horizon, rather than the ceiling, going
+     *              up it
+     */
+    private void fillColumnRows(int[] pixelOutput, int x, int horizon, boolean floor, int rowStart, int rowEnd) {
+        int[] texels = textures.getTexels();
+        int textureOffset = floor ? floorOffset : ceilingOffset;
+        for (int row = rowStart; row < rowEnd; row++) {
+            pixelOutput[floor ? horizon + row : horizon - 1 - row] = texels[textureOffset + texel(x, row)];
+        }
+    }
+
+    /**
+     * Draws both the floor and the ceiling pixels of a strip for a range of rows out from the horizon, which are at
+     * the same texel of their textures
+     */
+    private void fillPairedColumnRows(int[] pixelOutput, int x, int horizon, int rowStart, int rowEnd) {
+        int[] texels = textures.getTexels();
+        for (int row = rowStart; row < rowEnd; row++) {
+            int texel = texel(x, row);
+            pixelOutput[horizon + row] = texels[floorOffset + texel];
+            pixelOutput[horizon - 1 - row] = texels[ceilingOffset + texel];
+        }
+    }
+
+    /**
+     * Finds the texel under a pixel of a row out from the horizon
+     *
+     * @return The texel's offset within a texture
+     */
+    private int texel(int x, int row) {
+        long u = rowU[row] + x * rowUSteps[row];
+        int v = rowV[row] + x * rowVSteps[row];
+        return rowLevelOffsets[row] + (int) (u >>> TextureAtlas.FRACTION_BITS & rowUMasks[row]) +
+                (v >>> TextureAtlas.FRACTION_BITS & rowVMasks[row]);
+    }
+}
@@ -0,0 +1,209 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.TripleBuffer;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Raycasts frames on a dedicated render thread, independently of presentation.
+ * <p>
+ * Completed frames are published to a {@link TripleBuffer} for the GL thread to pick up, so casting never waits on
+ * buffer swaps or event polling and vice versa. The raycaster is only ever touched from the render thread once it
+ * has started, including viewport size changes, which are requested from other threads and applied between frames.
+ * <p>
+ * Each frame in the ring is a frame behind or ahead of the others, so with dirty tracking a frame is either re-cast
+ * in full or, if the raycaster reports nothing dirty, not cast and published at all.
+ */
+public class FrameProducer implements Runnable {
+
+    /**
+     * How long to idle for while the viewport is empty (e.g. the window is minimized) or the scene is unchanged
+     */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Our raycaster
+     */
+    private final Raycaster raycaster;
+    /**
+     * Transports columns of pixel data from the raycaster to the frames
+     */
+    private final StripFiller stripFiller;
+    /**
+     * The frames in the ring, to free once the render thread has stopped
+     */
+    private final RenderedFrame[] ringFrames;
+    /**
+     * Hands completed frames to the GL thread
+     */
+    private final TripleBuffer<RenderedFrame> frames;
+    /**
+     * The most recently requested viewport size, width in the high half and height in the low half
+     */
+    private final AtomicLong requestedSize;
+    /**
+     * The color to clear the columns to before painting with the raycaster
+     */
+    private final int clearColor;
+
+    /**
+     * Width of the viewport (in pixels) the raycaster is currently configured for
+     */
+    private int width;
+    /**
+     * Height of the viewport (in pixels) the raycaster is currently configured for
+     */
+    private int height;
+    /**
+     * Whether frames are only cast when the raycaster reports dirty columns
+     */
+    private boolean dirtyTracking;
+    /**
+     * The columns changed since the last published frame
+     */
+    private final DirtyColumns dirtyColumns;
+    /**
+     * Memory allocated for the frames' pixels over the life of the producer. Only written by the render thread
+     */
+    private volatile long allocatedBytes;
+
+    private volatile boolean running;
+
+    private Thread thread;
+
+    public FrameProducer(Raycaster raycaster, StripFiller stripFiller, int clearColor) {
+        this.raycaster = raycaster;
+        this.stripFiller = stripFiller;
+        this.clearColor = clearColor;
+        this.ringFrames = new RenderedFrame[]{new RenderedFrame(), new RenderedFrame(), new RenderedFrame()};
+        this.frames = new TripleBuffer<>(ringFrames[0], ringFrames[1], ringFrames[2]);
+        this.requestedSize = new AtomicLong();
+        this.dirtyColumns = new DirtyColumns();
+    }
+
+    /**
+     * Sets whether frames are only cast when the raycaster reports dirty columns. Must be called before
+     * {@link #start()}
+     *
+     * @param dirtyTracking True to skip casting unchanged frames
+     */
+    public void setDirtyTracking(boolean dirtyTracking) {
+        this.dirtyTracking = dirtyTracking;
+    }
+
+    /**
+     * Requests the viewport be resized before the next frame. May be called from any thread
+     *
+     * @param width  The width of the viewport
+     * @param height The height of the viewport
+     */
+    public void requestViewportSize(int width, int height) {
+        requestedSize.set((long) width << 32 | height & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Starts the render thread
+     */
+    public void start() {
+        running = true;
+        thread = new Thread(this, "render");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the render thread, waiting for the frame in progress to finish, and frees the frames' pixel memory. No
+     * frame may be used afterwards
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                //  The render thread may still be writing into a frame, so its memory can't be freed
+                Thread.currentThread().interrupt();
+                return;
+            }
+            thread = null;
+        }
+        for (RenderedFrame frame : ringFrames) {
+            frame.release();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                applyRequestedSize();
+                if (width == 0 || height == 0) {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                //  Prep the frame
+                raycaster.startFrame();
+                if (dirtyTracking) {
+                    raycaster.collectDirtyColumns(dirtyColumns);
+                    if (dirtyColumns.isEmpty()) {
+                        //  The last published frame is still current
+                        LockSupport.parkNanos(IDLE_NANOS);
+                        continue;
+                    }
+                }
+                RenderedFrame frame = frames.getBack();
+                long frameBytes = frame.getAllocatedBytes();
+                frame.setSize(width, height);
+                //  Single writer
+                //noinspection NonAtomicOperationOnVolatileField
+                allocatedBytes += frame.getAllocatedBytes() - frameBytes;
+                IntBuffer pixels = frame.getPixels();
+                pixels.clear();
+                stripFiller.startFrame(clearColor);
+                //  Draw the frame
+                stripFiller.fill(pixels);
+                pixels.flip();
+                frames.publish();
+                dirtyColumns.clear();
+            }
+        } catch (RuntimeException e) {
+            Main.LOGGER.error("Unhandled exception on render thread", e);
+        }
+    }
+
+    private void applyRequestedSize() {
+        long size = requestedSize.get();
+        int newWidth = (int) (size >>> 32);
+        int newHeight = (int) size;
+        if (newWidth != width || newHeight != height) {
+            width = newWidth;
+            height = newHeight;
+            stripFiller.setViewportSize(width, height);
+            raycaster.setViewportSize(width, height);
+            dirtyColumns.setWidth(width);
+        }
+    }
+
+    /**
+     * Gets the memory allocated for frames over the life of the producer, counting each reallocation in full. Frames
+     * are resized as the render thread next writes into them, so the memory for a new viewport size is counted over
+     * the frames after the request. May be called from any thread
+     *
+     * @return The total, in bytes
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Gets the ring completed frames are published to. Only its front may be used, from the GL thread
+     *
+     * @return The frame ring
+     */
+    public TripleBuffer<RenderedFrame> getFrames() {
+        return frames;
+    }
+}
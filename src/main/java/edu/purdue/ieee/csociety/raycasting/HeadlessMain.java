@@ -0,0 +1,137 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.FrameLimiter;
+import edu.purdue.ieee.csociety.raycasting.util.FramePhase;
+import edu.purdue.ieee.csociety.raycasting.util.FrameTimer;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Runs a raycaster without a window or OpenGL context, for measuring throughput on machines with no display.
+ * <p>
+ * Usage: {@code HeadlessMain [width] [height] [frames]}. The raycaster and worker count are configured through the
+ * same system properties as {@link Main}. If the {@value #OUTPUT_PROPERTY} system property is set, the last frame is
+ * written to that path as a PPM image.
+ */
+public class HeadlessMain {
+
+    private static final int DEFAULT_WIDTH = 800;
+
+    private static final int DEFAULT_HEIGHT = 600;
+
+    private static final int DEFAULT_FRAME_COUNT = 1000;
+
+    /**
+     * System property for the path to write the last frame to
+     */
+    private static final String OUTPUT_PROPERTY = "raycasting.headless.output";
+
+    public static void main(String[] args) {
+        Thread.currentThread().setName("main");
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_WIDTH;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_HEIGHT;
+        int frames = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_FRAME_COUNT;
+        HeadlessMain main = new HeadlessMain(width, height);
+        main.run(frames);
+    }
+
+    private final Raycaster raycaster;
+
+    private final HeadlessRenderer renderer;
+
+    private final FrameTimer frameTimer;
+
+    private final FrameLimiter frameLimiter;
+
+    private final int width;
+
+    private final int height;
+
+    public HeadlessMain(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Viewport dimensions must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        frameTimer = new FrameTimer(1, SECONDS);
+        frameLimiter = Main.createFrameLimiter();
+        raycaster = Main.createRaycaster();
+        renderer = new HeadlessRenderer(raycaster);
+        renderer.setWorkerCount(Main.getWorkerCount());
+        //  The camera never moves here, so tracking would leave every frame after the first with nothing to cast
+        renderer.setDirtyTracking(Main.isDirtyTracking(false));
+        renderer.setIndexedColor(Main.isIndexedColor());
+    }
+
+    public void run(int frames) {
+        Main.LOGGER.info("Starting headless {} at {}x{} for {} frames",
+                raycaster.getClass().getSimpleName(), width, height, frames);
+        try {
+            renderer.init(width, height);
+            frameTimer.setOnEndIntervalFrameTimeHistogramCallback(h -> Main.LOGGER.info(
+                    "{} FPS, frame time mean {} ns, p50 {} ns, p90 {} ns, p99 {} ns, p99.9 {} ns, max {} ns",
+                    frameTimer.getLastIntervalFps(), h.getMean(), h.getValueAtPercentile(50),
+                    h.getValueAtPercentile(90), h.getValueAtPercentile(99), h.getValueAtPercentile(99.9),
+                    h.getMax()));
+            if (frameLimiter != null) {
+                frameTimer.setOnEndIntervalPacingErrorHistogramCallback(h -> Main.LOGGER.info(
+                        "Frames started late by p50 {} ns, p99 {} ns, max {} ns, busy {} ns/frame, spinning {} ns",
+                        h.getValueAtPercentile(50), h.getValueAtPercentile(99), h.getMax(),
+                        frameTimer.getLastIntervalAvgBusyTimeNanos(), frameLimiter.getSpinNanos()));
+            }
+            long startNanos = System.nanoTime();
+            mainLoop(frames);
+            long elapsedNanos = System.nanoTime() - startNanos;
+            Main.LOGGER.info("Rendered {} frames in {} ms: {} ns/frame, {} FPS",
+                    frames, elapsedNanos / 1_000_000L, elapsedNanos / Math.max(frames, 1),
+                    frames * 1e9D / elapsedNanos);
+            Main.LOGGER.info("Filled {} bytes of {} strips, {} bytes/frame", renderer.getFilledBytes(),
+                    renderer.isIndexedColor() ? "indexed" : "RGBA", renderer.getFilledBytes() / Math.max(frames, 1));
+            if (raycaster instanceof VoxelTerrainRaycaster) {
+                VoxelTerrainRaycaster terrainRaycaster = (VoxelTerrainRaycaster) raycaster;
+                Main.LOGGER.info("Last frame marched {} steps and drew {} terrain pixels",
+                        terrainRaycaster.getFrameSteps(), terrainRaycaster.getFrameTerrainPixels());
+            }
+            String output = System.getProperty(OUTPUT_PROPERTY);
+            if (output != null) {
+                renderer.writeFrame(Paths.get(output));
+                Main.LOGGER.info("Wrote last frame to {}", output);
+            }
+        } catch (IOException e) {
+            Main.LOGGER.error("Unable to write frame", e);
+        } finally {
+            renderer.destroy();
+            if (raycaster instanceof AJRaycaster) {
+                ((AJRaycaster) raycaster).closeMap();
+            }
+        }
+        Main.LOGGER.info("Stopped");
+    }
+
+    private void mainLoop(int frames) {
+        for (int frame = 0; frame < frames; frame++) {
+            frameTimer.start();
+            //  Prep the frame
+            renderer.startFrame();
+            frameTimer.endPhase(FramePhase.START_FRAME);
+            //  Draw the frame
+            renderer.renderFrame();
+            frameTimer.endPhase(FramePhase.RAYCAST);
+            //  Post-frame
+            renderer.finishFrame();
+            frameTimer.endPhase(FramePhase.FINISH_FRAME);
+            if (frameLimiter != null) {
+                frameTimer.recordPacingError(frameLimiter.waitForNextFrame());
+                frameTimer.endPhase(FramePhase.FRAME_LIMIT);
+            }
+            frameTimer.end();
+        }
+    }
+
+    public HeadlessRenderer getRenderer() {
+        return renderer;
+    }
+}
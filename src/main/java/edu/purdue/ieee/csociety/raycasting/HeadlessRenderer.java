@@ -0,0 +1,261 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.ColorUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static edu.purdue.ieee.csociety.raycasting.util.ColorUtils.getBlue;
+import static edu.purdue.ieee.csociety.raycasting.util.ColorUtils.getGreen;
+import static edu.purdue.ieee.csociety.raycasting.util.ColorUtils.getRed;
+
+/**
+ * A renderer that drives a {@link Raycaster} into a plain framebuffer, without a window or OpenGL context.
+ * <p>
+ * The framebuffer has the same layout as the {@link Renderer}'s texture buffer: column-major, with each column of
+ * the viewport stored contiguously from top to bottom.
+ * <p>
+ * In indexed color, strips are cast as palette indices into a byte framebuffer of the same layout, and the dirty
+ * columns are looked up into the RGBA framebuffer as the frame is finished, which is where a windowed renderer would
+ * present it.
+ */
+public class HeadlessRenderer {
+
+    /**
+     * Our raycaster
+     */
+    private final Raycaster raycaster;
+    /**
+     * Transports columns of pixel data from the raycaster to the framebuffer
+     */
+    private final StripFiller stripFiller;
+
+    /**
+     * Width of the viewport (in pixels) for the raycaster
+     */
+    private int rendererWidth;
+    /**
+     * Height of the viewport (in pixels) for the raycaster
+     */
+    private int rendererHeight;
+
+    /**
+     * The buffer containing the pixel data of the last rendered frame
+     */
+    private IntBuffer framebuffer;
+    /**
+     * The color to clear the columns to before painting with the raycaster
+     */
+    private int clearColor;
+    /**
+     * Whether only the columns the raycaster reports dirty are re-cast each frame
+     */
+    private boolean dirtyTracking;
+    /**
+     * The columns to re-cast this frame
+     */
+    private final DirtyColumns frameDirtyColumns;
+    /**
+     * Whether strips are cast as palette indices
+     */
+    private boolean indexedColor;
+    /**
+     * The palette indices of the last rendered frame, null when casting RGBA
+     */
+    private ByteBuffer indexedFramebuffer;
+    /**
+     * A column of palette indices and of their colors, to look up through in bulk
+     */
+    private byte[] columnIndices;
+    private int[] columnColors;
+    /**
+     * Bytes of strips filled since the renderer was created
+     */
+    private long filledBytes;
+
+    public HeadlessRenderer(Raycaster raycaster) {
+        this.raycaster = raycaster;
+        this.stripFiller = new StripFiller(raycaster);
+        this.clearColor = 0x00000000;
+        this.dirtyTracking = true;
+        this.frameDirtyColumns = new DirtyColumns();
+    }
+
+    /**
+     * Sets the number of worker threads used to fill strips. Only takes effect if the raycaster is a
+     * {@link ParallelRaycaster}
+     *
+     * @param workerCount The number of workers, 1 to fill serially on the calling thread
+     */
+    public void setWorkerCount(int workerCount) {
+        stripFiller.setWorkerCount(workerCount);
+    }
+
+    /**
+     * Sets whether only the columns the raycaster reports through {@link Raycaster#collectDirtyColumns} are re-cast
+     * each frame, rather than every column
+     *
+     * @param dirtyTracking True to skip clean columns
+     */
+    public void setDirtyTracking(boolean dirtyTracking) {
+        this.dirtyTracking = dirtyTracking;
+    }
+
+    /**
+     * Sets whether strips are cast as 8-bit palette indices and looked up to RGBA when each frame is finished. Needs
+     * an {@link IndexedRaycaster}, otherwise strips are cast in RGBA. Must be called before {@link #init}
+     *
+     * @param indexedColor True to cast palette indices
+     */
+    public void setIndexedColor(boolean indexedColor) {
+        if (indexedColor && !(raycaster instanceof IndexedRaycaster)) {
+            Main.LOGGER.info("{} can't cast palette indices, casting RGBA", raycaster.getClass().getSimpleName());
+            return;
+        }
+        this.indexedColor = indexedColor;
+        if (raycaster instanceof IndexedRaycaster) {
+            ((IndexedRaycaster) raycaster).setIndexedColor(indexedColor);
+        }
+    }
+
+    public boolean isIndexedColor() {
+        return indexedColor;
+    }
+
+    public void init(int width, int height) {
+        onViewportSizeChanged(width, height);
+    }
+
+    public void onViewportSizeChanged(int newWidth, int newHeight) {
+        rendererWidth = newWidth;
+        rendererHeight = newHeight;
+        //  Resize buffers
+        stripFiller.setViewportSize(rendererWidth, rendererHeight);
+        //  Same byte order as the texture buffer, so the pixel copies cost the same as they do when rendering to a window
+        framebuffer = ByteBuffer.allocateDirect(rendererHeight * rendererWidth * Integer.BYTES).
+                order(ByteOrder.nativeOrder()).
+                asIntBuffer();
+        if (indexedColor) {
+            indexedFramebuffer = ByteBuffer.allocateDirect(rendererHeight * rendererWidth);
+            columnIndices = new byte[rendererHeight];
+            columnColors = new int[rendererHeight];
+        }
+        frameDirtyColumns.setWidth(rendererWidth);
+        //  Notify raycaster
+        raycaster.setViewportSize(rendererWidth, rendererHeight);
+    }
+
+    public void startFrame() {
+        //  Clear column arrays
+        stripFiller.startFrame(clearColor);
+        //  Notify raycaster to prep for calls to fillStrip()
+        raycaster.startFrame();
+        //  Find out what changed. Columns left dirty by a resize stay dirty
+        if (dirtyTracking) {
+            raycaster.collectDirtyColumns(frameDirtyColumns);
+        } else {
+            frameDirtyColumns.markAllDirty();
+        }
+    }
+
+    public void renderFrame() {
+        filledBytes += (long) frameDirtyColumns.getDirtyCount() * rendererHeight * (indexedColor ? 1 : Integer.BYTES);
+        if (indexedColor) {
+            //  The dirty columns are looked up when the frame is finished
+            indexedFramebuffer.clear();
+            stripFiller.fill(indexedFramebuffer, frameDirtyColumns);
+            return;
+        }
+        //  Clean columns keep their pixels from earlier frames
+        framebuffer.clear();
+        stripFiller.fill(framebuffer, frameDirtyColumns);
+        frameDirtyColumns.clear();
+    }
+
+    public void finishFrame() {
+        if (!indexedColor) {
+            //  Nothing to present
+            return;
+        }
+        //  Present the frame by looking its indices up to RGBA, a column at a time through arrays since single gets and
+        //  puts of direct buffers are far slower than bulk ones
+        int[] colors = ((IndexedRaycaster) raycaster).getPalette().getColors();
+        for (int x = frameDirtyColumns.nextDirtyColumn(0); x >= 0; x = frameDirtyColumns.nextDirtyColumn(x + 1)) {
+            indexedFramebuffer.position(x * rendererHeight);
+            indexedFramebuffer.get(columnIndices);
+            ColorUtils.lookUp(columnIndices, 0, colors, columnColors, 0, rendererHeight);
+            framebuffer.position(x * rendererHeight);
+            framebuffer.put(columnColors);
+        }
+        frameDirtyColumns.clear();
+    }
+
+    /**
+     * Gets the bytes of strips filled so far, four per pixel in RGBA and one in indexed color, which is what a
+     * windowed renderer would upload
+     *
+     * @return The number of bytes
+     */
+    public long getFilledBytes() {
+        return filledBytes;
+    }
+
+    public void destroy() {
+        //  Release strip workers
+        stripFiller.shutdown();
+    }
+
+    /**
+     * Gets the pixel data of the last rendered frame
+     *
+     * @return A read-only view of the framebuffer, column-major, of length width * height
+     */
+    public IntBuffer getFramebuffer() {
+        return framebuffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets a pixel of the last rendered frame
+     *
+     * @param x The x coordinate, in screen space
+     * @param y The y coordinate, in screen space
+     * @return The RGBA color of the pixel
+     */
+    public int getPixel(int x, int y) {
+        return framebuffer.get(x * rendererHeight + y);
+    }
+
+    /**
+     * Writes the last rendered frame as a binary PPM image, discarding alpha
+     *
+     * @param path The file to write to
+     * @throws IOException If the file could not be written
+     */
+    public void writeFrame(Path path) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            out.write(String.format("P6\n%d %d\n255\n", rendererWidth, rendererHeight).getBytes("US-ASCII"));
+            for (int y = 0; y < rendererHeight; y++) {
+                for (int x = 0; x < rendererWidth; x++) {
+                    int color = getPixel(x, y);
+                    out.write(getRed(color));
+                    out.write(getGreen(color));
+                    out.write(getBlue(color));
+                }
+            }
+        }
+    }
+
+    public int getRendererWidth() {
+        return rendererWidth;
+    }
+
+    public int getRendererHeight() {
+        return rendererHeight;
+    }
+}
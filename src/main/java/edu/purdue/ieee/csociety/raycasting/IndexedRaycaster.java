@@ -0,0 +1,54 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.Palette;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Raycaster} that can also fill strips with 8-bit indices into a {@link Palette}, a quarter the size of RGBA.
+ * <p>
+ * The renderer picks one mode for the whole run: in indexed mode only the indexed strip methods are called, and the
+ * frame is looked up to RGBA through {@link #getPalette()} when it is presented. Indexed strips follow the same
+ * contract as their RGBA counterparts, including the threading contract of {@link ParallelRaycaster} if the
+ * raycaster implements it, and the same columns are reported dirty in either mode.
+ */
+public interface IndexedRaycaster extends Raycaster {
+
+    /**
+     * Gets the palette indexed strips are filled with. Read by the renderer each frame, so it may be replaced between
+     * frames
+     *
+     * @return The palette
+     */
+    Palette getPalette();
+
+    /**
+     * Called by the renderer before the first frame, and whenever the mode changes, so state only indexed strips use,
+     * like textures quantized to the palette, is only prepared when they will be filled
+     * @param indexedColor True if the indexed strip methods will be called rather than the RGBA ones
+     */
+    void setIndexedColor(final boolean indexedColor);
+
+    /**
+     * Renders the vertical strip of the scene at x as palette indices.
+     * @param pixelOutput The byte array to fill with palette indices. Array is of length VIEWPORT_HEIGHT
+     * @param x The x coordinate of the column, in screen space. Values [0, VIEWPORT_WIDTH)
+     */
+    void fillIndexedStrip(final byte[] pixelOutput, final int x);
+
+    /**
+     * Renders the vertical strips of the scene from xStart to xEnd as palette indices straight into the output buffer,
+     * column-major from its current position, advancing the position past them. Every pixel must be written.
+     * @param pixelOutput The buffer to write indices to. Has at least (xEnd - xStart) * VIEWPORT_HEIGHT remaining
+     * @param columnPixels Scratch array of length VIEWPORT_HEIGHT, reused across calls
+     * @param xStart The x coordinate of the first column, in screen space. Values [0, VIEWPORT_WIDTH)
+     * @param xEnd The x coordinate after the last column, in screen space. Values (xStart, VIEWPORT_WIDTH]
+     */
+    default void fillIndexedStrips(final ByteBuffer pixelOutput, final byte[] columnPixels, final int xStart,
+                                   final int xEnd) {
+        for (int x = xStart; x < xEnd; x++) {
+            fillIndexedStrip(columnPixels, x);
+            pixelOutput.put(columnPixels);
+        }
+    }
+}
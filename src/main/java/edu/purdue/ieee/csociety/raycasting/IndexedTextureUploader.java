@@ -0,0 +1,91 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.GrowableDirectBuffer;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * Uploads frames of palette indices from a buffer in client memory into a single-channel texture, in the same
+ * rotated layout as a {@link TextureUploader}, a byte per pixel
+ */
+public class IndexedTextureUploader {
+
+    /**
+     * Width of the viewport (in pixels)
+     */
+    private int width;
+    /**
+     * Height of the viewport (in pixels)
+     */
+    private int height;
+    /**
+     * Backs {@link #renderTextureBuffer}, keeping its memory across resizes that fit in it
+     */
+    private final GrowableDirectBuffer bufferMemory = new GrowableDirectBuffer();
+    /**
+     * The buffer containing the palette indices
+     */
+    private ByteBuffer renderTextureBuffer;
+
+    /**
+     * Resizes the upload buffer
+     *
+     * @param width  The width of the viewport, which is the height of the uploaded region
+     * @param height The height of the viewport, which is the width of the uploaded region
+     */
+    public void setViewportSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        renderTextureBuffer = bufferMemory.resize(height * width);
+    }
+
+    /**
+     * Gets the buffer to fill with this frame's palette indices
+     *
+     * @return A buffer positioned at 0 with room for width * height indices
+     */
+    public ByteBuffer beginFrame() {
+        renderTextureBuffer.clear();
+        return renderTextureBuffer;
+    }
+
+    /**
+     * Uploads the dirty columns of the buffer returned by {@link #beginFrame()} to the bound texture
+     *
+     * @param dirtyColumns The columns that were filled this frame
+     */
+    public void endFrame(DirtyColumns dirtyColumns) {
+        //  Rows of the texture are a column of the viewport long, which needn't be a multiple of 4 bytes
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        int xEnd;
+        for (int xStart = dirtyColumns.nextDirtyColumn(0); xStart >= 0;
+             xStart = dirtyColumns.nextDirtyColumn(xEnd)) {
+            xEnd = dirtyColumns.nextCleanColumn(xStart);
+            //  LWJGL uploads from the position of the buffer
+            renderTextureBuffer.limit(xEnd * height);
+            renderTextureBuffer.position(xStart * height);
+            //  We purposefully reverse width and height here because our texture is rotated 90 degrees
+            //noinspection SuspiciousNameCombination
+            glTexSubImage2D(GL_TEXTURE_2D, 0, 0, xStart, height, xEnd - xStart,
+                    GL_LUMINANCE, GL_UNSIGNED_BYTE, renderTextureBuffer);
+        }
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+        renderTextureBuffer.clear();
+    }
+
+    /**
+     * Gets the memory allocated for the upload buffer over the life of the uploader
+     *
+     * @return The total, in bytes
+     */
+    public long getAllocatedBytes() {
+        return bufferMemory.getAllocatedBytes();
+    }
+
+    public void destroy() {
+        renderTextureBuffer = null;
+        bufferMemory.release();
+    }
+}
@@ -1,7 +1,16 @@
 package edu.purdue.ieee.csociety.raycasting;
 
+import edu.purdue.ieee.csociety.raycasting.util.FrameLimiter;
+import edu.purdue.ieee.csociety.raycasting.util.FramePhase;
 import edu.purdue.ieee.csociety.raycasting.util.FrameTimer;
 import edu.purdue.ieee.csociety.raycasting.util.SharedLibraryLoader;
+import edu.purdue.ieee.csociety.raycasting.util.TripleBuffer;
+import edu.purdue.ieee.csociety.raycasting.world.ArrayGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.ChunkedGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.GridMap;
+import edu.purdue.ieee.csociety.raycasting.world.MappedGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.SpriteSet;
+import edu.purdue.ieee.csociety.raycasting.world.TileLayout;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.lwjgl.Sys;
@@ -9,7 +18,13 @@ import org.lwjgl.glfw.*;
 import org.lwjgl.opengl.ContextCapabilities;
 import org.lwjgl.opengl.GLContext;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.lwjgl.glfw.GLFW.*;
@@ -37,6 +52,136 @@ public class Main {
 
     private static final String WINDOW_TITLE = "IEEE CSociety Raycaster";
 
+    /**
+     * System property for the number of threads used to fill strips, defaults to the number of processors
+     */
+    static final String WORKER_COUNT_PROPERTY = "raycasting.workers";
+
+    /**
+     * System property for the number of pixel buffer objects frames are streamed through, 0 to disable
+     */
+    private static final String PIXEL_BUFFER_COUNT_PROPERTY = "raycasting.pixelBuffers";
+
+    private static final int DEFAULT_PIXEL_BUFFER_COUNT = 2;
+
+    /**
+     * System property to raycast on a separate render thread, decoupled from presentation
+     */
+    private static final String PIPELINED_PROPERTY = "raycasting.pipelined";
+
+    /**
+     * System property for the ratio of the raycast resolution to the window size
+     */
+    private static final String RENDER_SCALE_PROPERTY = "raycasting.renderScale";
+
+    /**
+     * System property for the frame time budget, in milliseconds, to scale the raycast resolution to hold
+     */
+    private static final String TARGET_FRAME_TIME_PROPERTY = "raycasting.targetFrameTimeMillis";
+
+    /**
+     * System properties for the bounds of the render scale when holding a frame time budget
+     */
+    private static final String MIN_RENDER_SCALE_PROPERTY = "raycasting.minRenderScale";
+    private static final String MAX_RENDER_SCALE_PROPERTY = "raycasting.maxRenderScale";
+
+    private static final float DEFAULT_MIN_RENDER_SCALE = 0.25F;
+
+    private static final float DEFAULT_MAX_RENDER_SCALE = 1F;
+
+    /**
+     * System property to re-cast only the columns the raycaster reports changed, defaults to true
+     */
+    static final String DIRTY_TRACKING_PROPERTY = "raycasting.dirtyTracking";
+
+    /**
+     * System property for the highest frame rate to run at, uncapped if unset or 0
+     */
+    static final String MAX_FPS_PROPERTY = "raycasting.maxFps";
+
+    /**
+     * System property to size the output texture exactly to the render area when non-power-of-two textures are
+     * supported, defaults to true
+     */
+    private static final String NPOT_TEXTURES_PROPERTY = "raycasting.npotTextures";
+
+    /**
+     * System property to cast frames as 8-bit palette indices rather than RGBA, defaults to false
+     */
+    static final String INDEXED_COLOR_PROPERTY = "raycasting.indexedColor";
+
+    /**
+     * System property for a binary map file for the {@link AJRaycaster} to cast against
+     */
+    static final String MAP_PROPERTY = "raycasting.map";
+
+    /**
+     * System property for the memory budget, in megabytes, of the chunk cache to stream the map through rather than
+     * mapping the whole file. Maps too large to be mapped are always streamed
+     */
+    private static final String MAP_CACHE_MEGABYTES_PROPERTY = "raycasting.mapCacheMegabytes";
+
+    private static final int DEFAULT_MAP_CACHE_MEGABYTES = 256;
+
+    /**
+     * System property for a {@link TileLayout} to copy the map into memory in rather than casting against the file,
+     * e.g. MORTON or BRICK. Streamed maps are always cast against in place
+     */
+    private static final String MAP_LAYOUT_PROPERTY = "raycasting.mapLayout";
+
+    /**
+     * System property to step rays through every cell rather than skipping empty blocks, for comparison
+     */
+    private static final String EMPTY_SPACE_SKIPPING_PROPERTY = "raycasting.emptySpaceSkipping";
+
+    /**
+     * System property for the number of adjacent columns whose rays are traced together, defaults to 1 for every ray
+     * alone
+     */
+    private static final String PACKET_SIZE_PROPERTY = "raycasting.packetSize";
+
+    /**
+     * System property to draw walls in flat colors rather than with generated textures, for comparison
+     */
+    private static final String WALL_TEXTURES_PROPERTY = "raycasting.wallTextures";
+
+    private static final int WALL_TEXTURE_SIZE = 64;
+
+    private static final int WALL_TEXTURE_COUNT = 16;
+
+    /**
+     * System property to draw the floor and ceiling in flat colors rather than textured, for comparison. Only applies
+     * with wall textures
+     */
+    private static final String FLOOR_TEXTURES_PROPERTY = "raycasting.floorTextures";
+
+    /**
+     * Generated textures for the floor and ceiling: stone blocks and checkered tiles
+     */
+    private static final int FLOOR_TEXTURE = 2;
+    private static final int CEILING_TEXTURE = 7;
+
+    /**
+     * System property for the number of sprites to scatter over the empty tiles of the map, defaults to none
+     */
+    private static final String SPRITE_COUNT_PROPERTY = "raycasting.sprites";
+
+    private static final int SPRITE_TEXTURE_SIZE = 64;
+
+    private static final int SPRITE_TEXTURE_COUNT = 8;
+
+    /**
+     * System properties for how far {@link VoxelTerrainRaycaster} draws terrain, and how far it steps a texel at a time,
+     * in texels
+     */
+    private static final String TERRAIN_VIEW_DISTANCE_PROPERTY = "raycasting.terrain.viewDistance";
+    private static final String TERRAIN_DETAIL_DISTANCE_PROPERTY = "raycasting.terrain.detailDistance";
+
+    /**
+     * System property for the raycaster to use, either a simple class name in this package or a fully qualified one
+     */
+    static final String RAYCASTER_PROPERTY = "raycasting.raycaster";
+
     /**
      * Error handling callback
      */
@@ -69,6 +214,10 @@ public class Main {
     private final Raycaster raycaster;
 
     private final FrameTimer frameTimer;
+    /**
+     * Paces frames to the frame rate cap, null if uncapped
+     */
+    private final FrameLimiter frameLimiter;
     /**
      * The current width of the window
      */
@@ -84,13 +233,189 @@ public class Main {
 
     public Main() {
         frameTimer = new FrameTimer(1, SECONDS);
+        frameLimiter = createFrameLimiter();
         windowWidth = DEFAULT_WINDOW_WIDTH;
         windowHeight = DEFAULT_WINDOW_HEIGHT;
         vSync = false;
-        //  TODO Replace this with your implementation, e.g.
-        //  raycaster = new MyRaycaster();
-        raycaster = new NOPRaycaster();
+        raycaster = createRaycaster();
         renderer = new Renderer(this, raycaster);
+        renderer.setWorkerCount(getWorkerCount());
+        renderer.setPixelBufferCount(Integer.getInteger(PIXEL_BUFFER_COUNT_PROPERTY, DEFAULT_PIXEL_BUFFER_COUNT));
+        renderer.setPipelined(Boolean.getBoolean(PIPELINED_PROPERTY));
+        renderer.setRenderScale(getFloatProperty(RENDER_SCALE_PROPERTY, 1F));
+        renderer.setDirtyTracking(isDirtyTracking(true));
+        renderer.setIndexedColor(isIndexedColor());
+        renderer.setNpotTextures(Boolean.parseBoolean(System.getProperty(NPOT_TEXTURES_PROPERTY, "true")));
+    }
+
+    private static float getFloatProperty(String name, float defaultValue) {
+        String value = System.getProperty(name);
+        return value == null ? defaultValue : Float.parseFloat(value);
+    }
+
+    /**
+     * Creates the raycaster named by the {@value #RAYCASTER_PROPERTY} system property
+     *
+     * @return The configured raycaster, or an {@link AJRaycaster} if none is configured. A
+     * {@link FixedPointRaycaster} must be asked for by name
+     */
+    static Raycaster createRaycaster() {
+        Raycaster raycaster = createRaycaster(System.getProperty(RAYCASTER_PROPERTY));
+        if (raycaster instanceof AJRaycaster) {
+            ((AJRaycaster) raycaster).setEmptySpaceSkipping(
+                    Boolean.parseBoolean(System.getProperty(EMPTY_SPACE_SKIPPING_PROPERTY, "true")));
+            ((AJRaycaster) raycaster).setPacketSize(Integer.getInteger(PACKET_SIZE_PROPERTY, 1));
+            if (Boolean.parseBoolean(System.getProperty(WALL_TEXTURES_PROPERTY, "true"))) {
+                ((AJRaycaster) raycaster).setTextures(TextureAtlas.generate(WALL_TEXTURE_SIZE, WALL_TEXTURE_COUNT));
+                if (Boolean.parseBoolean(System.getProperty(FLOOR_TEXTURES_PROPERTY, "true"))) {
+                    ((AJRaycaster) raycaster).setFloorTexture(FLOOR_TEXTURE);
+                    ((AJRaycaster) raycaster).setCeilingTexture(CEILING_TEXTURE);
+                }
+            }
+        }
+        if (raycaster instanceof VoxelTerrainRaycaster) {
+            VoxelTerrainRaycaster terrainRaycaster = (VoxelTerrainRaycaster) raycaster;
+            terrainRaycaster.setViewDistance(getFloatProperty(TERRAIN_VIEW_DISTANCE_PROPERTY,
+                    (float) terrainRaycaster.getViewDistance()));
+            terrainRaycaster.setDetailDistance(getFloatProperty(TERRAIN_DETAIL_DISTANCE_PROPERTY,
+                    (float) terrainRaycaster.getDetailDistance()));
+        }
+        String mapPath = System.getProperty(MAP_PROPERTY);
+        if (mapPath != null) {
+            if (raycaster instanceof AJRaycaster) {
+                loadMap((AJRaycaster) raycaster, Paths.get(mapPath));
+            } else {
+                LOGGER.warn("{} does not cast against maps, ignoring {}", raycaster.getClass().getSimpleName(),
+                        mapPath);
+            }
+        }
+        int spriteCount = Integer.getInteger(SPRITE_COUNT_PROPERTY, 0);
+        if (spriteCount > 0 && raycaster instanceof AJRaycaster) {
+            scatterSprites((AJRaycaster) raycaster, spriteCount);
+        }
+        return raycaster;
+    }
+
+    /**
+     * Opens a binary map file and places the raycaster's camera at its spawn point
+     *
+     * @param raycaster The raycaster to cast against the map
+     * @param path      The map file
+     */
+    private static void loadMap(AJRaycaster raycaster, Path path) {
+        long startNanos = System.nanoTime();
+        GridMap map;
+        try {
+            Integer cacheMegabytes = Integer.getInteger(MAP_CACHE_MEGABYTES_PROPERTY);
+            if (cacheMegabytes == null && Files.size(path) <= Integer.MAX_VALUE) {
+                MappedGridMap mappedMap = MappedGridMap.open(path);
+                LOGGER.info("Mapped {} ({} bytes, {} chunks stored)", path, mappedMap.getMappedSize(),
+                        mappedMap.getStoredChunkCount());
+                map = mappedMap;
+                String layout = System.getProperty(MAP_LAYOUT_PROPERTY);
+                if (layout != null) {
+                    map = ArrayGridMap.copyOf(mappedMap, TileLayout.valueOf(layout.toUpperCase(Locale.ROOT)));
+                    LOGGER.info("Copied {} into memory in {} order", path, layout);
+                }
+            } else {
+                if (System.getProperty(MAP_LAYOUT_PROPERTY) != null) {
+                    LOGGER.warn("Streamed maps can't be copied into memory, ignoring {}", MAP_LAYOUT_PROPERTY);
+                }
+                int megabytes = cacheMegabytes != null ? cacheMegabytes : DEFAULT_MAP_CACHE_MEGABYTES;
+                long cacheBytes = megabytes * 1024L * 1024L;
+                map = ChunkedGridMap.open(path, cacheBytes);
+                LOGGER.info("Streaming {} through a {} byte chunk cache", path, cacheBytes);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to load map " + path, e);
+        }
+        raycaster.setMap(map);
+        raycaster.moveToSpawn();
+        LOGGER.info("Opened {}x{} map in {} us", map.getWidth(), map.getHeight(),
+                (System.nanoTime() - startNanos) / 1_000L);
+    }
+
+    /**
+     * Places sprites of every generated shape at random on empty tiles of the raycaster's map
+     *
+     * @param raycaster The raycaster to draw the sprites
+     * @param count     The number of sprites
+     */
+    private static void scatterSprites(AJRaycaster raycaster, int count) {
+        SpriteSet sprites = new SpriteSet();
+        Random random = new Random(count);
+        int attempts = 0;
+        while (sprites.getCount() < count && attempts++ < count * 100) {
+            int x = random.nextInt(raycaster.getMapWidth());
+            int y = random.nextInt(raycaster.getMapHeight());
+            if (raycaster.getTile(x, y) == 0) {
+                sprites.add(x + 0.5, y + 0.5, random.nextInt(SPRITE_TEXTURE_COUNT), 0.5F + random.nextFloat() / 2);
+            }
+        }
+        raycaster.setSprites(sprites, TextureAtlas.generateSprites(SPRITE_TEXTURE_SIZE, SPRITE_TEXTURE_COUNT));
+        LOGGER.info("Scattered {} sprites", sprites.getCount());
+    }
+
+    /**
+     * Creates a raycaster by name
+     *
+     * @param name A simple class name in this package, a fully qualified class name, or null
+     * @return The named raycaster, or an {@link AJRaycaster} if name is null
+     */
+    static Raycaster createRaycaster(String name) {
+        if (name == null) {
+            return new AJRaycaster();
+        }
+        if (name.indexOf('.') < 0) {
+            name = Main.class.getPackage().getName() + "." + name;
+        }
+        try {
+            return Class.forName(name).asSubclass(Raycaster.class).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Unable to create raycaster " + name, e);
+        }
+    }
+
+    /**
+     * Gets the number of strip filling workers from the {@value #WORKER_COUNT_PROPERTY} system property
+     *
+     * @return The configured worker count, or the number of processors if none is configured
+     */
+    static int getWorkerCount() {
+        return Integer.getInteger(WORKER_COUNT_PROPERTY, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Gets whether dirty column tracking is enabled from the {@value #DIRTY_TRACKING_PROPERTY} system property
+     *
+     * @param defaultValue Whether it's enabled if the property isn't set
+     * @return True if the property is set to true, the default if it isn't set, false otherwise
+     */
+    static boolean isDirtyTracking(boolean defaultValue) {
+        return Boolean.parseBoolean(System.getProperty(DIRTY_TRACKING_PROPERTY, Boolean.toString(defaultValue)));
+    }
+
+    /**
+     * Gets whether frames are cast as palette indices from the {@value #INDEXED_COLOR_PROPERTY} system property
+     *
+     * @return True if the property is set to true
+     */
+    static boolean isIndexedColor() {
+        return Boolean.getBoolean(INDEXED_COLOR_PROPERTY);
+    }
+
+    /**
+     * Creates a frame limiter for the frame rate cap in the {@value #MAX_FPS_PROPERTY} system property
+     *
+     * @return The frame limiter, or null if the property is unset or 0
+     */
+    static FrameLimiter createFrameLimiter() {
+        float maxFps = getFloatProperty(MAX_FPS_PROPERTY, 0F);
+        if (maxFps == 0) {
+            return null;
+        }
+        LOGGER.info("Capping frame rate at {} FPS", maxFps);
+        return new FrameLimiter(maxFps);
     }
 
     public void run() {
@@ -171,13 +496,41 @@ public class Main {
         ContextCapabilities capabilities = GLContext.createFromCurrent().getCapabilities();
 
         //  Initialize renderer
-        renderer.init(windowWidth, windowHeight);
+        renderer.init(windowWidth, windowHeight, capabilities);
 
         //  Show window
         glfwShowWindow(windowHandle);
 
         frameTimer.setOnEndIntervalFpsCallback(
                 i -> glfwSetWindowTitle(windowHandle, windowTitleBase + " [" + i + " FPS]"));
+        String targetFrameTime = System.getProperty(TARGET_FRAME_TIME_PROPERTY);
+        if (targetFrameTime != null) {
+            long targetFrameTimeNanos = (long) (Double.parseDouble(targetFrameTime) * 1_000_000L);
+            LOGGER.info("Scaling render resolution to hold a frame time of {} ns", targetFrameTimeNanos);
+            new RenderScaleController(renderer, targetFrameTimeNanos,
+                    getFloatProperty(MIN_RENDER_SCALE_PROPERTY, DEFAULT_MIN_RENDER_SCALE),
+                    getFloatProperty(MAX_RENDER_SCALE_PROPERTY, DEFAULT_MAX_RENDER_SCALE)).attach(frameTimer);
+        }
+        frameTimer.setOnEndIntervalFrameTimeHistogramCallback(h -> LOGGER.debug(
+                "Frame time p50 {} ns, p90 {} ns, p99 {} ns, p99.9 {} ns, max {} ns",
+                h.getValueAtPercentile(50), h.getValueAtPercentile(90), h.getValueAtPercentile(99),
+                h.getValueAtPercentile(99.9), h.getMax()));
+        frameTimer.setOnEndIntervalPhaseHistogramCallback((p, h) -> LOGGER.trace(
+                "{} p50 {} ns, p99 {} ns, max {} ns",
+                p, h.getValueAtPercentile(50), h.getValueAtPercentile(99), h.getMax()));
+        if (frameLimiter != null) {
+            frameTimer.setOnEndIntervalPacingErrorHistogramCallback(h -> LOGGER.debug(
+                    "Frames started late by p50 {} ns, p99 {} ns, max {} ns, spinning {} ns",
+                    h.getValueAtPercentile(50), h.getValueAtPercentile(99), h.getMax(),
+                    frameLimiter.getSpinNanos()));
+        }
+        TripleBuffer<RenderedFrame> frameRing = renderer.getFrameRing();
+        if (frameRing != null) {
+            frameTimer.setOnEndIntervalDurationNanosCallback(l -> LOGGER.debug(
+                    "Render thread published {} frames, {} dropped, {} of {} presents stale",
+                    frameRing.getPublishedCount(), frameRing.getDroppedCount(),
+                    frameRing.getStaleCount(), frameRing.getAcquiredCount()));
+        }
     }
 
     private void handleKeyEvent(long window, int key, int scanCode, int action, int modifiers) {
@@ -214,24 +567,44 @@ public class Main {
             frameTimer.start();
             //  Prep the frame
             renderer.startFrame();
+            frameTimer.endPhase(FramePhase.START_FRAME);
             //  Draw the frame
             renderer.renderFrame();
+            frameTimer.endPhase(FramePhase.UPLOAD);
             //  Post-frame
             renderer.finishFrame();
+            frameTimer.endPhase(FramePhase.FINISH_FRAME);
             //  Swap buffers
             glfwSwapBuffers(windowHandle);
+            frameTimer.endPhase(FramePhase.SWAP_BUFFERS);
             //  Poll for events
             glfwPollEvents();
+            frameTimer.endPhase(FramePhase.POLL_EVENTS);
+            //  Wait out the rest of the frame's period, if capped
+            if (frameLimiter != null) {
+                frameTimer.recordPacingError(frameLimiter.waitForNextFrame());
+                frameTimer.endPhase(FramePhase.FRAME_LIMIT);
+            }
             frameTimer.end();
         }
     }
 
     private void finish() {
+        //  Release renderer resources while their context is still current
+        renderer.destroy();
+        //  Stop streaming the map once nothing casts against it
+        if (raycaster instanceof AJRaycaster) {
+            ((AJRaycaster) raycaster).closeMap();
+        }
         //  Release window and associated callbacks
         glfwDestroyWindow(windowHandle);
         keyCallback.release();
     }
 
+    public FrameTimer getFrameTimer() {
+        return frameTimer;
+    }
+
     /**
      * Get the current width of the window
      *
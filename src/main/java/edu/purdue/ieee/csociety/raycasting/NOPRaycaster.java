@@ -1,5 +1,7 @@
 package edu.purdue.ieee.csociety.raycasting;
 
+import java.nio.IntBuffer;
+
 /**
  * A NOP raycaster that only returns transparent black
  */
@@ -14,8 +16,21 @@ public class NOPRaycaster implements Raycaster {
         //  NOP
     }
 
+    @Override
+    public void collectDirtyColumns(DirtyColumns dirtyColumns) {
+        //  NOP
+    }
+
     @Override
     public void fillStrip(int[] pixelOutput, int x) {
         //  NOP
     }
+
+    @Override
+    public void fillStrips(IntBuffer pixelOutput, int[] columnPixels, int xStart, int xEnd) {
+        //  The column array is left as cleared by the renderer
+        for (int x = xStart; x < xEnd; x++) {
+            pixelOutput.put(columnPixels);
+        }
+    }
 }
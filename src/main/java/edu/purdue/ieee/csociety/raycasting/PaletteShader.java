@@ -0,0 +1,138 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.Palette;
+import org.lwjgl.BufferUtils;
+
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL12.GL_UNSIGNED_INT_8_8_8_8;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE1;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL20.*;
+
+/**
+ * Presents frames of palette indices by looking each one up in a 1D palette texture as it is drawn.
+ * <p>
+ * The frame stays a single-channel texture of indices on the GPU, a quarter the size of RGBA, and the lookup costs
+ * the CPU nothing. Both textures must be sampled nearest, since indices can't be interpolated. Requires OpenGL 2.0
+ */
+public class PaletteShader {
+
+    private static final String VERTEX_SHADER = "#version 110\n" +
+            "void main() {\n" +
+            "    gl_TexCoord[0] = gl_MultiTexCoord0;\n" +
+            "    gl_Position = ftransform();\n" +
+            "}\n";
+
+    private static final String FRAGMENT_SHADER = "#version 110\n" +
+            "uniform sampler2D indices;\n" +
+            "uniform sampler1D palette;\n" +
+            "void main() {\n" +
+            //  Indices are normalized to [0, 1], so scale them to the center of their palette texel
+            "    float index = texture2D(indices, gl_TexCoord[0].st).r;\n" +
+            "    gl_FragColor = texture1D(palette, (index * 255.0 + 0.5) / 256.0);\n" +
+            "}\n";
+
+    private final int program;
+    /**
+     * Handle to the 1D palette texture
+     */
+    private final int paletteTexture;
+    /**
+     * Staging buffer for palette uploads
+     */
+    private final IntBuffer paletteBuffer;
+    /**
+     * The palette last uploaded, to only upload it again when it is replaced
+     */
+    private Palette uploadedPalette;
+
+    public PaletteShader() {
+        int vertexShader = compile(GL_VERTEX_SHADER, VERTEX_SHADER);
+        int fragmentShader = compile(GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
+        program = glCreateProgram();
+        glAttachShader(program, vertexShader);
+        glAttachShader(program, fragmentShader);
+        glLinkProgram(program);
+        //  The program keeps what it needs once linked
+        glDetachShader(program, vertexShader);
+        glDetachShader(program, fragmentShader);
+        glDeleteShader(vertexShader);
+        glDeleteShader(fragmentShader);
+        if (glGetProgrami(program, GL_LINK_STATUS) == GL_FALSE) {
+            String log = glGetProgramInfoLog(program);
+            glDeleteProgram(program);
+            throw new IllegalStateException("Unable to link palette shader: " + log);
+        }
+        glUseProgram(program);
+        glUniform1i(glGetUniformLocation(program, "indices"), 0);
+        glUniform1i(glGetUniformLocation(program, "palette"), 1);
+        glUseProgram(0);
+        paletteTexture = glGenTextures();
+        glBindTexture(GL_TEXTURE_1D, paletteTexture);
+        glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glBindTexture(GL_TEXTURE_1D, 0);
+        paletteBuffer = BufferUtils.createIntBuffer(Palette.SIZE);
+    }
+
+    private static int compile(int type, String source) {
+        int shader = glCreateShader(type);
+        glShaderSource(shader, source);
+        glCompileShader(shader);
+        if (glGetShaderi(shader, GL_COMPILE_STATUS) == GL_FALSE) {
+            String log = glGetShaderInfoLog(shader);
+            glDeleteShader(shader);
+            throw new IllegalStateException("Unable to compile palette shader: " + log);
+        }
+        return shader;
+    }
+
+    /**
+     * Uploads a palette, if it isn't already the one uploaded
+     *
+     * @param palette The palette to present indices with
+     */
+    public void setPalette(Palette palette) {
+        if (palette == uploadedPalette) {
+            return;
+        }
+        paletteBuffer.clear();
+        paletteBuffer.put(palette.getColors());
+        paletteBuffer.flip();
+        glBindTexture(GL_TEXTURE_1D, paletteTexture);
+        glTexImage1D(GL_TEXTURE_1D, 0, GL_RGBA, Palette.SIZE, 0, GL_RGBA, GL_UNSIGNED_INT_8_8_8_8, paletteBuffer);
+        glBindTexture(GL_TEXTURE_1D, 0);
+        uploadedPalette = palette;
+    }
+
+    /**
+     * Starts drawing with the palette lookup, with the palette bound to texture unit 1. The texture of indices is to
+     * be bound to unit 0, which is left active
+     */
+    public void bind() {
+        glActiveTexture(GL_TEXTURE1);
+        glBindTexture(GL_TEXTURE_1D, paletteTexture);
+        glActiveTexture(GL_TEXTURE0);
+        glUseProgram(program);
+    }
+
+    /**
+     * Goes back to fixed-function drawing
+     */
+    public void unbind() {
+        glUseProgram(0);
+        glActiveTexture(GL_TEXTURE1);
+        glBindTexture(GL_TEXTURE_1D, 0);
+        glActiveTexture(GL_TEXTURE0);
+    }
+
+    public void destroy() {
+        glDeleteProgram(program);
+        glDeleteTextures(paletteTexture);
+    }
+}
@@ -0,0 +1,17 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+/**
+ * A {@link Raycaster} that may have its strips filled concurrently.
+ * <p>
+ * Implementing this interface is a promise that, between a call to {@link #startFrame()} and the next call to
+ * {@link #startFrame()} or {@link #setViewportSize(int, int)}, {@link #fillStrip(int[], int)} and
+ * {@link #fillStrips(java.nio.IntBuffer, int[], int, int)} may be invoked from multiple threads at once for disjoint
+ * columns, each with its own pixel output and column array. Implementations must
+ * therefore treat any per-frame state prepared in {@link #startFrame()} as read-only while filling strips, and must
+ * not share scratch state between strips.
+ * <p>
+ * {@link #startFrame()} and {@link #setViewportSize(int, int)} are still only ever called from a single thread while
+ * no strips are being filled. Raycasters that do not implement this interface are always driven serially.
+ */
+public interface ParallelRaycaster extends Raycaster {
+}
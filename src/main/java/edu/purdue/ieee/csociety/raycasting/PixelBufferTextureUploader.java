@@ -0,0 +1,149 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.GL_UNSIGNED_INT_8_8_8_8;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_UNPACK_BUFFER;
+
+/**
+ * Streams frames through a ring of pixel buffer objects.
+ * <p>
+ * The raycaster writes straight into a mapped pixel buffer, and the upload from it into the texture is queued without
+ * the driver copying anything on the calling thread, so the transfer overlaps with casting the next frame. Cycling
+ * through several buffers, and orphaning each one's storage before mapping it, means mapping never has to wait for
+ * an upload that is still in flight.
+ */
+public class PixelBufferTextureUploader implements TextureUploader {
+
+    /**
+     * Width of the viewport (in pixels)
+     */
+    private int width;
+    /**
+     * Height of the viewport (in pixels)
+     */
+    private int height;
+    /**
+     * Size of each pixel buffer, in bytes
+     */
+    private long bufferSize;
+    /**
+     * Bytes of pixel buffer storage specified on resizes over the life of the uploader
+     */
+    private long allocatedBytes;
+
+    /**
+     * Handles to the pixel buffer objects
+     */
+    private final int[] pixelBuffers;
+    /**
+     * The last mapping of each pixel buffer, kept so LWJGL can reuse the buffer object when the mapping doesn't move
+     */
+    private final ByteBuffer[] mappedBuffers;
+    /**
+     * Int views of {@link #mappedBuffers}
+     */
+    private final IntBuffer[] mappedIntBuffers;
+    /**
+     * Index of the pixel buffer being filled this frame
+     */
+    private int fillIndex;
+
+    /**
+     * Creates the uploader. Requires OpenGL 2.1 or ARB_pixel_buffer_object
+     *
+     * @param bufferCount The number of pixel buffers to cycle through, at least 2
+     */
+    public PixelBufferTextureUploader(int bufferCount) {
+        if (bufferCount < 2) {
+            throw new IllegalArgumentException("At least two pixel buffers are required");
+        }
+        pixelBuffers = new int[bufferCount];
+        mappedBuffers = new ByteBuffer[bufferCount];
+        mappedIntBuffers = new IntBuffer[bufferCount];
+        for (int i = 0; i < bufferCount; i++) {
+            pixelBuffers[i] = glGenBuffers();
+        }
+    }
+
+    @Override
+    public void setViewportSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        long newBufferSize = (long) width * height * Integer.BYTES;
+        //  Storage is orphaned every frame anyway, so it only needs specifying up front when it grows
+        if (newBufferSize <= bufferSize) {
+            bufferSize = newBufferSize;
+            return;
+        }
+        bufferSize = newBufferSize;
+        allocatedBytes += bufferSize * pixelBuffers.length;
+        for (int pixelBuffer : pixelBuffers) {
+            glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pixelBuffer);
+            glBufferData(GL_PIXEL_UNPACK_BUFFER, bufferSize, GL_STREAM_DRAW);
+        }
+        glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+    }
+
+    @Override
+    public IntBuffer beginFrame() {
+        glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pixelBuffers[fillIndex]);
+        //  Orphan the old storage so we don't wait on an upload still reading from it
+        glBufferData(GL_PIXEL_UNPACK_BUFFER, bufferSize, GL_STREAM_DRAW);
+        ByteBuffer mapped = glMapBuffer(GL_PIXEL_UNPACK_BUFFER, GL_WRITE_ONLY, bufferSize, mappedBuffers[fillIndex]);
+        glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+        if (mapped == null) {
+            throw new IllegalStateException("Unable to map pixel buffer");
+        }
+        if (mapped != mappedBuffers[fillIndex]) {
+            mappedBuffers[fillIndex] = mapped;
+            mappedIntBuffers[fillIndex] = mapped.order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+        IntBuffer pixels = mappedIntBuffers[fillIndex];
+        pixels.clear();
+        return pixels;
+    }
+
+    @Override
+    public boolean endFrame(DirtyColumns dirtyColumns) {
+        glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pixelBuffers[fillIndex]);
+        boolean uploaded = glUnmapBuffer(GL_PIXEL_UNPACK_BUFFER);
+        if (!uploaded) {
+            //  The contents were lost (e.g. a mode switch), skip this frame's upload
+            Main.LOGGER.warn("Pixel buffer contents lost during unmap");
+        } else {
+            //  Clean columns of the orphaned storage were never written, so only the dirty ranges are uploaded
+            int xEnd;
+            for (int xStart = dirtyColumns.nextDirtyColumn(0); xStart >= 0;
+                 xStart = dirtyColumns.nextDirtyColumn(xEnd)) {
+                xEnd = dirtyColumns.nextCleanColumn(xStart);
+                //  With a pixel buffer bound the last argument is an offset into it, and the call returns immediately
+                //  We purposefully reverse width and height here because our texture is rotated 90 degrees
+                //noinspection SuspiciousNameCombination
+                glTexSubImage2D(GL_TEXTURE_2D, 0, 0, xStart, height, xEnd - xStart,
+                        GL_RGBA, GL_UNSIGNED_INT_8_8_8_8, (long) xStart * height * Integer.BYTES);
+            }
+        }
+        glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+        fillIndex = (fillIndex + 1) % pixelBuffers.length;
+        return uploaded;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public void destroy() {
+        for (int i = 0; i < pixelBuffers.length; i++) {
+            glDeleteBuffers(pixelBuffers[i]);
+            mappedBuffers[i] = null;
+            mappedIntBuffers[i] = null;
+        }
+    }
+}
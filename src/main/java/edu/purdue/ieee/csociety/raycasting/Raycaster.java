@@ -1,5 +1,7 @@
 package edu.purdue.ieee.csociety.raycasting;
 
+import java.nio.IntBuffer;
+
 public interface Raycaster {
 
     /**
@@ -14,6 +16,18 @@ public interface Raycaster {
      */
     void startFrame();
 
+    /**
+     * Reports the columns whose pixels may differ from the last time they were filled. Called by the renderer after
+     * {@link #startFrame()}; only the reported columns are filled and uploaded that frame. The renderer already
+     * accounts for viewport size changes, so implementations only need to report changes to the scene itself,
+     * e.g. camera moves and map edits, and then forget them.
+     * The default implementation marks every column dirty, so the whole frame is re-cast every frame.
+     * @param dirtyColumns The set to mark dirty columns in. Columns already marked must be left marked
+     */
+    default void collectDirtyColumns(final DirtyColumns dirtyColumns) {
+        dirtyColumns.markAllDirty();
+    }
+
     /**
      * Renders the vertical strip of the scene at x.
      * @param pixelOutput The int array to fill with pixel data. Array is of length VIEWPORT_HEIGHT
@@ -21,4 +35,23 @@ public interface Raycaster {
      */
     void fillStrip(final int[] pixelOutput, final int x);
 
+    /**
+     * Renders the vertical strips of the scene from xStart to xEnd straight into the output buffer.
+     * <p>
+     * The strips are written column-major starting at the current position of the output buffer, VIEWPORT_HEIGHT
+     * pixels per column, and the position is advanced past them. Every pixel of every strip must be written.
+     * The default implementation fills each strip into columnPixels with {@link #fillStrip(int[], int)} and copies it
+     * into the output buffer; implementations should override it to skip the per-column call and copy.
+     * @param pixelOutput The buffer to write pixel data to. Has at least (xEnd - xStart) * VIEWPORT_HEIGHT remaining
+     * @param columnPixels Scratch array of length VIEWPORT_HEIGHT, reused across calls, for the default implementation
+     * @param xStart The x coordinate of the first column, in screen space. Values [0, VIEWPORT_WIDTH)
+     * @param xEnd The x coordinate after the last column, in screen space. Values (xStart, VIEWPORT_WIDTH]
+     */
+    default void fillStrips(final IntBuffer pixelOutput, final int[] columnPixels, final int xStart, final int xEnd) {
+        for (int x = xStart; x < xEnd; x++) {
+            fillStrip(columnPixels, x);
+            pixelOutput.put(columnPixels);
+        }
+    }
+
 }
@@ -0,0 +1,110 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.FrameTimer;
+
+/**
+ * Adjusts the {@link Renderer}'s render scale to hold the average frame time reported by a {@link FrameTimer} at a
+ * target budget, trading resolution for frame rate.
+ * <p>
+ * Raycasting cost grows with the number of pixels, so when a frame runs over budget the scale is cut in one step by
+ * the square root of the overrun. Growing the scale back is deliberately slower: the frame time has to stay well
+ * under budget for several intervals in a row, and then the scale only grows by a fixed step. Together with the dead
+ * band between the two thresholds this keeps the scale from oscillating around the budget.
+ */
+public class RenderScaleController {
+
+    /**
+     * Fraction over budget the frame time may run before the scale is reduced
+     */
+    private static final double OVER_BUDGET_TOLERANCE = 0.1;
+    /**
+     * Fraction under budget the frame time must run before the scale is increased
+     */
+    private static final double UNDER_BUDGET_MARGIN = 0.25;
+    /**
+     * Number of consecutive intervals under budget before the scale is increased
+     */
+    private static final int INTERVALS_BEFORE_INCREASE = 3;
+    /**
+     * Amount the scale grows by when under budget
+     */
+    private static final float INCREASE_STEP = 0.05F;
+    /**
+     * Smallest change of scale worth resizing for
+     */
+    private static final float MIN_CHANGE = 0.01F;
+
+    private final Renderer renderer;
+    private final long targetFrameTimeNanos;
+    private final float minScale;
+    private final float maxScale;
+    private int intervalsUnderBudget;
+    /**
+     * Whether the last interval was partly rendered at the previous scale, so its frame time is not representative
+     */
+    private boolean settling;
+
+    /**
+     * Constructs a controller for the given renderer
+     *
+     * @param renderer             The renderer to scale
+     * @param targetFrameTimeNanos The frame time budget, in nanos
+     * @param minScale             The lowest render scale to go down to
+     * @param maxScale             The highest render scale to go up to, above 1 to allow supersampling
+     */
+    public RenderScaleController(Renderer renderer, long targetFrameTimeNanos, float minScale, float maxScale) {
+        if (targetFrameTimeNanos <= 0) {
+            throw new IllegalArgumentException("Target frame time must be positive");
+        }
+        if (!(minScale > 0) || minScale > maxScale) {
+            throw new IllegalArgumentException("Scale range must be positive and non-empty");
+        }
+        this.renderer = renderer;
+        this.targetFrameTimeNanos = targetFrameTimeNanos;
+        this.minScale = minScale;
+        this.maxScale = maxScale;
+    }
+
+    /**
+     * Attaches the controller to a frame timer, so it is updated at the end of every sample interval
+     *
+     * @param frameTimer The frame timer measuring the renderer's frames
+     */
+    public void attach(FrameTimer frameTimer) {
+        //  Time spent waiting for a frame limiter is no cost of rendering
+        frameTimer.setOnEndIntervalAvgBusyTimeNanosCallback(this::onEndInterval);
+    }
+
+    /**
+     * Updates the render scale given the average frame time of the last interval
+     *
+     * @param avgFrameTimeNanos The average frame time over the interval, less any frame limiting, in nanos
+     */
+    public void onEndInterval(long avgFrameTimeNanos) {
+        if (settling) {
+            settling = false;
+            return;
+        }
+        float scale = renderer.getRenderScale();
+        float newScale = scale;
+        if (avgFrameTimeNanos > targetFrameTimeNanos * (1 + OVER_BUDGET_TOLERANCE)) {
+            intervalsUnderBudget = 0;
+            //  Cost is proportional to pixel count, which goes with the square of the scale
+            newScale = (float) (scale * Math.sqrt(targetFrameTimeNanos / (double) avgFrameTimeNanos));
+        } else if (avgFrameTimeNanos < targetFrameTimeNanos * (1 - UNDER_BUDGET_MARGIN)) {
+            if (++intervalsUnderBudget >= INTERVALS_BEFORE_INCREASE) {
+                intervalsUnderBudget = 0;
+                newScale = scale + INCREASE_STEP;
+            }
+        } else {
+            intervalsUnderBudget = 0;
+        }
+        newScale = Math.max(minScale, Math.min(maxScale, newScale));
+        if (Math.abs(newScale - scale) >= MIN_CHANGE) {
+            Main.LOGGER.debug("Average frame time {} ns against a budget of {} ns, render scale {} -> {}",
+                    avgFrameTimeNanos, targetFrameTimeNanos, scale, newScale);
+            renderer.setRenderScale(newScale);
+            settling = true;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.GrowableDirectBuffer;
+
+import java.nio.IntBuffer;
+
+/**
+ * A completed frame of pixel data, passed from the render thread to the GL thread. The pixels' memory is kept across
+ * resizes that fit in it, and freed explicitly by {@link #release()}
+ */
+public class RenderedFrame {
+
+    /**
+     * Width of the viewport the frame was rendered at
+     */
+    private int width;
+    /**
+     * Height of the viewport the frame was rendered at
+     */
+    private int height;
+    /**
+     * Backs {@link #pixels}
+     */
+    private final GrowableDirectBuffer pixelMemory = new GrowableDirectBuffer();
+    /**
+     * The pixel data, column-major, in the same layout as the renderer's texture buffer. Null until the frame is
+     * first sized
+     */
+    private IntBuffer pixels;
+
+    /**
+     * Resizes the frame, only reallocating if the pixel memory is too small, and then by at least half again so a
+     * window dragged larger doesn't reallocate every frame
+     *
+     * @param width  The new width of the viewport
+     * @param height The new height of the viewport
+     */
+    public void setSize(int width, int height) {
+        if (pixels == null || width != this.width || height != this.height) {
+            this.width = width;
+            this.height = height;
+            pixels = pixelMemory.resize(width * height * Integer.BYTES).asIntBuffer();
+        }
+    }
+
+    /**
+     * Frees the pixel memory. The frame has no pixels until it is sized again
+     */
+    public void release() {
+        width = 0;
+        height = 0;
+        pixels = null;
+        pixelMemory.release();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public IntBuffer getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Gets the memory allocated for the frame's pixels over its life, counting each reallocation in full
+     *
+     * @return The total, in bytes
+     */
+    public long getAllocatedBytes() {
+        return pixelMemory.getAllocatedBytes();
+    }
+}
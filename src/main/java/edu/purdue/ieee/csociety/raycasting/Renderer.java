@@ -1,13 +1,16 @@
 package edu.purdue.ieee.csociety.raycasting;
 
-import org.lwjgl.BufferUtils;
+import edu.purdue.ieee.csociety.raycasting.util.FramePhase;
+import edu.purdue.ieee.csociety.raycasting.util.FrameTimer;
+import edu.purdue.ieee.csociety.raycasting.util.TripleBuffer;
+import org.lwjgl.opengl.ContextCapabilities;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.IntBuffer;
-import java.util.Arrays;
 
 import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL12.GL_UNSIGNED_INT_8_8_8_8;
 
 public class Renderer {
 
@@ -29,6 +32,11 @@ public class Renderer {
      */
     private int rendererHeight;
 
+    /**
+     * Ratio of the raycaster's viewport size to the display size. Less than 1 subsamples, greater than 1 supersamples
+     */
+    private float renderScale;
+
     /**
      * Width (in pixels) of the output space (window width)
      */
@@ -43,11 +51,20 @@ public class Renderer {
      */
     private int renderTexture;
     /**
-     * True width of the output texture. Must be a power of 2
+     * Whether the output texture may be sized other than to powers of 2, if the context supports it
+     */
+    private boolean npotTextures;
+    /**
+     * Whether the output texture is sized exactly to the render area, rather than to powers of 2
+     */
+    private boolean exactTextureSize;
+    /**
+     * True width of the output texture. The render area's height, or a power of 2 at least that which never shrinks,
+     * so resizing back and forth within it doesn't reallocate
      */
     private int renderTextureWidth;
     /**
-     * True height of the output texture. Must be a power of 2
+     * True height of the output texture. The render area's width, or a power of 2 at least that
      */
     private int renderTextureHeight;
     /**
@@ -60,103 +77,445 @@ public class Renderer {
     private float renderTextureV;
 
     /**
-     * Reusable array for transporting a column of pixel data from the raycaster to the texture buffer
+     * Transports columns of pixel data from the raycaster to the texture buffer
      */
-    private int[] columnPixels;
+    private final StripFiller stripFiller;
     /**
-     * The buffer containing the pixel data
+     * Number of pixel buffer objects to stream frames through, 0 to upload from client memory
      */
-    private IntBuffer renderTextureBuffer;
+    private int pixelBufferCount;
+    /**
+     * Provides the buffer containing the pixel data and uploads it to the output texture
+     */
+    private TextureUploader textureUploader;
+    /**
+     * Whether frames are raycast on a separate render thread
+     */
+    private boolean pipelined;
+    /**
+     * Raycasts frames on the render thread when pipelined, null otherwise
+     */
+    private FrameProducer frameProducer;
     /**
      * The color to clear the output texture to before painting with the raycaster
      */
     private int clearColor;
+    /**
+     * Whether only the columns the raycaster reports dirty are re-cast and uploaded each frame
+     */
+    private boolean dirtyTracking;
+    /**
+     * The columns to re-cast and upload this frame
+     */
+    private final DirtyColumns frameDirtyColumns;
+    /**
+     * Whether frames are to be cast as palette indices, if the raycaster and context support it
+     */
+    private boolean indexedColor;
+    /**
+     * Uploads frames of palette indices, null when casting RGBA
+     */
+    private IndexedTextureUploader indexedUploader;
+    /**
+     * Looks frames of palette indices up to RGBA as they are drawn, null when casting RGBA
+     */
+    private PaletteShader paletteShader;
+    /**
+     * Whether the display size or render scale changed since the render area was last sized. Bursts of window resize
+     * events are coalesced into one resize, at the start of the next frame
+     */
+    private boolean resizePending;
+    /**
+     * Number of times the render area has been resized since init
+     */
+    private int resizeCount;
+    /**
+     * Bytes of texture allocated by the last resize
+     */
+    private long lastResizeTextureBytes;
+    /**
+     * Bytes of upload buffers, column arrays and frames allocated before the last resize
+     */
+    private long allocatedBytesBeforeResize;
 
     public Renderer(Main main, Raycaster raycaster) {
         this.main = main;
         this.raycaster = raycaster;
+        this.stripFiller = new StripFiller(raycaster);
         this.clearColor = 0x00000000;
+        this.renderScale = 1F;
+        this.dirtyTracking = true;
+        this.npotTextures = true;
+        this.frameDirtyColumns = new DirtyColumns();
+    }
+
+    /**
+     * Sets the number of worker threads used to fill strips. Only takes effect if the raycaster is a
+     * {@link ParallelRaycaster}
+     *
+     * @param workerCount The number of workers, 1 to fill serially on the render thread
+     */
+    public void setWorkerCount(int workerCount) {
+        stripFiller.setWorkerCount(workerCount);
+    }
+
+    /**
+     * Sets the number of pixel buffer objects to stream frames through. Must be called before {@link #init}
+     *
+     * @param pixelBufferCount The number of pixel buffers, at least 2, or 0 to upload from client memory
+     */
+    public void setPixelBufferCount(int pixelBufferCount) {
+        if (pixelBufferCount < 0 || pixelBufferCount == 1) {
+            throw new IllegalArgumentException("Pixel buffer count must be 0 or at least 2");
+        }
+        this.pixelBufferCount = pixelBufferCount;
+    }
+
+    /**
+     * Sets whether frames are raycast on a separate render thread and handed to this thread through a
+     * {@link edu.purdue.ieee.csociety.raycasting.util.TripleBuffer}, rather than in {@link #renderFrame()}.
+     * Must be called before {@link #init}
+     *
+     * @param pipelined True to raycast on a separate render thread
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Sets whether only the columns the raycaster reports through {@link Raycaster#collectDirtyColumns} are re-cast
+     * and uploaded each frame, rather than every column
+     *
+     * @param dirtyTracking True to skip clean columns
+     */
+    public void setDirtyTracking(boolean dirtyTracking) {
+        this.dirtyTracking = dirtyTracking;
+    }
+
+    /**
+     * Sets whether frames are cast as 8-bit palette indices, a quarter the size of RGBA to fill and upload, and looked
+     * up to RGBA on the GPU. Needs an {@link IndexedRaycaster} and OpenGL 2.0, and isn't pipelined; otherwise frames
+     * are cast in RGBA. Must be called before {@link #init}
+     *
+     * @param indexedColor True to cast palette indices
+     */
+    public void setIndexedColor(boolean indexedColor) {
+        this.indexedColor = indexedColor;
+    }
+
+    /**
+     * Sets whether the output texture is sized exactly to the render area when the context supports non-power-of-two
+     * textures (OpenGL 2.0 or ARB_texture_non_power_of_two), rather than rounded up to powers of 2. Must be called
+     * before {@link #init}
+     *
+     * @param npotTextures True to size the texture exactly when possible
+     */
+    public void setNpotTextures(boolean npotTextures) {
+        this.npotTextures = npotTextures;
     }
 
-    public void init(int initialWidth, int initialHeight) {
-        rendererWidth = initialWidth;
-        rendererHeight = initialHeight;
+    /**
+     * Sets the ratio of the raycaster's viewport size to the display size, resizing the viewport at the start of the
+     * next frame if it changes
+     *
+     * @param renderScale The render scale. Less than 1 subsamples, greater than 1 supersamples
+     */
+    public void setRenderScale(float renderScale) {
+        if (!(renderScale > 0)) {
+            throw new IllegalArgumentException("Render scale must be positive");
+        }
+        this.renderScale = renderScale;
+        //  Before init there is nothing to resize yet
+        if (renderTexture != 0 &&
+                (scaledSize(displayWidth) != rendererWidth || scaledSize(displayHeight) != rendererHeight)) {
+            resizePending = true;
+        }
+    }
+
+    public float getRenderScale() {
+        return renderScale;
+    }
+
+    private int scaledSize(int displaySize) {
+        return displaySize == 0 ? 0 : Math.max(1, Math.round(displaySize * renderScale));
+    }
+
+    public void init(int initialWidth, int initialHeight, ContextCapabilities capabilities) {
+        displayWidth = initialWidth;
+        displayHeight = initialHeight;
+        rendererWidth = scaledSize(displayWidth);
+        rendererHeight = scaledSize(displayHeight);
         //  Create our output texture
-        //  Since OGL textures must be sizes of powers of two, we must find the smallest power of two
-        //  greater than or equal to our real size
+        //  Without non-power-of-two support, OGL textures must be sizes of powers of two, so we must find the
+        //  smallest power of two greater than or equal to our real size
         //  When we render we simply discard the portion of the texture outside of the window
-        setTextureSize();
+        exactTextureSize = npotTextures && (capabilities.OpenGL20 || capabilities.GL_ARB_texture_non_power_of_two);
+        sizeTexture();
+        if (indexedColor) {
+            initIndexedColor(capabilities);
+        }
         glEnable(GL_TEXTURE_2D);
         renderTexture = glGenTextures();
         glBindTexture(GL_TEXTURE_2D, renderTexture);
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        //  Supersampled frames are averaged down, subsampled ones are kept crisp. Indices can't be averaged
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, paletteShader != null ? GL_NEAREST : GL_LINEAR);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
-        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA,
-                renderTextureWidth, renderTextureHeight,
-                0, GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+        //  Filtering at the edges mustn't wrap around to the far side, and some early non-power-of-two support
+        //  only allows clamping
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        allocateTexture();
         glBindTexture(GL_TEXTURE_2D, 0);
+        Main.LOGGER.info("Output texture is {}x{}{}, {} bytes", renderTextureWidth, renderTextureHeight,
+                exactTextureSize ? "" : " (power of 2)", getTextureMemoryBytes());
+        if (pipelined) {
+            //  The render thread owns the raycaster and strip buffers from here on
+            frameProducer = new FrameProducer(raycaster, stripFiller, clearColor);
+            frameProducer.setDirtyTracking(dirtyTracking);
+            frameProducer.requestViewportSize(rendererWidth, rendererHeight);
+            frameProducer.start();
+            return;
+        }
         //  Create our buffers
-        columnPixels = new int[rendererHeight];
-        renderTextureBuffer = BufferUtils.createByteBuffer(rendererHeight * rendererWidth * Integer.BYTES).
-                order(ByteOrder.BIG_ENDIAN).
-                asIntBuffer();
+        stripFiller.setViewportSize(rendererWidth, rendererHeight);
+        if (paletteShader != null) {
+            indexedUploader = new IndexedTextureUploader();
+            indexedUploader.setViewportSize(rendererWidth, rendererHeight);
+        } else {
+            textureUploader = createTextureUploader(capabilities);
+            textureUploader.setViewportSize(rendererWidth, rendererHeight);
+        }
+        frameDirtyColumns.setWidth(rendererWidth);
+        //  Notify raycaster
+        raycaster.setViewportSize(rendererWidth, rendererHeight);
+    }
+
+    /**
+     * Sets up casting palette indices, if everything it needs is available
+     */
+    private void initIndexedColor(ContextCapabilities capabilities) {
+        if (!(raycaster instanceof IndexedRaycaster)) {
+            Main.LOGGER.info("{} can't cast palette indices, casting RGBA", raycaster.getClass().getSimpleName());
+        } else if (pipelined) {
+            Main.LOGGER.info("Palette indices aren't cast on a render thread, casting RGBA");
+        } else if (!capabilities.OpenGL20) {
+            Main.LOGGER.info("Palette lookup needs OpenGL 2.0, casting RGBA");
+        } else {
+            paletteShader = new PaletteShader();
+            ((IndexedRaycaster) raycaster).setIndexedColor(true);
+            Main.LOGGER.debug("Casting palette indices");
+        }
+    }
+
+    /**
+     * Allocates the bound output texture at its current size, a byte per texel for palette indices or four for RGBA
+     */
+    private void allocateTexture() {
+        if (paletteShader != null) {
+            glTexImage2D(GL_TEXTURE_2D, 0, GL_LUMINANCE8,
+                    renderTextureWidth, renderTextureHeight,
+                    0, GL_LUMINANCE, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+        } else {
+            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA,
+                    renderTextureWidth, renderTextureHeight,
+                    0, GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+        }
+    }
+
+    private TextureUploader createTextureUploader(ContextCapabilities capabilities) {
+        if (pixelBufferCount > 0) {
+            if (capabilities.OpenGL21 || capabilities.GL_ARB_pixel_buffer_object) {
+                Main.LOGGER.debug("Streaming frames through {} pixel buffers", pixelBufferCount);
+                return new PixelBufferTextureUploader(pixelBufferCount);
+            }
+            Main.LOGGER.info("Pixel buffer objects are unavailable, uploading from client memory");
+        }
+        return new ClientTextureUploader();
     }
 
+    /**
+     * Records a new display size. Dragging a window edge fires this many times a frame, so the render area is only
+     * resized once, at the start of the next frame
+     *
+     * @param newWidth  The new width of the display
+     * @param newHeight The new height of the display
+     */
     public void onViewportSizeChanged(int newWidth, int newHeight) {
         displayWidth = newWidth;
         displayHeight = newHeight;
-        //  TODO: This is where we'd implement supersampling
-        rendererWidth = displayWidth;
-        rendererHeight = displayHeight;
-        //  Resize buffers
-        columnPixels = new int[rendererHeight];
-        renderTextureBuffer = BufferUtils.createByteBuffer(rendererHeight * rendererWidth * Integer.BYTES).
-                order(ByteOrder.BIG_ENDIAN).
-                asIntBuffer();
-        //  Resize texture
-        setTextureSize();
-        glBindTexture(GL_TEXTURE_2D, renderTexture);
-        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA,
-                renderTextureWidth, renderTextureHeight,
-                0, GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer) null);
-        glBindTexture(GL_TEXTURE_2D, 0);
-        //  Notify raycaster
-        raycaster.setViewportSize(rendererWidth, rendererHeight);
+        resizePending = true;
     }
 
-    private void setTextureSize() {
+    private void resizeRenderArea() {
+        rendererWidth = scaledSize(displayWidth);
+        rendererHeight = scaledSize(displayHeight);
+        allocatedBytesBeforeResize = getAllocatedBytes();
+        long textureBytes = 0;
+        //  Resize texture, if it no longer fits
+        if (sizeTexture()) {
+            glBindTexture(GL_TEXTURE_2D, renderTexture);
+            allocateTexture();
+            glBindTexture(GL_TEXTURE_2D, 0);
+            textureBytes = getTextureMemoryBytes();
+        }
+        if (frameProducer != null) {
+            //  The render thread resizes its buffers and notifies the raycaster between frames
+            frameProducer.requestViewportSize(rendererWidth, rendererHeight);
+        } else {
+            //  Resize buffers, the whole of the resized texture needs to be painted
+            stripFiller.setViewportSize(rendererWidth, rendererHeight);
+            if (indexedUploader != null) {
+                indexedUploader.setViewportSize(rendererWidth, rendererHeight);
+            } else {
+                textureUploader.setViewportSize(rendererWidth, rendererHeight);
+            }
+            frameDirtyColumns.setWidth(rendererWidth);
+            //  Notify raycaster
+            raycaster.setViewportSize(rendererWidth, rendererHeight);
+        }
+        resizeCount++;
+        lastResizeTextureBytes = textureBytes;
+        Main.LOGGER.debug("Render area resized to {}x{}, allocating {} bytes",
+                rendererWidth, rendererHeight, getLastResizeAllocatedBytes());
+    }
+
+    /**
+     * Sizes the output texture to hold the render area: exactly if non-power-of-two textures are supported, otherwise
+     * growing it to powers of 2 if it doesn't fit
+     *
+     * @return True if the texture was resized and needs to be allocated again
+     */
+    private boolean sizeTexture() {
         //  While this appears backwards, it actually is correct
         //  Our texture is rotated 90 degrees so that the column space of the raycaster is actually the
         //  row space of our texture, which is required for bulk pixel transfer to the GPU since texture data
         //  is row-major
-        renderTextureWidth = nextPowerOfTwo(rendererHeight);
-        renderTextureHeight = nextPowerOfTwo(renderTextureWidth);
-        Main.LOGGER.debug("Texture resized to {}x{} (renderArea {}x{})",
-                renderTextureWidth, renderTextureHeight, rendererWidth, rendererHeight);
+        int textureWidth;
+        int textureHeight;
+        if (exactTextureSize) {
+            textureWidth = Math.max(1, rendererHeight);
+            textureHeight = Math.max(1, rendererWidth);
+        } else {
+            //  Keep the larger of the old and new sizes on each axis, so alternating between a wide and a tall area
+            //  doesn't reallocate each time
+            textureWidth = Math.max(renderTextureWidth, nextPowerOfTwo(rendererHeight));
+            textureHeight = Math.max(renderTextureHeight, nextPowerOfTwo(rendererWidth));
+        }
+        boolean resized = textureWidth != renderTextureWidth || textureHeight != renderTextureHeight;
+        if (resized) {
+            renderTextureWidth = textureWidth;
+            renderTextureHeight = textureHeight;
+            Main.LOGGER.debug("Texture resized to {}x{} (renderArea {}x{}), {} bytes",
+                    renderTextureWidth, renderTextureHeight, rendererWidth, rendererHeight, getTextureMemoryBytes());
+        }
         renderTextureU = rendererHeight / (float) renderTextureWidth;
         renderTextureV = rendererWidth / (float) renderTextureHeight;
+        return resized;
+    }
+
+    /**
+     * Gets the size of the output texture's storage, as allocated. Drivers may pad it
+     *
+     * @return The size, in bytes
+     */
+    public long getTextureMemoryBytes() {
+        return (long) renderTextureWidth * renderTextureHeight * (paletteShader != null ? 1 : Integer.BYTES);
+    }
+
+    /**
+     * Gets the memory allocated by the strip filler, upload buffers and render thread's frames so far. The texture is
+     * counted separately
+     *
+     * @return The total, in bytes
+     */
+    private long getAllocatedBytes() {
+        long allocatedBytes = stripFiller.getAllocatedBytes();
+        if (frameProducer != null) {
+            allocatedBytes += frameProducer.getAllocatedBytes();
+        }
+        if (textureUploader != null) {
+            allocatedBytes += textureUploader.getAllocatedBytes();
+        }
+        if (indexedUploader != null) {
+            allocatedBytes += indexedUploader.getAllocatedBytes();
+        }
+        return allocatedBytes;
     }
 
     public void startFrame() {
-        //  Clear column array
-        Arrays.fill(columnPixels, clearColor);
+        if (resizePending) {
+            resizePending = false;
+            resizeRenderArea();
+        }
+        if (frameProducer != null) {
+            //  The render thread preps its own frames
+            return;
+        }
+        //  Clear column arrays
+        stripFiller.startFrame(clearColor);
         //  Notify raycaster to prep for calls to fillStrip()
         raycaster.startFrame();
+        //  Find out what changed. Columns left dirty by a resize stay dirty
+        if (dirtyTracking) {
+            raycaster.collectDirtyColumns(frameDirtyColumns);
+        } else {
+            frameDirtyColumns.markAllDirty();
+        }
     }
 
     public void renderFrame() {
+        FrameTimer frameTimer = main.getFrameTimer();
+        if (frameProducer != null) {
+            //  Raycasting happens on the render thread
+            frameTimer.endPhase(FramePhase.RAYCAST);
+            presentLatestFrame();
+            return;
+        }
+        //  The texture already holds an unchanged scene
+        if (frameDirtyColumns.isEmpty()) {
+            frameTimer.endPhase(FramePhase.RAYCAST);
+            return;
+        }
         //  Repeatedly fetch a column of pixels from the raycaster
         glBindTexture(GL_TEXTURE_2D, renderTexture);
-        renderTextureBuffer.rewind();
-        for (int xPos = 0; xPos < rendererWidth; xPos++) {
-            raycaster.fillStrip(columnPixels, xPos);
-            renderTextureBuffer.put(columnPixels);
+        if (indexedUploader != null) {
+            ByteBuffer indices = indexedUploader.beginFrame();
+            stripFiller.fill(indices, frameDirtyColumns);
+            frameTimer.endPhase(FramePhase.RAYCAST);
+            indexedUploader.endFrame(frameDirtyColumns);
+            glBindTexture(GL_TEXTURE_2D, 0);
+            frameDirtyColumns.clear();
+            return;
+        }
+        IntBuffer pixels = textureUploader.beginFrame();
+        stripFiller.fill(pixels, frameDirtyColumns);
+        frameTimer.endPhase(FramePhase.RAYCAST);
+        boolean uploaded = textureUploader.endFrame(frameDirtyColumns);
+        glBindTexture(GL_TEXTURE_2D, 0);
+        if (uploaded) {
+            frameDirtyColumns.clear();
+        } else {
+            //  The texture holds whatever was there before, so cast and upload all of it again next frame
+            frameDirtyColumns.markAllDirty();
         }
-        renderTextureBuffer.flip();
+    }
+
+    private void presentLatestFrame() {
+        TripleBuffer<RenderedFrame> frames = frameProducer.getFrames();
+        //  Keep showing what's already in the texture if nothing new has been rendered
+        if (!frames.acquire()) {
+            return;
+        }
+        RenderedFrame frame = frames.getFront();
+        //  Frames rendered before a resize took effect don't fit the texture anymore
+        if (frame.getWidth() != rendererWidth || frame.getHeight() != rendererHeight) {
+            return;
+        }
+        glBindTexture(GL_TEXTURE_2D, renderTexture);
         //  We purposefully reverse width and height here because our texture is rotated 90 degrees
         //noinspection SuspiciousNameCombination
         glTexSubImage2D(GL_TEXTURE_2D, 0, 0, 0, rendererHeight, rendererWidth,
-                GL_RGBA, GL_UNSIGNED_BYTE, renderTextureBuffer);
+                GL_RGBA, GL_UNSIGNED_INT_8_8_8_8, frame.getPixels());
         glBindTexture(GL_TEXTURE_2D, 0);
     }
 
@@ -175,6 +534,11 @@ public class Renderer {
         //  Bind output texture
         glEnable(GL_TEXTURE_2D);
         glBindTexture(GL_TEXTURE_2D, renderTexture);
+        if (paletteShader != null) {
+            //  The palette may have been replaced along with the scene
+            paletteShader.setPalette(((IndexedRaycaster) raycaster).getPalette());
+            paletteShader.bind();
+        }
         //  Enable alpha blending
         glEnable(GL_BLEND);
         glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
@@ -191,10 +555,77 @@ public class Renderer {
         glTexCoord2f(0, renderTextureV);
         glVertex2f(displayWidth, 0);
         glEnd();
+        if (paletteShader != null) {
+            paletteShader.unbind();
+        }
         //  Finish, unbind texture
         glBindTexture(GL_TEXTURE_2D, 0);
     }
 
+    /**
+     * Releases the renderer's threads, buffers and GL objects. Must be called with the GL context still current
+     */
+    public void destroy() {
+        //  Stop the render thread before releasing what it uses
+        if (frameProducer != null) {
+            frameProducer.stop();
+        }
+        //  Release strip workers
+        stripFiller.shutdown();
+        //  Release upload buffers
+        if (textureUploader != null) {
+            textureUploader.destroy();
+        }
+        if (indexedUploader != null) {
+            indexedUploader.destroy();
+        }
+        if (paletteShader != null) {
+            paletteShader.destroy();
+        }
+        //  Release the output texture
+        if (renderTexture != 0) {
+            glDeleteTextures(renderTexture);
+            renderTexture = 0;
+        }
+    }
+
+    public int getRendererWidth() {
+        return rendererWidth;
+    }
+
+    public int getRendererHeight() {
+        return rendererHeight;
+    }
+
+    /**
+     * Gets the number of times the render area has been resized. Bursts of resize events count once
+     *
+     * @return The number of resizes since init
+     */
+    public int getResizeCount() {
+        return resizeCount;
+    }
+
+    /**
+     * Gets the memory the last resize allocated for the output texture, upload buffers, column arrays and frames. Zero
+     * when everything fit in what was already allocated. With a render thread, its column arrays and frames are
+     * resized as it gets to them, so they are counted over the frames after the resize
+     *
+     * @return The size, in bytes
+     */
+    public long getLastResizeAllocatedBytes() {
+        return lastResizeTextureBytes + getAllocatedBytes() - allocatedBytesBeforeResize;
+    }
+
+    /**
+     * Gets the ring frames are handed from the render thread through, for its dropped and stale frame counts
+     *
+     * @return The frame ring, or null if not pipelined
+     */
+    public TripleBuffer<RenderedFrame> getFrameRing() {
+        return frameProducer != null ? frameProducer.getFrames() : null;
+    }
+
     private int nextPowerOfTwo(int num) {
         //  http://stackoverflow.com/a/365068
         --num;
@@ -23,6 +23,11 @@ public class RendererTestRaycaster implements Raycaster {
 
     }
 
+    @Override
+    public void collectDirtyColumns(DirtyColumns dirtyColumns) {
+        //  The pattern only depends on the viewport size, which the renderer tracks itself
+    }
+
     @Override
     public void fillStrip(int[] pixelOutput, int x) {
         //  Top half is a black to white gradient
@@ -0,0 +1,339 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.ColorUtils;
+import edu.purdue.ieee.csociety.raycasting.world.SpriteSet;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Draws the sprites of a {@link SpriteSet} over the walls, floors and ceilings cast by {@link AJRaycaster}.
+ * <p>
+ * Once a frame, {@link #prepare} finds the sprites in front of the camera: the spatial hash of the set is queried
+ * for the bounding box of the view frustum out to the view distance, each sprite found is moved into camera space,
+ * and those on screen are sorted far to near by packing their depth and index into longs, which sort in place
+ * without allocating. Their screen rectangles, mip levels and texture steps are then laid out in draw order for the
+ * strip fillers, which may draw any range of columns from any thread.
+ * <p>
+ * Strips draw every sprite overlapping them in that order, skipping a sprite's column where the wall cast in it is
+ * closer, so sprites are hidden by walls and nearer sprites are painted over further ones. Texels with less than
+ * half alpha are left out, which is the whole of the sprite's shape. The frustum box is padded by a tile, so sprites
+ * wider than two tiles may pop in at the edges of the screen.
+ */
+class SpriteRenderer {
+
+    /**
+     * Closest a sprite may be and still be drawn, past which it would fill the screen
+     */
+    private static final double NEAR_DISTANCE = 0.05;
+
+    /**
+     * Margin around the frustum's bounding box, so sprites centered just outside the frustum still show their near
+     * half
+     */
+    private static final double FRUSTUM_MARGIN = 1;
+
+    /**
+     * Least alpha a texel must have to be drawn
+     */
+    private static final int ALPHA_THRESHOLD = 0x80;
+
+    private final SpriteSet sprites;
+    private final TextureAtlas textures;
+    private final double viewDistance;
+
+    private int width;
+    private int height;
+
+    /**
+     * Sprites found by the last query, and the sort keys of those on screen: depth bits above sprite index
+     */
+    private int[] candidates;
+    private long[] sortKeys;
+
+    /**
+     * Sprites to draw this frame, far to near. Each has a depth, an on-screen rectangle placed at left, top, a
+     * visible range of columns, the level to draw it from and its texture steps per column and per row, in fixed
+     * point
+     */
+    private int visibleCount;
+    private double[] depths;
+    private int[] lefts;
+    private int[] tops;
+    private int[] widths;
+    private int[] heights;
+    private int[] columnStarts;
+    private int[] columnEnds;
+    private int[] texelOffsets;
+    private int[] levelShifts;
+    private int[] uSteps;
+    private int[] vSteps;
+
+    /**
+     * Visible columns of the sprites drawn last frame, which must be redrawn when the sprites change
+     */
+    private int previousCount;
+    private int[] previousStarts;
+    private int[] previousEnds;
+    /**
+     * The revision of the sprites as of the last frame
+     */
+    private int revision;
+
+    /**
+     * Creates a renderer for a set of sprites
+     *
+     * @param sprites      The sprites
+     * @param textures     The textures to draw them with. Sprite textures wrap around the atlas
+     * @param viewDistance The furthest a sprite may be from the camera and still be drawn, in tiles
+     */
+    SpriteRenderer(SpriteSet sprites, TextureAtlas textures, double viewDistance) {
+        this.sprites = sprites;
+        this.textures = textures;
+        this.viewDistance = viewDistance;
+        revision = sprites.getRevision() - 1;
+        allocate(0);
+    }
+
+    private void allocate(int capacity) {
+        candidates = new int[capacity];
+        sortKeys = new long[capacity];
+        depths = new double[capacity];
+        lefts = new int[capacity];
+        tops = new int[capacity];
+        widths = new int[capacity];
+        heights = new int[capacity];
+        columnStarts = new int[capacity];
+        columnEnds = new int[capacity];
+        texelOffsets = new int[capacity];
+        levelShifts = new int[capacity];
+        uSteps = new int[capacity];
+        vSteps = new int[capacity];
+        previousStarts = new int[capacity];
+        previousEnds = new int[capacity];
+    }
+
+    SpriteSet getSprites() {
+        return sprites;
+    }
+
+    TextureAtlas getTextures() {
+        return textures;
+    }
+
+    /**
+     * Finds, sorts and lays out the sprites to draw this frame
+     *
+     * @param width  The width of the viewport
+     * @param height The height of the viewport
+     * @param posX   The x position of the camera, in map tiles
+     * @param posY   The y position of the camera, in map tiles
+     * @param dirX   The x component of the camera direction
+     * @param dirY   The y component of the camera direction
+     * @param planeX The x component of the camera plane
+     * @param planeY The y component of the camera plane
+     */
+    void prepare(int width, int height, double posX, double posY, double dirX, double dirY, double planeX,
+                 double planeY) {
+        this.width = width;
+        this.height = height;
+        SpriteSet sprites = this.sprites;
+        if (sprites.getCount() > candidates.length) {
+            //  Keep last frame's columns, to be invalidated
+            int[] columnStarts = this.columnStarts;
+            int[] columnEnds = this.columnEnds;
+            allocate(Math.max(sprites.getCount(), candidates.length * 2));
+            System.arraycopy(columnStarts, 0, this.columnStarts, 0, visibleCount);
+            System.arraycopy(columnEnds, 0, this.columnEnds, 0, visibleCount);
+        }
+        //  The frustum is the triangle between the camera and the ends of the far plane
+        double farLeftX = posX + (dirX - planeX) * viewDistance;
+        double farLeftY = posY + (dirY - planeY) * viewDistance;
+        double farRightX = posX + (dirX + planeX) * viewDistance;
+        double farRightY = posY + (dirY + planeY) * viewDistance;
+        int found = sprites.query(
+                Math.min(posX, Math.min(farLeftX, farRightX)) - FRUSTUM_MARGIN,
+                Math.min(posY, Math.min(farLeftY, farRightY)) - FRUSTUM_MARGIN,
+                Math.max(posX, Math.max(farLeftX, farRightX)) + FRUSTUM_MARGIN,
+                Math.max(posY, Math.max(farLeftY, farRightY)) + FRUSTUM_MARGIN,
+                candidates);
+        //  Inverse of the camera matrix [plane dir], taking sprites into camera space, where the screen spans -1 to 1
+        //  across at a depth of 1
+        double inverseDeterminant = 1 / (planeX * dirY - dirX * planeY);
+        double planeLength = Math.hypot(planeX, planeY);
+        int onScreen = 0;
+        for (int i = 0; i < found; i++) {
+            int sprite = candidates[i];
+            double relativeX = sprites.getX(sprite) - posX;
+            double relativeY = sprites.getY(sprite) - posY;
+            double depth = inverseDeterminant * (planeX * relativeY - planeY * relativeX);
+            if (depth < NEAR_DISTANCE || depth > viewDistance) {
+                continue;
+            }
+            double across = inverseDeterminant * (dirY * relativeX - dirX * relativeY);
+            //  Cull sprites wholly off either side of the screen
+            double halfWidth = sprites.getScale(sprite) / (2 * planeLength);
+            if ((across + halfWidth) / depth < -1 || (across - halfWidth) / depth > 1) {
+                continue;
+            }
+            //  Positive floats sort like their bits
+            sortKeys[onScreen++] = (long) Float.floatToIntBits((float) depth) << 32 | sprite;
+        }
+        Arrays.sort(sortKeys, 0, onScreen);
+        System.arraycopy(columnStarts, 0, previousStarts, 0, visibleCount);
+        System.arraycopy(columnEnds, 0, previousEnds, 0, visibleCount);
+        previousCount = visibleCount;
+        visibleCount = 0;
+        for (int i = onScreen - 1; i >= 0; i--) {
+            layOut((int) sortKeys[i], posX, posY, dirX, dirY, planeX, planeY, inverseDeterminant, planeLength);
+        }
+    }
+
+    /**
+     * Adds a sprite to the end of this frame's draw order, if any of it lands on screen
+     */
+    private void layOut(int sprite, double posX, double posY, double dirX, double dirY, double planeX,
+                        double planeY, double inverseDeterminant, double planeLength) {
+        double relativeX = sprites.getX(sprite) - posX;
+        double relativeY = sprites.getY(sprite) - posY;
+        double depth = inverseDeterminant * (planeX * relativeY - planeY * relativeX);
+        double across = inverseDeterminant * (dirY * relativeX - dirX * relativeY);
+        float scale = sprites.getScale(sprite);
+        //  Stand the sprite on the floor, which is as far below the horizon as a wall at its depth, and stretch it
+        //  across like the walls, which span the camera plane
+        int lineHeight = (int) Math.min(height / depth, Integer.MAX_VALUE / 4);
+        int spriteHeight = (int) (lineHeight * scale);
+        int spriteWidth = (int) Math.min(width / (2 * planeLength) / depth * scale, Integer.MAX_VALUE / 4);
+        int center = (int) (width / 2.0 * (1 + across / depth));
+        int left = center - spriteWidth / 2;
+        int columnStart = Math.max(0, left);
+        int columnEnd = (int) Math.min(width, (long) left + spriteWidth);
+        int top = height / 2 + lineHeight / 2 - spriteHeight;
+        if (spriteHeight <= 0 || columnStart >= columnEnd || top >= height || top + spriteHeight <= 0) {
+            return;
+        }
+        int texture = sprites.getTexture(sprite) % textures.getTextureCount();
+        int level = textures.selectLevel(Math.min(spriteWidth, spriteHeight));
+        int levelSize = textures.getLevelSize(level);
+        int slot = visibleCount++;
+        depths[slot] = depth;
+        lefts[slot] = left;
+        tops[slot] = top;
+        widths[slot] = spriteWidth;
+        heights[slot] = spriteHeight;
+        columnStarts[slot] = columnStart;
+        columnEnds[slot] = columnEnd;
+        texelOffsets[slot] = textures.getLevelOffset(texture, level);
+        levelShifts[slot] = Integer.numberOfTrailingZeros(levelSize);
+        uSteps[slot] = (int) (((long) levelSize << TextureAtlas.FRACTION_BITS) / spriteWidth);
+        vSteps[slot] = (int) (((long) levelSize << TextureAtlas.FRACTION_BITS) / spriteHeight);
+    }
+
+    /**
+     * Invalidates the columns sprites covered last frame or cover this frame, if any sprite has changed since. Must
+     * be called after {@link #prepare}
+     *
+     * @param dirtyColumns The columns to mark
+     */
+    void markChangedColumns(DirtyColumns dirtyColumns) {
+        int revision = sprites.getRevision();
+        if (revision == this.revision) {
+            return;
+        }
+        this.revision = revision;
+        for (int i = 0; i < previousCount; i++) {
+            dirtyColumns.markDirty(previousStarts[i], previousEnds[i]);
+        }
+        for (int i = 0; i < visibleCount; i++) {
+            dirtyColumns.markDirty(columnStarts[i], columnEnds[i]);
+        }
+    }
+
+    /**
+     * Draws the sprites over a range of columns, after everything else in them has been written. The position of the
+     * output is left unchanged
+     *
+     * @param output        The column-major output, with column xStart at outputOffset
+     * @param outputOffset  The index of the first pixel of column xStart in the output
+     * @param xStart        The first column
+     * @param xEnd          The column after the last column
+     * @param wallDistances The distance to the wall cast in each column
+     */
+    void fillColumns(IntBuffer output, int outputOffset, int xStart, int xEnd, double[] wallDistances) {
+        int[] texels = textures.getTexels();
+        int height = this.height;
+        for (int slot = 0; slot < visibleCount; slot++) {
+            int start = Math.max(xStart, columnStarts[slot]);
+            int end = Math.min(xEnd, columnEnds[slot]);
+            if (start >= end) {
+                continue;
+            }
+            double depth = depths[slot];
+            int top = tops[slot];
+            int first = Math.max(0, top);
+            int last = Math.min(height, top + heights[slot]);
+            int levelShift = levelShifts[slot];
+            int step = vSteps[slot];
+            for (int x = start; x < end; x++) {
+                if (depth >= wallDistances[x]) {
+                    continue;
+                }
+                int column = texelOffsets[slot] + (columnU(slot, x) << levelShift);
+                int pixel = outputOffset + (x - xStart) * height;
+                int v = (first - top) * step;
+                for (int y = first; y < last; y++) {
+                    int texel = texels[column + (v >>> TextureAtlas.FRACTION_BITS)];
+                    if (ColorUtils.getAlpha(texel) >= ALPHA_THRESHOLD) {
+                        output.put(pixel + y, texel);
+                    }
+                    v += step;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the sprites over a single strip, after everything else in it has been written
+     *
+     * @param pixelOutput  The strip
+     * @param x            The column of the strip
+     * @param wallDistance The distance to the wall cast in the column
+     */
+    void fillColumn(int[] pixelOutput, int x, double wallDistance) {
+        int[] texels = textures.getTexels();
+        for (int slot = 0; slot < visibleCount; slot++) {
+            if (x < columnStarts[slot] || x >= columnEnds[slot] || depths[slot] >= wallDistance) {
+                continue;
+            }
+            int top = tops[slot];
+            int first = Math.max(0, top);
+            int last = Math.min(height, top + heights[slot]);
+            int step = vSteps[slot];
+            int column = texelOffsets[slot] + (columnU(slot, x) << levelShifts[slot]);
+            int v = (first - top) * step;
+            for (int y = first; y < last; y++) {
+                int texel = texels[column + (v >>> TextureAtlas.FRACTION_BITS)];
+                if (ColorUtils.getAlpha(texel) >= ALPHA_THRESHOLD) {
+                    pixelOutput[y] = texel;
+                }
+                v += step;
+            }
+        }
+    }
+
+    /**
+     * Gets the column of a sprite's level drawn in a screen column
+     */
+    private int columnU(int slot, int x) {
+        return (int) ((long) (x - lefts[slot]) * uSteps[slot] >>> TextureAtlas.FRACTION_BITS);
+    }
+
+    /**
+     * Gets the number of sprites drawn this frame
+     *
+     * @return The number of sprites on screen and not too far away
+     */
+    int getVisibleCount() {
+        return visibleCount;
+    }
+}
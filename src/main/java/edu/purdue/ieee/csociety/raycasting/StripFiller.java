@@ -0,0 +1,322 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Drives a {@link Raycaster} to fill a column-major pixel buffer, one strip per column.
+ * <p>
+ * If the raycaster is a {@link ParallelRaycaster} and more than one worker is configured, the column range is split
+ * into slices which are filled concurrently on a {@link ForkJoinPool}. Each slice has its own column buffer and
+ * writes straight into its own region of the output buffer, so no synchronization is needed beyond the fork/join.
+ * <p>
+ * Strips of an {@link IndexedRaycaster} can be filled as palette indices instead, into a byte buffer of the same
+ * layout, with the same slicing.
+ */
+public class StripFiller {
+
+    /**
+     * Number of slices each worker is given, so that work stealing can even out columns of uneven cost
+     */
+    private static final int SLICES_PER_WORKER = 4;
+
+    /**
+     * The raycaster being driven
+     */
+    private final Raycaster raycaster;
+    /**
+     * Whether the raycaster allows concurrent strip filling
+     */
+    private final boolean parallelCapable;
+
+    /**
+     * Width of the viewport (in pixels)
+     */
+    private int width;
+    /**
+     * Height of the viewport (in pixels)
+     */
+    private int height;
+
+    /**
+     * Number of worker threads to fill strips with
+     */
+    private int workerCount;
+    /**
+     * Pool used to fill strips in parallel, null when filling serially
+     */
+    private ForkJoinPool workerPool;
+    /**
+     * Reusable column arrays, one per slice. Serial filling only uses the first
+     */
+    private int[][] sliceColumnPixels;
+    /**
+     * Reusable column arrays of palette indices, one per slice, once indexed strips have been filled
+     */
+    private byte[][] sliceColumnIndices;
+    /**
+     * Bytes of column arrays allocated over the life of the filler. Only written by the thread filling strips, and may
+     * be read from others
+     */
+    private volatile long allocatedBytes;
+
+    public StripFiller(Raycaster raycaster) {
+        this.raycaster = raycaster;
+        this.parallelCapable = raycaster instanceof ParallelRaycaster;
+        this.workerCount = 1;
+        this.sliceColumnPixels = new int[1][0];
+        this.sliceColumnIndices = new byte[1][0];
+    }
+
+    /**
+     * Sets the number of worker threads used to fill strips. Only takes effect if the raycaster is a
+     * {@link ParallelRaycaster}
+     *
+     * @param workerCount The number of workers, 1 to fill serially on the calling thread
+     */
+    public void setWorkerCount(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be positive");
+        }
+        shutdown();
+        this.workerCount = parallelCapable ? workerCount : 1;
+        if (this.workerCount > 1) {
+            workerPool = new ForkJoinPool(this.workerCount);
+            Main.LOGGER.debug("Filling strips with {} workers", this.workerCount);
+        } else if (workerCount > 1) {
+            Main.LOGGER.info("{} is not a ParallelRaycaster, filling strips serially",
+                    raycaster.getClass().getSimpleName());
+        }
+        allocateColumnBuffers();
+    }
+
+    /**
+     * Gets the number of worker threads used to fill strips
+     *
+     * @return The number of workers, 1 if filling serially
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Resizes the column buffers, if the height changed. Does not notify the raycaster
+     *
+     * @param width  The width of the viewport
+     * @param height The height of the viewport
+     */
+    public void setViewportSize(int width, int height) {
+        this.width = width;
+        //  Columns are a full height long, so only a change of height needs new ones
+        if (height != this.height) {
+            this.height = height;
+            allocateColumnBuffers();
+        }
+    }
+
+    private void allocateColumnBuffers() {
+        int slices = workerCount > 1 ? workerCount * SLICES_PER_WORKER : 1;
+        sliceColumnPixels = new int[slices][height];
+        //noinspection NonAtomicOperationOnVolatileField
+        allocatedBytes += (long) slices * height * Integer.BYTES;
+        //  Only allocated once indexed strips are filled
+        sliceColumnIndices = new byte[slices][0];
+    }
+
+    /**
+     * Gets the memory allocated for column arrays over the life of the filler. May be called from any thread
+     *
+     * @return The total, in bytes
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Clears the column buffers. To be called before the raycaster's {@link Raycaster#startFrame()}
+     *
+     * @param clearColor The color to clear to
+     */
+    public void startFrame(int clearColor) {
+        for (int[] columnPixels : sliceColumnPixels) {
+            Arrays.fill(columnPixels, clearColor);
+        }
+    }
+
+    /**
+     * Fills every column of the viewport into the output buffer, starting at its current position.
+     * The position of the output buffer is advanced past the written pixels.
+     *
+     * @param output The buffer to fill, column-major, with at least width * height remaining
+     */
+    public void fill(IntBuffer output) {
+        if (workerPool == null) {
+            raycaster.fillStrips(output, sliceColumnPixels[0], 0, width);
+        } else {
+            workerPool.invoke(new SliceTask(output, null, output.position(), null, 0, sliceColumnPixels.length));
+            output.position(output.position() + width * height);
+        }
+    }
+
+    /**
+     * Fills every column of the viewport into the output buffer as palette indices, starting at its current position.
+     * The position of the output buffer is advanced past the written pixels. The raycaster must be an
+     * {@link IndexedRaycaster}
+     *
+     * @param output The buffer to fill, column-major, with at least width * height remaining
+     */
+    public void fill(ByteBuffer output) {
+        allocateColumnIndices();
+        if (workerPool == null) {
+            ((IndexedRaycaster) raycaster).fillIndexedStrips(output, sliceColumnIndices[0], 0, width);
+        } else {
+            workerPool.invoke(new SliceTask(null, output, output.position(), null, 0, sliceColumnIndices.length));
+            output.position(output.position() + width * height);
+        }
+    }
+
+    /**
+     * Fills the dirty columns of the viewport into the output buffer as palette indices, each at its offset of
+     * x * height from the buffer's current position. Pixels of clean columns are left untouched, as is the position
+     * of the buffer. The raycaster must be an {@link IndexedRaycaster}
+     *
+     * @param output The buffer to fill, column-major, with at least width * height remaining
+     * @param dirty  The columns to fill
+     */
+    public void fill(ByteBuffer output, DirtyColumns dirty) {
+        allocateColumnIndices();
+        if (dirty.isAllDirty()) {
+            int position = output.position();
+            fill(output);
+            output.position(position);
+        } else if (workerPool == null) {
+            fillDirtyRanges(null, output, output.position(), dirty, 0, 0, width);
+        } else if (!dirty.isEmpty()) {
+            workerPool.invoke(new SliceTask(null, output, output.position(), dirty, 0, sliceColumnIndices.length));
+        }
+    }
+
+    private void allocateColumnIndices() {
+        if (sliceColumnIndices[0].length != height) {
+            sliceColumnIndices = new byte[sliceColumnPixels.length][height];
+            //noinspection NonAtomicOperationOnVolatileField
+            allocatedBytes += (long) sliceColumnPixels.length * height;
+        }
+    }
+
+    /**
+     * Fills the dirty columns of the viewport into the output buffer, each at its offset of x * height from the
+     * buffer's current position. Pixels of clean columns are left untouched, as is the position of the buffer.
+     *
+     * @param output The buffer to fill, column-major, with at least width * height remaining
+     * @param dirty  The columns to fill
+     */
+    public void fill(IntBuffer output, DirtyColumns dirty) {
+        if (dirty.isAllDirty()) {
+            int position = output.position();
+            fill(output);
+            output.position(position);
+        } else if (workerPool == null) {
+            fillDirtyRanges(output, null, output.position(), dirty, 0, 0, width);
+        } else if (!dirty.isEmpty()) {
+            workerPool.invoke(new SliceTask(output, null, output.position(), dirty, 0, sliceColumnPixels.length));
+        }
+    }
+
+    /**
+     * Fills the dirty columns within [xStart, xEnd) with the column array of a slice, into whichever of the RGBA and
+     * indexed outputs is not null
+     */
+    private void fillDirtyRanges(IntBuffer output, ByteBuffer indexedOutput, int outputOffset, DirtyColumns dirty,
+                                 int slice, int xStart, int xEnd) {
+        int rangeEnd;
+        for (int rangeStart = dirty.nextDirtyColumn(xStart); rangeStart >= 0 && rangeStart < xEnd;
+             rangeStart = dirty.nextDirtyColumn(rangeEnd)) {
+            rangeEnd = Math.min(dirty.nextCleanColumn(rangeStart), xEnd);
+            fillRange(output, indexedOutput, outputOffset, slice, rangeStart, rangeEnd);
+        }
+    }
+
+    /**
+     * Fills the columns [xStart, xEnd) with the column array of a slice, into whichever of the RGBA and indexed
+     * outputs is not null
+     */
+    private void fillRange(IntBuffer output, ByteBuffer indexedOutput, int outputOffset, int slice, int xStart,
+                           int xEnd) {
+        //  Each range writes through its own view so positions don't collide
+        if (output != null) {
+            IntBuffer view = output.duplicate();
+            view.position(outputOffset + xStart * height);
+            raycaster.fillStrips(view, sliceColumnPixels[slice], xStart, xEnd);
+        } else {
+            ByteBuffer view = indexedOutput.duplicate();
+            view.position(outputOffset + xStart * height);
+            ((IndexedRaycaster) raycaster).fillIndexedStrips(view, sliceColumnIndices[slice], xStart, xEnd);
+        }
+    }
+
+    /**
+     * Releases the worker threads, if any
+     */
+    public void shutdown() {
+        if (workerPool != null) {
+            workerPool.shutdown();
+            workerPool = null;
+        }
+    }
+
+    /**
+     * Fills a range of slices, splitting until each task covers a single slice
+     */
+    private final class SliceTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The buffer to fill, whichever of the RGBA and indexed outputs is not null
+         */
+        private final IntBuffer output;
+        private final ByteBuffer indexedOutput;
+        private final int outputOffset;
+        /**
+         * The columns to fill, or null for all of them
+         */
+        private final DirtyColumns dirty;
+        private final int firstSlice;
+        private final int endSlice;
+
+        SliceTask(IntBuffer output, ByteBuffer indexedOutput, int outputOffset, DirtyColumns dirty, int firstSlice,
+                  int endSlice) {
+            this.output = output;
+            this.indexedOutput = indexedOutput;
+            this.outputOffset = outputOffset;
+            this.dirty = dirty;
+            this.firstSlice = firstSlice;
+            this.endSlice = endSlice;
+        }
+
+        @Override
+        protected void compute() {
+            if (endSlice - firstSlice > 1) {
+                int mid = (firstSlice + endSlice) >>> 1;
+                invokeAll(new SliceTask(output, indexedOutput, outputOffset, dirty, firstSlice, mid),
+                        new SliceTask(output, indexedOutput, outputOffset, dirty, mid, endSlice));
+                return;
+            }
+            int sliceCount = sliceColumnPixels.length;
+            int xStart = (int) ((long) firstSlice * width / sliceCount);
+            int xEnd = (int) ((long) endSlice * width / sliceCount);
+            if (xStart == xEnd) {
+                return;
+            }
+            if (dirty != null) {
+                fillDirtyRanges(output, indexedOutput, outputOffset, dirty, firstSlice, xStart, xEnd);
+            } else {
+                fillRange(output, indexedOutput, outputOffset, firstSlice, xStart, xEnd);
+            }
+        }
+    }
+}
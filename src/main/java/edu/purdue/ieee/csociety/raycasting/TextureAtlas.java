@@ -0,0 +1,414 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.ColorUtils;
+import edu.purdue.ieee.csociety.raycasting.util.Palette;
+
+import java.util.Arrays;
+
+/**
+ * A set of square wall textures with precomputed mip levels, laid out for sampling vertical strips.
+ * <p>
+ * Every texel of every texture and level is a packed {@link ColorUtils} RGBA int in one array. Each level is stored
+ * column-major, so the texels a wall strip samples from top to bottom are adjacent in memory. Each level halves the
+ * size of the one below it, averaging 2x2 blocks, down to 1x1. Distant walls sample a smaller level, which
+ * avoids the shimmer of skipping texels and keeps far walls from pulling a whole texture through the cache.
+ * <p>
+ * For indexed-color rendering the atlas can be quantized to a {@link Palette}, keeping a byte index of the nearest
+ * palette color alongside every texel, in the same layout.
+ */
+public class TextureAtlas {
+
+    /**
+     * Bits of the fractional part of the fixed-point texture coordinates
+     */
+    public static final int FRACTION_BITS = 16;
+
+    /**
+     * log2 of the width and height of level 0
+     */
+    private final int sizeShift;
+    private final int textureCount;
+    private final int levelCount;
+    /**
+     * Offset of each level within a texture
+     */
+    private final int[] levelOffsets;
+    /**
+     * Number of texels in a texture, across all its levels
+     */
+    private final int textureStride;
+    private final int[] texels;
+    /**
+     * Palette index of every texel, or null if not quantized
+     */
+    private byte[] indexedTexels;
+    /**
+     * The palette the indexed texels were quantized to, or null if they are missing or out of date
+     */
+    private Palette indexedPalette;
+
+    /**
+     * Creates an atlas of opaque black textures
+     *
+     * @param textureSize  The width and height of every texture, in texels. Must be a power of two
+     * @param textureCount The number of textures
+     */
+    public TextureAtlas(int textureSize, int textureCount) {
+        if (Integer.bitCount(textureSize) != 1) {
+            throw new IllegalArgumentException("Texture size must be a power of two");
+        }
+        if (textureCount <= 0) {
+            throw new IllegalArgumentException("Atlas must hold at least one texture");
+        }
+        sizeShift = Integer.numberOfTrailingZeros(textureSize);
+        this.textureCount = textureCount;
+        levelCount = sizeShift + 1;
+        levelOffsets = new int[levelCount];
+        int offset = 0;
+        for (int level = 0; level < levelCount; level++) {
+            levelOffsets[level] = offset;
+            offset += 1 << 2 * (sizeShift - level);
+        }
+        textureStride = offset;
+        if ((long) textureStride * textureCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Atlas of " + textureCount + " " + textureSize + "x" + textureSize +
+                    " textures is too large");
+        }
+        texels = new int[textureStride * textureCount];
+        Arrays.fill(texels, ColorUtils.color(0, 0, 0));
+    }
+
+    /**
+     * Creates an atlas of patterned textures, bricks, planks, stone blocks and tiles in turn, each tinted a different
+     * color
+     *
+     * @param textureSize  The width and height of every texture, in texels. Must be a power of two
+     * @param textureCount The number of textures
+     * @return The atlas
+     */
+    public static TextureAtlas generate(int textureSize, int textureCount) {
+        TextureAtlas atlas = new TextureAtlas(textureSize, textureCount);
+        int[] pixels = new int[textureSize * textureSize];
+        for (int texture = 0; texture < textureCount; texture++) {
+            int tint = ColorUtils.hue((texture + 1) * 97 % 360);
+            for (int y = 0; y < textureSize; y++) {
+                for (int x = 0; x < textureSize; x++) {
+                    //  Work in 64ths of the texture so the patterns look the same at any size
+                    int u = x * 64 / textureSize;
+                    int v = y * 64 / textureSize;
+                    int brightness = pattern(texture % 4, u, v) - (noise(texture, x, y) & 0x1F);
+                    pixels[y * textureSize + x] = ColorUtils.color(
+                            ColorUtils.getRed(tint) * brightness / 255,
+                            ColorUtils.getGreen(tint) * brightness / 255,
+                            ColorUtils.getBlue(tint) * brightness / 255);
+                }
+            }
+            atlas.setTexture(texture, pixels);
+        }
+        return atlas;
+    }
+
+    /**
+     * Creates an atlas of sprite shapes, orbs, pillars, crystals and trees in turn, each tinted a different color and
+     * transparent around the shape
+     *
+     * @param textureSize  The width and height of every texture, in texels. Must be a power of two
+     * @param textureCount The number of textures
+     * @return The atlas
+     */
+    public static TextureAtlas generateSprites(int textureSize, int textureCount) {
+        TextureAtlas atlas = new TextureAtlas(textureSize, textureCount);
+        int[] pixels = new int[textureSize * textureSize];
+        for (int texture = 0; texture < textureCount; texture++) {
+            int tint = ColorUtils.hue((texture + 1) * 139 % 360);
+            for (int y = 0; y < textureSize; y++) {
+                for (int x = 0; x < textureSize; x++) {
+                    int brightness = shape(texture % 4, x * 64 / textureSize, y * 64 / textureSize);
+                    pixels[y * textureSize + x] = brightness == 0 ? ColorUtils.color(0, 0, 0, 0) : ColorUtils.color(
+                            ColorUtils.getRed(tint) * brightness / 255,
+                            ColorUtils.getGreen(tint) * brightness / 255,
+                            ColorUtils.getBlue(tint) * brightness / 255);
+                }
+            }
+            atlas.setTexture(texture, pixels);
+        }
+        return atlas;
+    }
+
+    /**
+     * Gets the brightness of a sprite shape at a point
+     *
+     * @param shape The shape, [0, 4)
+     * @param u     The x coordinate, [0, 64)
+     * @param v     The y coordinate, [0, 64), the bottom row being the floor
+     * @return The brightness, [64, 255], or 0 outside the shape
+     */
+    private static int shape(int shape, int u, int v) {
+        switch (shape) {
+            case 0:
+                //  An orb floating off the floor, lit from the upper left
+                int orbU = u - 32;
+                int orbV = v - 36;
+                if (orbU * orbU + orbV * orbV > 20 * 20) {
+                    return 0;
+                }
+                int lightU = u - 24;
+                int lightV = v - 28;
+                return Math.max(64, 255 - (lightU * lightU + lightV * lightV) / 4);
+            case 1:
+                //  A pillar with a wider base and capital, shaded round
+                int halfWidth = v < 8 || v >= 56 ? 12 : 8;
+                int offset = Math.abs(u - 32);
+                return offset >= halfWidth ? 0 : 255 - offset * 128 / halfWidth;
+            case 2:
+                //  A crystal standing on its point
+                int crystalU = Math.abs(u - 32);
+                int crystalV = v < 24 ? 24 - v : (v - 24) / 2;
+                return crystalU + crystalV >= 20 ? 0 : u < 32 ? 255 : 160;
+            default:
+                //  A tree, a cone of foliage on a trunk
+                if (v >= 48) {
+                    return Math.abs(u - 32) < 4 ? 96 : 0;
+                }
+                return v < 8 || Math.abs(u - 32) * 2 >= v ? 0 : 192 + (v % 8) * 8;
+        }
+    }
+
+    /**
+     * Gets the brightness of a pattern at a point
+     *
+     * @param pattern The pattern, [0, 4)
+     * @param u       The x coordinate, [0, 64)
+     * @param v       The y coordinate, [0, 64)
+     * @return The brightness, [48, 255]
+     */
+    private static int pattern(int pattern, int u, int v) {
+        switch (pattern) {
+            case 0:
+                //  Bricks, every other row offset by half a brick, with dark mortar
+                int brickU = (v / 8) % 2 == 0 ? u : (u + 8) % 64;
+                return v % 8 == 0 || brickU % 16 == 0 ? 96 : 255;
+            case 1:
+                //  Vertical planks with a darker grain
+                return u % 16 == 0 ? 64 : 224 - ((u * 7 + v / 8) % 5) * 16;
+            case 2:
+                //  Large stone blocks with bevelled edges
+                int edge = Math.min(Math.min(u % 32, 31 - u % 32), Math.min(v % 32, 31 - v % 32));
+                return edge == 0 ? 48 : Math.min(255, 160 + edge * 12);
+            default:
+                //  Checkered tiles
+                return (u / 16 + v / 16) % 2 == 0 ? 255 : 176;
+        }
+    }
+
+    private static int noise(int texture, int x, int y) {
+        int hash = texture * 0x27D4EB2D ^ x * 0x165667B1 ^ y * 0x61C88647;
+        hash ^= hash >>> 15;
+        hash *= 0x2C1B3C6D;
+        return hash ^ hash >>> 12;
+    }
+
+    /**
+     * Replaces a texture and regenerates its smaller levels
+     *
+     * @param texture The index of the texture, [0, textureCount)
+     * @param pixels  The texels of the texture, textureSize * textureSize RGBA colors, row-major
+     */
+    public void setTexture(int texture, int[] pixels) {
+        int size = 1 << sizeShift;
+        if (pixels.length < size * size) {
+            throw new IllegalArgumentException("Texture has fewer than " + size + "x" + size + " texels");
+        }
+        int base = texture * textureStride;
+        indexedPalette = null;
+        //  Transpose into level 0
+        for (int u = 0; u < size; u++) {
+            for (int v = 0; v < size; v++) {
+                texels[base + (u << sizeShift) + v] = pixels[v * size + u];
+            }
+        }
+        //  Average each 2x2 block of a level into one texel of the next
+        for (int level = 1; level < levelCount; level++) {
+            int source = base + levelOffsets[level - 1];
+            int sourceShift = sizeShift - level + 1;
+            int target = base + levelOffsets[level];
+            int targetShift = sizeShift - level;
+            for (int u = 0; u < 1 << targetShift; u++) {
+                for (int v = 0; v < 1 << targetShift; v++) {
+                    int column = source + (u << 1 + sourceShift) + (v << 1);
+                    texels[target + (u << targetShift) + v] = average(texels[column], texels[column + 1],
+                            texels[column + (1 << sourceShift)], texels[column + (1 << sourceShift) + 1]);
+                }
+            }
+        }
+    }
+
+    private static int average(int a, int b, int c, int d) {
+        return ColorUtils.color(
+                (ColorUtils.getRed(a) + ColorUtils.getRed(b) + ColorUtils.getRed(c) + ColorUtils.getRed(d) + 2) >> 2,
+                (ColorUtils.getGreen(a) + ColorUtils.getGreen(b) + ColorUtils.getGreen(c) +
+                        ColorUtils.getGreen(d) + 2) >> 2,
+                (ColorUtils.getBlue(a) + ColorUtils.getBlue(b) + ColorUtils.getBlue(c) + ColorUtils.getBlue(d) +
+                        2) >> 2,
+                (ColorUtils.getAlpha(a) + ColorUtils.getAlpha(b) + ColorUtils.getAlpha(c) +
+                        ColorUtils.getAlpha(d) + 2) >> 2);
+    }
+
+    public int getTextureSize() {
+        return 1 << sizeShift;
+    }
+
+    public int getTextureCount() {
+        return textureCount;
+    }
+
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    /**
+     * Gets the width and height of a level
+     *
+     * @param level The level, [0, levelCount)
+     * @return The size, in texels
+     */
+    public int getLevelSize(int level) {
+        return 1 << sizeShift - level;
+    }
+
+    /**
+     * Picks the level to draw a wall strip from, the largest one with no more than one texel per pixel vertically
+     *
+     * @param lineHeight The height of the wall on screen, in pixels
+     * @return The level, [0, levelCount)
+     */
+    public int selectLevel(int lineHeight) {
+        int texelsPerPixel = (1 << sizeShift) / Math.max(lineHeight, 1);
+        if (texelsPerPixel <= 1) {
+            return 0;
+        }
+        return Math.min(31 - Integer.numberOfLeadingZeros(texelsPerPixel), levelCount - 1);
+    }
+
+    /**
+     * Samples a column of a texture into a strip, stepping down it in fixed point
+     *
+     * @param pixelOutput The strip to write to
+     * @param start       The first pixel to write
+     * @param end         The pixel after the last pixel to write
+     * @param texture     The texture, [0, textureCount)
+     * @param level       The level to sample, [0, levelCount)
+     * @param u           The column of the level to sample, [0, levelSize)
+     * @param v           The row of the level at the first pixel, with {@value #FRACTION_BITS} fractional bits.
+     *                    Rows wrap around
+     * @param vStep       The rows to advance per pixel, with {@value #FRACTION_BITS} fractional bits
+     * @param darken      True to halve the brightness, for walls facing y
+     */
+    public void sampleColumn(int[] pixelOutput, int start, int end, int texture, int level, int u, int v, int vStep,
+                             boolean darken) {
+        int levelShift = sizeShift - level;
+        int column = texture * textureStride + levelOffsets[level] + (u << levelShift);
+        int mask = (1 << levelShift) - 1;
+        int[] texels = this.texels;
+        if (darken) {
+            for (int y = start; y < end; y++) {
+                pixelOutput[y] = ColorUtils.darken(texels[column + (v >>> FRACTION_BITS & mask)]);
+                v += vStep;
+            }
+        } else {
+            for (int y = start; y < end; y++) {
+                pixelOutput[y] = texels[column + (v >>> FRACTION_BITS & mask)];
+                v += vStep;
+            }
+        }
+    }
+
+    /**
+     * Maps every texel of every texture and level to the nearest color of a palette, for
+     * {@link #sampleIndexedColumn}. Replacing a texture afterwards leaves the atlas unquantized until this is called
+     * again
+     *
+     * @param palette The palette
+     */
+    public void quantize(Palette palette) {
+        if (indexedTexels == null) {
+            indexedTexels = new byte[texels.length];
+        }
+        //  Neighboring texels are often the same color, so remember the last one looked up
+        int lastColor = ~texels[0];
+        byte lastIndex = 0;
+        for (int i = 0; i < texels.length; i++) {
+            if (texels[i] != lastColor) {
+                lastColor = texels[i];
+                lastIndex = (byte) palette.nearest(lastColor);
+            }
+            indexedTexels[i] = lastIndex;
+        }
+        indexedPalette = palette;
+    }
+
+    /**
+     * Gets the palette the atlas was last quantized to
+     *
+     * @return The palette, or null if the atlas hasn't been quantized since its textures last changed
+     */
+    public Palette getIndexedPalette() {
+        return indexedPalette;
+    }
+
+    /**
+     * Samples a column of a quantized texture into a strip of palette indices, lighting it through a colormap. Takes
+     * the same coordinates as {@link #sampleColumn}
+     *
+     * @param pixelOutput The strip to write to
+     * @param start       The first pixel to write
+     * @param end         The pixel after the last pixel to write
+     * @param texture     The texture, [0, textureCount)
+     * @param level       The level to sample, [0, levelCount)
+     * @param u           The column of the level to sample, [0, levelSize)
+     * @param v           The row of the level at the first pixel, with {@value #FRACTION_BITS} fractional bits
+     * @param vStep       The rows to advance per pixel, with {@value #FRACTION_BITS} fractional bits
+     * @param colormap    The colormap of the light level to draw at, from the palette the atlas was quantized to
+     */
+    public void sampleIndexedColumn(byte[] pixelOutput, int start, int end, int texture, int level, int u, int v,
+                                    int vStep, byte[] colormap) {
+        int levelShift = sizeShift - level;
+        int column = texture * textureStride + levelOffsets[level] + (u << levelShift);
+        int mask = (1 << levelShift) - 1;
+        byte[] indexedTexels = this.indexedTexels;
+        for (int y = start; y < end; y++) {
+            pixelOutput[y] = colormap[indexedTexels[column + (v >>> FRACTION_BITS & mask)] & 0xFF];
+            v += vStep;
+        }
+    }
+
+    /**
+     * Gets the texels of every texture and level, for samplers that walk a level in their own order
+     *
+     * @return The texels, each level column-major
+     */
+    int[] getTexels() {
+        return texels;
+    }
+
+    /**
+     * Gets where a level of a texture starts in {@link #getTexels()}. Texel (u, v) of the level is at
+     * {@code offset + (u << log2(levelSize)) + v}
+     *
+     * @param texture The texture, [0, textureCount)
+     * @param level   The level, [0, levelCount)
+     * @return The offset of the level's first texel
+     */
+    int getLevelOffset(int texture, int level) {
+        return texture * textureStride + levelOffsets[level];
+    }
+
+    /**
+     * Gets the memory taken up by the texels, and their palette indices if quantized
+     *
+     * @return The size, in bytes
+     */
+    public long getSizeBytes() {
+        return (long) texels.length * Integer.BYTES + (indexedTexels != null ? indexedTexels.length : 0);
+    }
+}
@@ -0,0 +1,51 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import java.nio.IntBuffer;
+
+/**
+ * Moves the pixel data of a frame into the bound output texture.
+ * <p>
+ * Each frame, {@link #beginFrame()} hands out a buffer for the raycaster to fill and
+ * {@link #endFrame(DirtyColumns)} uploads its dirty columns to the texture currently bound to {@code GL_TEXTURE_2D}.
+ * Pixels are packed RGBA ints in native byte order, laid out with each column of the viewport as a row of the
+ * (rotated) texture, so column x starts at index x * height.
+ */
+public interface TextureUploader {
+
+    /**
+     * Resizes the upload buffers
+     *
+     * @param width  The width of the viewport, which is the height of the uploaded region
+     * @param height The height of the viewport, which is the width of the uploaded region
+     */
+    void setViewportSize(final int width, final int height);
+
+    /**
+     * Gets the buffer to fill with this frame's pixel data
+     *
+     * @return A buffer positioned at 0 with room for width * height pixels
+     */
+    IntBuffer beginFrame();
+
+    /**
+     * Uploads the dirty columns of the buffer returned by {@link #beginFrame()} to the bound texture, as one region per
+     * range of dirty columns. Pixels of clean columns in the buffer are undefined and are not uploaded. The buffer may
+     * not be used afterwards
+     *
+     * @param dirtyColumns The columns that were filled this frame
+     * @return False if the pixel data was lost and nothing was uploaded, so the texture still holds an older frame
+     */
+    boolean endFrame(final DirtyColumns dirtyColumns);
+
+    /**
+     * Gets the memory allocated for upload buffers over the life of the uploader, counting each reallocation in full
+     *
+     * @return The total, in bytes
+     */
+    long getAllocatedBytes();
+
+    /**
+     * Releases any GL resources and buffers held by the uploader
+     */
+    void destroy();
+}
@@ -0,0 +1,303 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.util.ColorUtils;
+import edu.purdue.ieee.csociety.raycasting.world.Heightmap;
+
+import java.util.Arrays;
+
+/**
+ * A voxel terrain raycaster in the style of Comanche, drawing a {@link Heightmap} a screen column at a time.
+ * <p>
+ * Each column's ray is marched away from the camera over the heightmap, front to back. At every step the terrain
+ * under the ray is projected onto the column; if it reaches above everything drawn so far, the rows between are
+ * filled with its color. The highest row drawn so far is the column's y-buffer, so every pixel is written once, by
+ * the nearest terrain covering it, and the march ends as soon as the column is full. Whatever is left above is sky.
+ * <p>
+ * Steps are a texel long up to the detail distance, then grow in proportion to the distance, so far terrain costs
+ * few steps; each step samples the heightmap level whose texels are about as large as the step. Terrain fades into
+ * the sky towards the view distance, where the march stops. The steps taken and pixels drawn are kept per column, so
+ * the cost of the view distance and detail can be read off each frame.
+ */
+public class VoxelTerrainRaycaster implements ParallelRaycaster {
+
+    private static final int DEFAULT_HEIGHTMAP_SIZE = 1024;
+
+    private static final double DEFAULT_FOV = Math.toRadians(90);
+
+    private static final double DEFAULT_VIEW_DISTANCE = 1024;
+
+    private static final double DEFAULT_DETAIL_DISTANCE = 128;
+
+    /**
+     * Height of the camera above the terrain below it, by default
+     */
+    private static final int DEFAULT_CAMERA_CLEARANCE = 40;
+
+    /**
+     * Size of a unit of height, in texels
+     */
+    private static final double VERTICAL_SCALE = 0.5;
+
+    /**
+     * Distance of the first step, in texels, which keeps terrain under the camera from filling the screen
+     */
+    private static final double NEAR_DISTANCE = 1;
+
+    private int width;
+    private int height;
+
+    private Heightmap heightmap;
+    private int skyColor;
+
+    /**
+     * Camera position, in texels, and height, in units of height
+     */
+    private double posX;
+    private double posY;
+    private double cameraHeight;
+    /**
+     * Camera direction, a unit vector, and camera plane, perpendicular to it with a length of tan(fov / 2)
+     */
+    private double angle;
+    private double dirX;
+    private double dirY;
+    private double planeX;
+    private double planeY;
+    private double fov;
+    private boolean cameraChanged;
+
+    private double viewDistance;
+    private double detailDistance;
+
+    /**
+     * Whether anything changed since the columns were last collected by the renderer
+     */
+    private boolean invalid;
+
+    /**
+     * Ray direction of each column
+     */
+    private double[] rayDirX;
+    private double[] rayDirY;
+    /**
+     * Steps taken and terrain pixels drawn in each column, as last filled
+     */
+    private int[] columnSteps;
+    private int[] columnTerrainPixels;
+
+    public VoxelTerrainRaycaster() {
+        skyColor = ColorUtils.color(150, 190, 230);
+        viewDistance = DEFAULT_VIEW_DISTANCE;
+        detailDistance = DEFAULT_DETAIL_DISTANCE;
+        setViewportSize(0, 0);
+        setHeightmap(Heightmap.generate(DEFAULT_HEIGHTMAP_SIZE, 1));
+        double center = DEFAULT_HEIGHTMAP_SIZE / 2 + 0.5;
+        setCamera(center, center, heightmap.getHeight((int) center, (int) center) + DEFAULT_CAMERA_CLEARANCE, 0,
+                DEFAULT_FOV);
+    }
+
+    /**
+     * Sets the terrain to draw. The camera is left where it is
+     *
+     * @param heightmap The terrain, wrapping around endlessly
+     */
+    public void setHeightmap(Heightmap heightmap) {
+        this.heightmap = heightmap;
+        invalid = true;
+    }
+
+    public Heightmap getHeightmap() {
+        return heightmap;
+    }
+
+    public void setSkyColor(int skyColor) {
+        this.skyColor = skyColor;
+        invalid = true;
+    }
+
+    /**
+     * Places the camera. Takes effect at the start of the next frame
+     *
+     * @param posX         The x position of the camera, in texels
+     * @param posY         The y position of the camera, in texels
+     * @param cameraHeight The height of the camera, in the heightmap's units of height
+     * @param angle        The direction the camera faces, in radians counterclockwise from the +x axis
+     * @param fov          The horizontal field of view, in radians
+     */
+    public void setCamera(double posX, double posY, double cameraHeight, double angle, double fov) {
+        this.posX = posX;
+        this.posY = posY;
+        this.cameraHeight = cameraHeight;
+        this.angle = angle;
+        dirX = Math.cos(angle);
+        dirY = Math.sin(angle);
+        double planeLength = Math.tan(fov / 2);
+        planeX = -dirY * planeLength;
+        planeY = dirX * planeLength;
+        this.fov = fov;
+        cameraChanged = true;
+        invalid = true;
+    }
+
+    public double getCameraX() {
+        return posX;
+    }
+
+    public double getCameraY() {
+        return posY;
+    }
+
+    public double getCameraHeight() {
+        return cameraHeight;
+    }
+
+    public double getCameraAngle() {
+        return angle;
+    }
+
+    public double getFov() {
+        return fov;
+    }
+
+    /**
+     * Sets how far terrain is drawn. Steps, and so frame time, grow with the log of the view distance past the detail
+     * distance
+     *
+     * @param viewDistance The distance at which the march stops, in texels
+     */
+    public void setViewDistance(double viewDistance) {
+        this.viewDistance = viewDistance;
+        invalid = true;
+    }
+
+    public double getViewDistance() {
+        return viewDistance;
+    }
+
+    /**
+     * Sets how far steps stay a texel long. Past it, steps grow in proportion to the distance, so the number of steps
+     * in the rest of the march is about the detail distance times the natural log of the view distance over it
+     *
+     * @param detailDistance The distance at which steps start to grow, in texels
+     */
+    public void setDetailDistance(double detailDistance) {
+        if (detailDistance <= 0) {
+            throw new IllegalArgumentException("Detail distance must be positive");
+        }
+        this.detailDistance = detailDistance;
+        invalid = true;
+    }
+
+    public double getDetailDistance() {
+        return detailDistance;
+    }
+
+    @Override
+    public void setViewportSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        rayDirX = new double[width];
+        rayDirY = new double[width];
+        columnSteps = new int[width];
+        columnTerrainPixels = new int[width];
+        cameraChanged = true;
+    }
+
+    @Override
+    public void startFrame() {
+        if (!cameraChanged) {
+            return;
+        }
+        for (int x = 0; x < width; x++) {
+            //  Sample through the center of each column
+            double cameraX = 2 * (x + 0.5) / width - 1;
+            rayDirX[x] = dirX + planeX * cameraX;
+            rayDirY[x] = dirY + planeY * cameraX;
+        }
+        cameraChanged = false;
+    }
+
+    @Override
+    public void collectDirtyColumns(DirtyColumns dirtyColumns) {
+        if (invalid) {
+            dirtyColumns.markAllDirty();
+            invalid = false;
+        }
+    }
+
+    @Override
+    public void fillStrip(int[] pixelOutput, int x) {
+        Heightmap heightmap = this.heightmap;
+        int sizeShift = heightmap.getLevelCount() - 1;
+        double rdx = rayDirX[x];
+        double rdy = rayDirY[x];
+        //  Rays are as long as their depth, so rows are projected with the same scale across the screen
+        double projection = width / (2 * Math.hypot(planeX, planeY)) * VERTICAL_SCALE;
+        double inverseDetail = 1 / detailDistance;
+        double viewDistance = this.viewDistance;
+        double cameraHeight = this.cameraHeight;
+        int skyColor = this.skyColor;
+        int horizon = height / 2;
+        //  Rows [0, yBuffer) are still to be drawn
+        int yBuffer = height;
+        int steps = 0;
+        double z = NEAR_DISTANCE;
+        while (z < viewDistance) {
+            double step = Math.max(1, z * inverseDetail);
+            //  The level with texels about as large as the step
+            int level = Math.min(Math.getExponent(step), sizeShift);
+            int levelShift = sizeShift - level;
+            int mask = (1 << levelShift) - 1;
+            int texelX = (int) Math.floor(posX + rdx * z) >> level & mask;
+            int texelY = (int) Math.floor(posY + rdy * z) >> level & mask;
+            int texel = heightmap.getLevel(level)[(texelY << levelShift) + texelX];
+            steps++;
+            double rise = (cameraHeight - ColorUtils.getAlpha(texel)) * projection / z;
+            int top = (int) Math.max(0, Math.min(horizon + rise, height));
+            if (top < yBuffer) {
+                //  Terrain is opaque, its alpha holds the height
+                Arrays.fill(pixelOutput, top, yBuffer, texel | ColorUtils.ALPHA_MASK);
+                double distance = z / viewDistance;
+                int fog = (int) (distance * distance * 256);
+                //  The nearest spans are the longest, and within the first sixteenth of the view have no fog at all
+                if (fog > 0) {
+                    ColorUtils.fog(pixelOutput, top, yBuffer, skyColor, fog);
+                }
+                yBuffer = top;
+                if (top == 0) {
+                    break;
+                }
+            }
+            z += step;
+        }
+        Arrays.fill(pixelOutput, 0, yBuffer, skyColor);
+        columnSteps[x] = steps;
+        columnTerrainPixels[x] = height - yBuffer;
+    }
+
+    /**
+     * Gets the number of steps taken by every column, as last filled
+     *
+     * @return The total of the heightmap samples taken
+     */
+    public long getFrameSteps() {
+        long steps = 0;
+        for (int x = 0; x < width; x++) {
+            steps += columnSteps[x];
+        }
+        return steps;
+    }
+
+    /**
+     * Gets the number of pixels drawn with terrain rather than sky, as last filled
+     *
+     * @return The total of the terrain pixels in every column
+     */
+    public long getFrameTerrainPixels() {
+        long pixels = 0;
+        for (int x = 0; x < width; x++) {
+            pixels += columnTerrainPixels[x];
+        }
+        return pixels;
+    }
+}
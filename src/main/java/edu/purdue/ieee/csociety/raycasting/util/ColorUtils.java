@@ -1,5 +1,15 @@
 package edu.purdue.ieee.csociety.raycasting.util;
 
+import java.nio.IntBuffer;
+
+/**
+ * Packs and unpacks RGBA colors, one byte per channel, red highest and alpha lowest.
+ * <p>
+ * Besides the per-pixel helpers, spans of pixels can be shaded, fogged, blended and palette-mapped in bulk. The span
+ * operations work on two channels at once: masking out red and blue (or green and alpha) leaves each in its own 16
+ * bit lane, so one multiply scales both without carrying between them. Every pass is straight-line int arithmetic
+ * over consecutive elements, which C2 compiles to SIMD.
+ */
 public class ColorUtils {
 
     public static final int RED_OFFSET = 24;
@@ -12,6 +22,30 @@ public class ColorUtils {
     public static final int BLUE_MASK = BYTE_MASK << BLUE_OFFSET;
     public static final int ALPHA_MASK = BYTE_MASK << ALPHA_OFFSET;
 
+    /**
+     * Brightest light level, at which shading leaves a color unchanged
+     */
+    public static final int MAX_LIGHT = 0xFF;
+
+    /**
+     * Masks of the red and blue, and green and alpha, channels, each in its own 16 bit lane
+     */
+    private static final int RED_BLUE_MASK = RED_MASK | BLUE_MASK;
+    private static final int GREEN_ALPHA_MASK = GREEN_MASK | ALPHA_MASK;
+
+    /**
+     * Each channel value shaded by each light level, 256 entries per level
+     */
+    private static final byte[] SHADE_TABLE = new byte[(MAX_LIGHT + 1) * 256];
+
+    static {
+        for (int light = 0; light <= MAX_LIGHT; light++) {
+            for (int value = 0; value < 256; value++) {
+                SHADE_TABLE[light << 8 | value] = (byte) (value * (light + 1) >> 8);
+            }
+        }
+    }
+
     private ColorUtils() {}
 
     public static int color(int red, int green, int blue) {
@@ -33,6 +67,259 @@ public class ColorUtils {
         return color(brightness, brightness, brightness, alpha);
     }
 
+    /**
+     * Gets a fully saturated, full brightness color
+     *
+     * @param hue The hue, in degrees [0, 360)
+     * @return The opaque color
+     */
+    public static int hue(int hue) {
+        int sector = hue / 60;
+        int rising = (hue % 60) * 255 / 60;
+        int falling = 255 - rising;
+        switch (sector) {
+            case 0:
+                return color(255, rising, 0);
+            case 1:
+                return color(falling, 255, 0);
+            case 2:
+                return color(0, 255, rising);
+            case 3:
+                return color(0, falling, 255);
+            case 4:
+                return color(rising, 0, 255);
+            default:
+                return color(255, 0, falling);
+        }
+    }
+
+    /**
+     * Halves the red, green and blue of a color, rounding down, without unpacking it
+     *
+     * @param color The color
+     * @return The darkened color, with the same alpha
+     */
+    public static int darken(int color) {
+        //  Shifting moves the low bit of each channel into the top of the next, so clear those
+        return color >>> 1 & 0x7F7F7F7F & ~ALPHA_MASK | color & ALPHA_MASK;
+    }
+
+    /**
+     * Scales the red, green and blue of a color by a light level, as the span operations do
+     *
+     * @param color The color
+     * @param light The light level, [0, {@value #MAX_LIGHT}]; 0 is black and {@value #MAX_LIGHT} leaves the color
+     *              unchanged
+     * @return The shaded color, with the same alpha
+     */
+    public static int shade(int color, int light) {
+        int factor = light + 1;
+        return (color >>> 8 & 0x00FF00FF) * factor & RED_BLUE_MASK |
+                ((color & GREEN_MASK) >>> 8) * factor & GREEN_MASK |
+                color & ALPHA_MASK;
+    }
+
+    /**
+     * Blends the red, green and blue of a color towards a fog color, as the span operations do
+     *
+     * @param color    The color
+     * @param fogColor The color of the fog
+     * @param amount   How far to blend, [0, 256]; 0 leaves the color unchanged and 256 replaces it
+     * @return The fogged color, with the same alpha
+     */
+    public static int fog(int color, int fogColor, int amount) {
+        int clear = 256 - amount;
+        return (color >>> 8 & 0x00FF00FF) * clear + (fogColor >>> 8 & 0x00FF00FF) * amount & RED_BLUE_MASK |
+                ((color & GREEN_MASK) >>> 8) * clear + ((fogColor & GREEN_MASK) >>> 8) * amount & GREEN_MASK |
+                color & ALPHA_MASK;
+    }
+
+    /**
+     * Draws a color over another, blending by the alpha of the one on top, as the span operations do
+     *
+     * @param over  The color on top
+     * @param under The color underneath
+     * @return The blended color, with the alpha of the color underneath
+     */
+    public static int blend(int over, int under) {
+        //  Map alpha 255 to a weight of 256, so opaque pixels replace what is under them exactly
+        int alpha = over & ALPHA_MASK;
+        int weight = alpha + (alpha >>> 7);
+        int clear = 256 - weight;
+        return (over >>> 8 & 0x00FF00FF) * weight + (under >>> 8 & 0x00FF00FF) * clear & RED_BLUE_MASK |
+                ((over & GREEN_MASK) >>> 8) * weight + ((under & GREEN_MASK) >>> 8) * clear & GREEN_MASK |
+                under & ALPHA_MASK;
+    }
+
+    /**
+     * Scales one channel value by a light level, from a precomputed table, for code that works on unpacked channels
+     *
+     * @param value The channel value, [0, 255]
+     * @param light The light level, [0, {@value #MAX_LIGHT}]
+     * @return The shaded value, the same as the channel of {@link #shade(int, int)}
+     */
+    public static int shadeChannel(int value, int light) {
+        return SHADE_TABLE[light << 8 | value] & BYTE_MASK;
+    }
+
+    /**
+     * Scales the red, green and blue of a span of pixels by a light level, keeping their alpha
+     *
+     * @param pixels The pixels
+     * @param start  The first pixel of the span
+     * @param end    The pixel after the last pixel of the span
+     * @param light  The light level, [0, {@value #MAX_LIGHT}]
+     */
+    public static void shade(int[] pixels, int start, int end, int light) {
+        int factor = light + 1;
+        for (int i = start; i < end; i++) {
+            int color = pixels[i];
+            pixels[i] = (color >>> 8 & 0x00FF00FF) * factor & RED_BLUE_MASK |
+                    ((color & GREEN_MASK) >>> 8) * factor & GREEN_MASK |
+                    color & ALPHA_MASK;
+        }
+    }
+
+    /**
+     * Scales the red, green and blue of a span of pixels by a light level, keeping their alpha
+     *
+     * @param pixels The pixels, indexed absolutely
+     * @param start  The first pixel of the span
+     * @param end    The pixel after the last pixel of the span
+     * @param light  The light level, [0, {@value #MAX_LIGHT}]
+     */
+    public static void shade(IntBuffer pixels, int start, int end, int light) {
+        if (pixels.hasArray()) {
+            shade(pixels.array(), pixels.arrayOffset() + start, pixels.arrayOffset() + end, light);
+            return;
+        }
+        for (int i = start; i < end; i++) {
+            pixels.put(i, shade(pixels.get(i), light));
+        }
+    }
+
+    /**
+     * Scales the red, green and blue of each pixel of a span by its own light level, keeping their alpha
+     *
+     * @param pixels     The pixels
+     * @param start      The first pixel of the span
+     * @param end        The pixel after the last pixel of the span
+     * @param lights     The light level of each pixel, [0, {@value #MAX_LIGHT}], as unsigned bytes
+     * @param lightStart The index of the light level of the first pixel
+     */
+    public static void shade(int[] pixels, int start, int end, byte[] lights, int lightStart) {
+        for (int i = start, light = lightStart; i < end; i++, light++) {
+            int factor = (lights[light] & BYTE_MASK) + 1;
+            int color = pixels[i];
+            pixels[i] = (color >>> 8 & 0x00FF00FF) * factor & RED_BLUE_MASK |
+                    ((color & GREEN_MASK) >>> 8) * factor & GREEN_MASK |
+                    color & ALPHA_MASK;
+        }
+    }
+
+    /**
+     * Blends the red, green and blue of a span of pixels towards a fog color, keeping their alpha
+     *
+     * @param pixels   The pixels
+     * @param start    The first pixel of the span
+     * @param end      The pixel after the last pixel of the span
+     * @param fogColor The color of the fog
+     * @param amount   How far to blend, [0, 256]; 0 leaves the pixels unchanged and 256 replaces them
+     */
+    public static void fog(int[] pixels, int start, int end, int fogColor, int amount) {
+        int clear = 256 - amount;
+        //  The fog's share of each lane is the same for every pixel
+        int fogRedBlue = (fogColor >>> 8 & 0x00FF00FF) * amount;
+        int fogGreen = ((fogColor & GREEN_MASK) >>> 8) * amount;
+        for (int i = start; i < end; i++) {
+            int color = pixels[i];
+            pixels[i] = (color >>> 8 & 0x00FF00FF) * clear + fogRedBlue & RED_BLUE_MASK |
+                    ((color & GREEN_MASK) >>> 8) * clear + fogGreen & GREEN_MASK |
+                    color & ALPHA_MASK;
+        }
+    }
+
+    /**
+     * Blends the red, green and blue of a span of pixels towards a fog color, keeping their alpha
+     *
+     * @param pixels   The pixels, indexed absolutely
+     * @param start    The first pixel of the span
+     * @param end      The pixel after the last pixel of the span
+     * @param fogColor The color of the fog
+     * @param amount   How far to blend, [0, 256]
+     */
+    public static void fog(IntBuffer pixels, int start, int end, int fogColor, int amount) {
+        if (pixels.hasArray()) {
+            fog(pixels.array(), pixels.arrayOffset() + start, pixels.arrayOffset() + end, fogColor, amount);
+            return;
+        }
+        for (int i = start; i < end; i++) {
+            pixels.put(i, fog(pixels.get(i), fogColor, amount));
+        }
+    }
+
+    /**
+     * Draws a span of pixels over another, blending by the alpha of each source pixel. The result keeps the
+     * destination's alpha. C2 only vectorizes the loop when it can see both spans start at the same index, so spans at
+     * different offsets, or a call that isn't inlined, blend several times slower than the loop written in place
+     *
+     * @param source      The pixels to draw
+     * @param sourceStart The first pixel of the source span
+     * @param target      The pixels to draw over
+     * @param targetStart The first pixel of the target span
+     * @param length      The number of pixels
+     */
+    public static void blend(int[] source, int sourceStart, int[] target, int targetStart, int length) {
+        for (int i = 0; i < length; i++) {
+            int over = source[sourceStart + i];
+            int under = target[targetStart + i];
+            //  Map alpha 255 to a weight of 256, so opaque pixels replace what is under them exactly
+            int alpha = over & ALPHA_MASK;
+            int weight = alpha + (alpha >>> 7);
+            int clear = 256 - weight;
+            target[targetStart + i] =
+                    (over >>> 8 & 0x00FF00FF) * weight + (under >>> 8 & 0x00FF00FF) * clear & RED_BLUE_MASK |
+                    ((over & GREEN_MASK) >>> 8) * weight + ((under & GREEN_MASK) >>> 8) * clear & GREEN_MASK |
+                    under & ALPHA_MASK;
+        }
+    }
+
+    /**
+     * Draws a span of pixels over part of a buffer, blending by the alpha of each source pixel
+     *
+     * @param source      The pixels to draw
+     * @param sourceStart The first pixel of the source span
+     * @param target      The pixels to draw over, indexed absolutely
+     * @param targetStart The first pixel of the target span
+     * @param length      The number of pixels
+     */
+    public static void blend(int[] source, int sourceStart, IntBuffer target, int targetStart, int length) {
+        if (target.hasArray()) {
+            blend(source, sourceStart, target.array(), target.arrayOffset() + targetStart, length);
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            target.put(targetStart + i, blend(source[sourceStart + i], target.get(targetStart + i)));
+        }
+    }
+
+    /**
+     * Looks up a span of palette indices
+     *
+     * @param indices     The palette indices, as unsigned bytes
+     * @param indexStart  The index of the first palette index of the span
+     * @param palette     The colors, 256 entries
+     * @param pixels      The pixels to write the colors to
+     * @param pixelStart  The first pixel to write
+     * @param length      The number of pixels
+     */
+    public static void lookUp(byte[] indices, int indexStart, int[] palette, int[] pixels, int pixelStart,
+                              int length) {
+        for (int i = 0; i < length; i++) {
+            pixels[pixelStart + i] = palette[indices[indexStart + i] & BYTE_MASK];
+        }
+    }
+
     public static int setRed(int color, int red) {
         return color & ~RED_MASK | (BYTE_MASK & red) << RED_OFFSET;
     }
@@ -50,7 +337,7 @@ public class ColorUtils {
     }
 
     public static int getRed(int color) {
-        return (color & RED_MASK) >> RED_OFFSET;
+        return (color & RED_MASK) >>> RED_OFFSET;
     }
 
     public static int getGreen(int color) {
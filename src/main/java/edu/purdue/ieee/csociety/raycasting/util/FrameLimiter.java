@@ -0,0 +1,124 @@
+package edu.purdue.ieee.csociety.raycasting.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Caps the frame rate by waiting out the rest of each frame's period, without pegging a core.
+ * <p>
+ * Sleeping alone is imprecise, as the thread wakes some time after it asked to, by anything from tens of microseconds
+ * to a scheduler tick. Spinning alone is precise but burns the whole wait. This parks the thread for most of the wait
+ * and spins only for the last stretch, the length of which is calibrated against how late parks have been waking up:
+ * it jumps up to cover any late wake straight away, and decays slowly back down while wakes are punctual. Frames are
+ * scheduled against a fixed cadence rather than from the end of the previous wait, so pacing errors don't accumulate.
+ */
+public class FrameLimiter {
+
+    /**
+     * Shortest and longest stretch to spin for at the end of a wait, in nanos
+     */
+    private static final long MIN_SPIN_NANOS = 50_000L;
+    private static final long MAX_SPIN_NANOS = 4_000_000L;
+    /**
+     * Spin kept on top of the expected oversleep, in nanos
+     */
+    private static final long SPIN_MARGIN_NANOS = 100_000L;
+    /**
+     * Oversleep assumed before any parks have been measured, in nanos. Generous, so the first frames aren't late
+     */
+    private static final long INITIAL_OVERSLEEP_NANOS = 1_000_000L;
+    /**
+     * log2 of the number of parks over which the oversleep estimate decays towards punctual wakes
+     */
+    private static final int OVERSLEEP_DECAY_BITS = 4;
+
+    private final long framePeriodNanos;
+    /**
+     * Whether a frame has been waited for, and so {@link #nextFrameNanos} is set
+     */
+    private boolean started;
+    /**
+     * When the next frame is due to start
+     */
+    private long nextFrameNanos;
+    /**
+     * Estimate of how long after its deadline a park wakes up, in nanos
+     */
+    private long oversleepNanos;
+
+    /**
+     * Constructs a limiter for the given frame rate
+     *
+     * @param maxFps The highest frame rate to allow
+     */
+    public FrameLimiter(double maxFps) {
+        if (!(maxFps > 0)) {
+            throw new IllegalArgumentException("Frame rate cap must be positive");
+        }
+        framePeriodNanos = (long) (1e9D / maxFps);
+        oversleepNanos = INITIAL_OVERSLEEP_NANOS;
+    }
+
+    /**
+     * Waits until the next frame is due to start
+     *
+     * @return How late the wait ended after the frame was due, in nanos. Frames that ran over their period end late
+     * by the overrun
+     */
+    public long waitForNextFrame() {
+        long now = System.nanoTime();
+        if (!started) {
+            //  Nothing to pace against yet
+            started = true;
+            nextFrameNanos = now + framePeriodNanos;
+            return 0;
+        }
+        long deadline = nextFrameNanos;
+        long spinNanos = getSpinNanos();
+        for (long remaining = deadline - now; remaining > spinNanos; remaining = deadline - now) {
+            long parkNanos = remaining - spinNanos;
+            LockSupport.parkNanos(parkNanos);
+            long woke = System.nanoTime();
+            calibrate(woke - now - parkNanos);
+            now = woke;
+            spinNanos = getSpinNanos();
+        }
+        //  Compared by difference, as nanoTime may overflow
+        while (deadline - now > 0) {
+            now = System.nanoTime();
+        }
+        long lateness = now - deadline;
+        if (lateness > framePeriodNanos) {
+            //  A frame ran well over, so start a new cadence rather than rushing frames to make up for it
+            nextFrameNanos = now + framePeriodNanos;
+        } else {
+            nextFrameNanos = deadline + framePeriodNanos;
+        }
+        return lateness;
+    }
+
+    /**
+     * Updates the oversleep estimate from a park
+     *
+     * @param oversleep How long after it was due the park woke up, in nanos. Negative if it woke early
+     */
+    private void calibrate(long oversleep) {
+        if (oversleep > oversleepNanos) {
+            oversleepNanos = oversleep;
+        } else {
+            oversleepNanos += (Math.max(oversleep, 0) - oversleepNanos) >> OVERSLEEP_DECAY_BITS;
+        }
+    }
+
+    /**
+     * Gets how long the end of each wait is spun for, from the oversleep estimate
+     *
+     * @return The spin, in nanos
+     */
+    public long getSpinNanos() {
+        return Math.max(MIN_SPIN_NANOS, Math.min(MAX_SPIN_NANOS, oversleepNanos + SPIN_MARGIN_NANOS));
+    }
+
+    public long getFramePeriodNanos() {
+        return framePeriodNanos;
+    }
+}
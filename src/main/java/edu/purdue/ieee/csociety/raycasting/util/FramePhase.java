@@ -0,0 +1,35 @@
+package edu.purdue.ieee.csociety.raycasting.util;
+
+/**
+ * The phases of a frame that {@link FrameTimer} times separately, in the order they occur
+ */
+public enum FramePhase {
+    /**
+     * Clearing buffers and notifying the raycaster of the new frame
+     */
+    START_FRAME,
+    /**
+     * Filling strips with the raycaster
+     */
+    RAYCAST,
+    /**
+     * Uploading pixel data to the output texture
+     */
+    UPLOAD,
+    /**
+     * Drawing the output texture to the window
+     */
+    FINISH_FRAME,
+    /**
+     * Swapping the window's buffers, including any wait for vsync
+     */
+    SWAP_BUFFERS,
+    /**
+     * Polling for and handling window events
+     */
+    POLL_EVENTS,
+    /**
+     * Waiting for a {@link FrameLimiter} to start the next frame. Not counted as busy time
+     */
+    FRAME_LIMIT
+}
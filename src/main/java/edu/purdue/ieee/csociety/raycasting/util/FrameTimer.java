@@ -3,13 +3,22 @@ package edu.purdue.ieee.csociety.raycasting.util;
 import edu.purdue.ieee.csociety.raycasting.Main;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.IntConsumer;
 import java.util.function.LongConsumer;
 
 import static java.util.Objects.requireNonNull;
 
 /**
- * A simple frame timer that calculates FPS and frame time
+ * A simple frame timer that calculates FPS and frame time.
+ * <p>
+ * Besides averages, the distribution of frame times over each interval is kept in a {@link LatencyHistogram}, as is
+ * the distribution of time spent in each {@link FramePhase}, so stutters show up in the tail percentiles. The
+ * histograms for the current and last interval are swapped at the end of each interval, so timing never allocates.
+ * <p>
+ * When frames are paced by a {@link FrameLimiter}, the time spent waiting in {@link FramePhase#FRAME_LIMIT} is left
+ * out of the average busy time, and how late each wait ended is kept in a histogram of its own.
  */
 public class FrameTimer {
 
@@ -25,6 +34,19 @@ public class FrameTimer {
     private IntConsumer onEndIntervalFpsCallback;
     private LongConsumer onEndIntervalDurationNanosCallback;
     private LongConsumer onEndIntervalAvgFrameTimeNanosCallback;
+    private LongConsumer onEndIntervalAvgBusyTimeNanosCallback;
+    private long lastPhaseEndNanos;
+    private LatencyHistogram frameTimeHistogram;
+    private LatencyHistogram lastIntervalFrameTimeHistogram;
+    private LatencyHistogram[] phaseHistograms;
+    private LatencyHistogram[] lastIntervalPhaseHistograms;
+    private Consumer<LatencyHistogram> onEndIntervalFrameTimeHistogramCallback;
+    private BiConsumer<FramePhase, LatencyHistogram> onEndIntervalPhaseHistogramCallback;
+    private long intervalIdleNanos;
+    private long lastIntervalAvgBusyTimeNanos;
+    private LatencyHistogram pacingErrorHistogram;
+    private LatencyHistogram lastIntervalPacingErrorHistogram;
+    private Consumer<LatencyHistogram> onEndIntervalPacingErrorHistogramCallback;
 
     /**
      * Constructs a FrameTimer that samples at the given interval
@@ -38,15 +60,32 @@ public class FrameTimer {
         this.sampleIntervalNanos = timeUnit.toNanos(sampleInterval);
         sampleIntervalSec = sampleIntervalNanos / 1e9D;
         onEndIntervalAvgFrameTimeNanosCallback = l -> {};
+        onEndIntervalAvgBusyTimeNanosCallback = l -> {};
         onEndIntervalDurationNanosCallback = l -> {};
         onEndIntervalFpsCallback = i -> {};
+        onEndIntervalFrameTimeHistogramCallback = h -> {};
+        onEndIntervalPhaseHistogramCallback = (p, h) -> {};
+        onEndIntervalPacingErrorHistogramCallback = h -> {};
+        frameTimeHistogram = new LatencyHistogram();
+        lastIntervalFrameTimeHistogram = new LatencyHistogram();
+        pacingErrorHistogram = new LatencyHistogram();
+        lastIntervalPacingErrorHistogram = new LatencyHistogram();
+        int phaseCount = FramePhase.values().length;
+        phaseHistograms = new LatencyHistogram[phaseCount];
+        lastIntervalPhaseHistograms = new LatencyHistogram[phaseCount];
+        for (int i = 0; i < phaseCount; i++) {
+            phaseHistograms[i] = new LatencyHistogram();
+            lastIntervalPhaseHistograms[i] = new LatencyHistogram();
+        }
         Main.LOGGER.debug("Setting up frame timer at an interval of {} ns ({} s)",
                 sampleIntervalNanos, sampleIntervalSec);
         numIntervalFramesElapsed = 0;
         lastCalcTime = System.nanoTime();
         frameStartNanos = lastCalcTime;
+        lastPhaseEndNanos = lastCalcTime;
         lastFrameDurationNanos = 1L;
         lastIntervalAvgFrameTimeNanos = 1L;
+        lastIntervalAvgBusyTimeNanos = 1L;
         lastIntervalDurationNanos = 1L;
         lastIntervalFps = 1;
     }
@@ -75,14 +114,80 @@ public class FrameTimer {
         this.onEndIntervalAvgFrameTimeNanosCallback = requireNonNull(onEndIntervalAvgFrameTimeNanosCallback);
     }
 
+    /**
+     * Sets the callback to be invoked upon the end of a sample interval given the average time each frame spent
+     * working, in nanos: the frame time less any time waiting for a {@link FrameLimiter}
+     * @param onEndIntervalAvgBusyTimeNanosCallback
+     */
+    public void setOnEndIntervalAvgBusyTimeNanosCallback(LongConsumer onEndIntervalAvgBusyTimeNanosCallback) {
+        this.onEndIntervalAvgBusyTimeNanosCallback = requireNonNull(onEndIntervalAvgBusyTimeNanosCallback);
+    }
+
+    /**
+     * Sets the callback to be invoked upon the end of a sample interval given the histogram of how late frames were
+     * started after they were due, as recorded with {@link #recordPacingError}. The histogram is reused for a later
+     * interval, so it must not be held onto
+     * @param onEndIntervalPacingErrorHistogramCallback
+     */
+    public void setOnEndIntervalPacingErrorHistogramCallback(
+            Consumer<LatencyHistogram> onEndIntervalPacingErrorHistogramCallback) {
+        this.onEndIntervalPacingErrorHistogramCallback = requireNonNull(onEndIntervalPacingErrorHistogramCallback);
+    }
+
+    /**
+     * Sets the callback to be invoked upon the end of a sample interval given the histogram of frame times over the
+     * interval. The histogram is reused for a later interval, so it must not be held onto
+     * @param onEndIntervalFrameTimeHistogramCallback
+     */
+    public void setOnEndIntervalFrameTimeHistogramCallback(
+            Consumer<LatencyHistogram> onEndIntervalFrameTimeHistogramCallback) {
+        this.onEndIntervalFrameTimeHistogramCallback = requireNonNull(onEndIntervalFrameTimeHistogramCallback);
+    }
+
+    /**
+     * Sets the callback to be invoked upon the end of a sample interval once for each phase, given the histogram of
+     * time spent in that phase over the interval. The histograms are reused for a later interval, so they must not
+     * be held onto
+     * @param onEndIntervalPhaseHistogramCallback
+     */
+    public void setOnEndIntervalPhaseHistogramCallback(
+            BiConsumer<FramePhase, LatencyHistogram> onEndIntervalPhaseHistogramCallback) {
+        this.onEndIntervalPhaseHistogramCallback = requireNonNull(onEndIntervalPhaseHistogramCallback);
+    }
+
     /**
      * To be called at the start of a frame
      */
     public void start() {
         frameStartNanos = System.nanoTime();
+        lastPhaseEndNanos = frameStartNanos;
         numIntervalFramesElapsed++;
     }
 
+    /**
+     * To be called at the end of each phase of a frame. The phase is timed from the end of the previous phase, or
+     * from the start of the frame for the first
+     * @param phase The phase that just ended
+     */
+    public void endPhase(FramePhase phase) {
+        long endTime = System.nanoTime();
+        long duration = endTime - lastPhaseEndNanos;
+        phaseHistograms[phase.ordinal()].record(duration);
+        if (phase == FramePhase.FRAME_LIMIT) {
+            intervalIdleNanos += duration;
+        }
+        lastPhaseEndNanos = endTime;
+    }
+
+    /**
+     * Records how late a frame was started after it was due, e.g. as returned by
+     * {@link FrameLimiter#waitForNextFrame()}
+     * @param latenessNanos The lateness, in nanos
+     */
+    public void recordPacingError(long latenessNanos) {
+        pacingErrorHistogram.record(latenessNanos);
+    }
+
     /**
      * To be called at the end of a frame
      */
@@ -90,15 +195,41 @@ public class FrameTimer {
         long endTime = System.nanoTime();
         long diff = endTime - lastCalcTime;
         lastFrameDurationNanos = endTime - frameStartNanos;
+        frameTimeHistogram.record(lastFrameDurationNanos);
         if (diff > sampleIntervalNanos) {
             lastIntervalFps = (int) (numIntervalFramesElapsed / sampleIntervalSec);
             lastIntervalDurationNanos = diff;
             lastIntervalAvgFrameTimeNanos = diff / numIntervalFramesElapsed;
+            lastIntervalAvgBusyTimeNanos = Math.max(diff - intervalIdleNanos, 0) / numIntervalFramesElapsed;
+            intervalIdleNanos = 0;
             lastCalcTime = endTime;
             numIntervalFramesElapsed = 0;
             onEndIntervalFpsCallback.accept(lastIntervalFps);
             onEndIntervalDurationNanosCallback.accept(lastIntervalDurationNanos);
             onEndIntervalAvgFrameTimeNanosCallback.accept(lastIntervalAvgFrameTimeNanos);
+            onEndIntervalAvgBusyTimeNanosCallback.accept(lastIntervalAvgBusyTimeNanos);
+            endIntervalHistograms();
+        }
+    }
+
+    private void endIntervalHistograms() {
+        LatencyHistogram swap = lastIntervalFrameTimeHistogram;
+        lastIntervalFrameTimeHistogram = frameTimeHistogram;
+        frameTimeHistogram = swap;
+        frameTimeHistogram.reset();
+        onEndIntervalFrameTimeHistogramCallback.accept(lastIntervalFrameTimeHistogram);
+        swap = lastIntervalPacingErrorHistogram;
+        lastIntervalPacingErrorHistogram = pacingErrorHistogram;
+        pacingErrorHistogram = swap;
+        pacingErrorHistogram.reset();
+        onEndIntervalPacingErrorHistogramCallback.accept(lastIntervalPacingErrorHistogram);
+        FramePhase[] phases = FramePhase.values();
+        for (int i = 0; i < phaseHistograms.length; i++) {
+            swap = lastIntervalPhaseHistograms[i];
+            lastIntervalPhaseHistograms[i] = phaseHistograms[i];
+            phaseHistograms[i] = swap;
+            phaseHistograms[i].reset();
+            onEndIntervalPhaseHistogramCallback.accept(phases[i], lastIntervalPhaseHistograms[i]);
         }
     }
 
@@ -126,6 +257,57 @@ public class FrameTimer {
         return lastIntervalAvgFrameTimeNanos;
     }
 
+    /**
+     * Gets the average time each frame spent working over the last measured interval, less any time waiting for a
+     * {@link FrameLimiter}, in nanos
+     * @return
+     */
+    public long getLastIntervalAvgBusyTimeNanos() {
+        return lastIntervalAvgBusyTimeNanos;
+    }
+
+    /**
+     * Gets the histogram of how late frames were started after they were due over the last measured interval
+     * @return
+     */
+    public LatencyHistogram getLastIntervalPacingErrorHistogram() {
+        return lastIntervalPacingErrorHistogram;
+    }
+
+    /**
+     * Gets the histogram of frame times over the last measured interval
+     * @return
+     */
+    public LatencyHistogram getLastIntervalFrameTimeHistogram() {
+        return lastIntervalFrameTimeHistogram;
+    }
+
+    /**
+     * Gets the histogram of time spent in the given phase over the last measured interval
+     * @param phase
+     * @return
+     */
+    public LatencyHistogram getLastIntervalPhaseHistogram(FramePhase phase) {
+        return lastIntervalPhaseHistograms[phase.ordinal()];
+    }
+
+    /**
+     * Gets the frame time at the given percentile over the last measured interval, in nanos
+     * @param percentile
+     * @return
+     */
+    public long getLastIntervalFrameTimePercentileNanos(double percentile) {
+        return lastIntervalFrameTimeHistogram.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * Gets the longest frame time over the last measured interval, in nanos
+     * @return
+     */
+    public long getLastIntervalMaxFrameTimeNanos() {
+        return lastIntervalFrameTimeHistogram.getMax();
+    }
+
     /**
      * Gets the duration of the last frame, in nanos
      * @return
@@ -0,0 +1,95 @@
+package edu.purdue.ieee.csociety.raycasting.util;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A direct buffer whose native memory is reused across resizes and freed as soon as it is outgrown.
+ * <p>
+ * Memory behind {@link ByteBuffer#allocateDirect} is only freed once the garbage collector finds the buffer
+ * unreachable, which a burst of window resizes easily outpaces, piling up off-heap memory. This allocates through
+ * LWJGL instead and frees explicitly. A size that fits the current allocation reuses it; one that doesn't grows it by
+ * half again, or to the size if that is larger, so a window dragged steadily larger reallocates only a logarithmic
+ * number of times. Allocations never shrink until released. Requires the LWJGL natives to be loaded
+ */
+public class GrowableDirectBuffer {
+
+    /**
+     * Address of the allocation, or 0 if none
+     */
+    private long address;
+    /**
+     * Size of the allocation, in bytes
+     */
+    private int capacity;
+    /**
+     * The whole allocation
+     */
+    private ByteBuffer buffer;
+    /**
+     * Bytes allocated over the life of the buffer
+     */
+    private long allocatedBytes;
+
+    /**
+     * Gets a buffer of a size, reusing the allocation if it fits. Any buffer returned before is invalid afterwards,
+     * as its memory may have been freed
+     *
+     * @param size The size, in bytes
+     * @return A native-order buffer of exactly that capacity, positioned at 0. Its contents are undefined
+     */
+    public ByteBuffer resize(int size) {
+        if (size > capacity) {
+            int newCapacity = grow(capacity, size);
+            release();
+            address = MemoryUtil.memAlloc(newCapacity);
+            if (address == 0) {
+                throw new OutOfMemoryError("Unable to allocate " + newCapacity + " byte buffer");
+            }
+            capacity = newCapacity;
+            buffer = MemoryUtil.memByteBuffer(address, capacity);
+            allocatedBytes += newCapacity;
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Picks the capacity to grow to
+     *
+     * @param capacity The current capacity, in bytes
+     * @param size     The size needed, in bytes. Larger than the capacity
+     * @return The new capacity, in bytes
+     */
+    static int grow(int capacity, int size) {
+        return Math.max(size, (int) Math.min(capacity + (long) capacity / 2, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Frees the allocation. Any buffer returned before is invalid afterwards
+     */
+    public void release() {
+        if (address != 0) {
+            MemoryUtil.memFree(address);
+            address = 0;
+            capacity = 0;
+            buffer = null;
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the memory allocated over the life of the buffer, counting each reallocation in full
+     *
+     * @return The total, in bytes
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
@@ -0,0 +1,132 @@
+package edu.purdue.ieee.csociety.raycasting.util;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size histogram of durations in nanos, for reporting percentiles without storing every sample.
+ * <p>
+ * Buckets are log-linear: values below {@code 2 * SUB_BUCKETS} ns each get their own bucket, and above that every
+ * power of two range is split into {@link #SUB_BUCKETS} equal buckets, so any recorded value is reported to within
+ * 1 / {@link #SUB_BUCKETS} of its true value. Recording is a few shifts and an array increment, and never allocates.
+ */
+public class LatencyHistogram {
+
+    /**
+     * log2 of the number of buckets per power of two
+     */
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * log2 of the largest value that can be told apart from larger ones, about 18 minutes
+     */
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_TRACKED_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = bucketIndex(MAX_TRACKED_VALUE) + 1;
+
+    private final int[] counts;
+    private long totalCount;
+    private long minValue;
+    private long maxValue;
+    private long sum;
+
+    public LatencyHistogram() {
+        counts = new int[BUCKET_COUNT];
+        reset();
+    }
+
+    /**
+     * Records a duration
+     *
+     * @param nanos The duration, in nanos. Negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts[bucketIndex(Math.min(value, MAX_TRACKED_VALUE))]++;
+        totalCount++;
+        sum += value;
+        minValue = Math.min(minValue, value);
+        maxValue = Math.max(maxValue, value);
+    }
+
+    /**
+     * Clears all recorded durations
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        minValue = Long.MAX_VALUE;
+        maxValue = 0;
+    }
+
+    /**
+     * Gets the duration at or below which the given percentage of recorded durations fall
+     *
+     * @param percentile The percentile, [0, 100]
+     * @return The duration in nanos, rounded up to the top of its bucket but never above the maximum, or 0 if empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long targetCount = Math.max(1, (long) Math.ceil(percentile / 100D * totalCount));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            if (cumulative >= targetCount) {
+                return Math.min(bucketUpperBound(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Gets the smallest recorded duration
+     *
+     * @return The duration in nanos, or 0 if empty
+     */
+    public long getMin() {
+        return totalCount == 0 ? 0 : minValue;
+    }
+
+    /**
+     * Gets the largest recorded duration
+     *
+     * @return The duration in nanos, or 0 if empty
+     */
+    public long getMax() {
+        return maxValue;
+    }
+
+    /**
+     * Gets the mean of the recorded durations
+     *
+     * @return The mean in nanos, or 0 if empty
+     */
+    public long getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        //  The top SUB_BUCKET_BITS + 1 bits of the value, which always has its highest bit set
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long topBits = index - (shift << SUB_BUCKET_BITS);
+        return ((topBits + 1) << shift) - 1;
+    }
+}
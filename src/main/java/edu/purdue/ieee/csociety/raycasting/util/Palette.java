@@ -0,0 +1,133 @@
+package edu.purdue.ieee.csociety.raycasting.util;
+
+/**
+ * A palette of 256 colors for indexed-color rendering, with colormaps that light it.
+ * <p>
+ * Pixels are drawn as byte indices into the palette and only looked up as RGBA when presented, so frames take a
+ * quarter of the memory and upload bandwidth. Since indices can't be multiplied, lighting is done the way Doom did it:
+ * each of {@value #LIGHT_LEVELS} light levels has a colormap of 256 indices, mapping every color of the palette to
+ * the palette color nearest to it shaded to that level. A lit pixel is {@code colormap[index]}, one byte load.
+ */
+public class Palette {
+
+    /**
+     * Number of colors in a palette
+     */
+    public static final int SIZE = 256;
+
+    /**
+     * Number of light levels, and so colormaps. Level {@code LIGHT_LEVELS - 1} is full brightness and each level below
+     * it is a step of 1 / {@value #LIGHT_LEVELS} darker, so level {@code LIGHT_LEVELS / 2 - 1} is half brightness
+     */
+    public static final int LIGHT_LEVELS = 32;
+
+    /**
+     * Number of grays, and of shades of each hue, in the generated palette
+     */
+    private static final int RAMP_LENGTH = 16;
+
+    private final int[] colors;
+    private final byte[][] colormaps;
+
+    /**
+     * Creates a palette and builds its colormaps
+     *
+     * @param colors The {@value #SIZE} RGBA colors of the palette
+     */
+    public Palette(int[] colors) {
+        if (colors.length != SIZE) {
+            throw new IllegalArgumentException("Palette must have " + SIZE + " colors");
+        }
+        this.colors = colors.clone();
+        colormaps = new byte[LIGHT_LEVELS][SIZE];
+        for (int level = 0; level < LIGHT_LEVELS; level++) {
+            int light = (level + 1) * (ColorUtils.MAX_LIGHT + 1) / LIGHT_LEVELS - 1;
+            for (int index = 0; index < SIZE; index++) {
+                //  At full brightness every color maps to itself, even if the palette repeats it
+                colormaps[level][index] = (byte) (level == LIGHT_LEVELS - 1 ? index :
+                        nearest(ColorUtils.shade(this.colors[index], light)));
+            }
+        }
+    }
+
+    /**
+     * Creates a general purpose palette: a ramp of grays from black to white, then ramps from dark to full
+     * brightness of hues evenly spaced around the color wheel
+     *
+     * @return The palette
+     */
+    public static Palette generate() {
+        int[] colors = new int[SIZE];
+        for (int shade = 0; shade < RAMP_LENGTH; shade++) {
+            colors[shade] = ColorUtils.gray(shade * 255 / (RAMP_LENGTH - 1));
+        }
+        int hues = SIZE / RAMP_LENGTH - 1;
+        for (int hue = 0; hue < hues; hue++) {
+            int color = ColorUtils.hue(hue * 360 / hues);
+            for (int shade = 0; shade < RAMP_LENGTH; shade++) {
+                int brightness = (shade + 1) * 256 / RAMP_LENGTH - 1;
+                colors[(hue + 1) * RAMP_LENGTH + shade] = ColorUtils.color(
+                        ColorUtils.getRed(color) * brightness / 255,
+                        ColorUtils.getGreen(color) * brightness / 255,
+                        ColorUtils.getBlue(color) * brightness / 255);
+            }
+        }
+        return new Palette(colors);
+    }
+
+    /**
+     * Finds the palette color closest to a color, by squared distance weighted towards green as the eye is
+     *
+     * @param color The RGBA color. Alpha is ignored
+     * @return The index of the nearest palette color, [0, {@value #SIZE})
+     */
+    public int nearest(int color) {
+        int red = ColorUtils.getRed(color);
+        int green = ColorUtils.getGreen(color);
+        int blue = ColorUtils.getBlue(color);
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int index = 0; index < SIZE; index++) {
+            int candidate = colors[index];
+            int redDistance = ColorUtils.getRed(candidate) - red;
+            int greenDistance = ColorUtils.getGreen(candidate) - green;
+            int blueDistance = ColorUtils.getBlue(candidate) - blue;
+            int distance = 3 * redDistance * redDistance + 4 * greenDistance * greenDistance +
+                    2 * blueDistance * blueDistance;
+            if (distance < bestDistance) {
+                best = index;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the color of an index
+     *
+     * @param index The index, [0, {@value #SIZE})
+     * @return The RGBA color
+     */
+    public int getColor(int index) {
+        return colors[index];
+    }
+
+    /**
+     * Gets every color of the palette, for presenting indexed frames. Must not be modified
+     *
+     * @return The {@value #SIZE} RGBA colors
+     */
+    public int[] getColors() {
+        return colors;
+    }
+
+    /**
+     * Gets the colormap of a light level. Must not be modified
+     *
+     * @param level The light level, [0, {@value #LIGHT_LEVELS})
+     * @return The index of each index's color at that level, {@value #SIZE} entries
+     */
+    public byte[] getColormap(int level) {
+        return colormaps[level];
+    }
+}
@@ -0,0 +1,151 @@
+package edu.purdue.ieee.csociety.raycasting.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock-free triple buffer that hands the newest completed item from a single producer thread to a single consumer
+ * thread.
+ * <p>
+ * The producer always owns a back slot it can write into and the consumer always owns a front slot it can read
+ * from; the third slot holds the most recently published item. Publishing and acquiring are each a single atomic
+ * exchange of the middle slot, so neither side ever waits on the other. If the producer publishes twice before the
+ * consumer acquires, the older item is dropped; if the consumer acquires before anything new is published, it is
+ * handed its current item again, which is counted as stale.
+ *
+ * @param <T> The type of item being exchanged
+ */
+public class TripleBuffer<T> {
+
+    /**
+     * Set in {@link #middle} when the middle slot holds an item the consumer hasn't seen yet
+     */
+    private static final int FRESH = 1 << 2;
+    private static final int INDEX_MASK = FRESH - 1;
+
+    private final Object[] slots;
+    /**
+     * Index of the middle slot, plus {@link #FRESH}
+     */
+    private final AtomicInteger middle;
+    /**
+     * Index of the slot owned by the producer. Only accessed by the producer
+     */
+    private int back;
+    /**
+     * Index of the slot owned by the consumer. Only accessed by the consumer
+     */
+    private int front;
+
+    private volatile long publishedCount;
+    private volatile long droppedCount;
+    private volatile long acquiredCount;
+    private volatile long staleCount;
+
+    /**
+     * Constructs a triple buffer over three distinct items
+     *
+     * @param initialBack   The item the producer starts writing into
+     * @param initialMiddle The item initially waiting in the middle slot, never handed out before being published over
+     * @param initialFront  The item the consumer starts with
+     */
+    public TripleBuffer(T initialBack, T initialMiddle, T initialFront) {
+        slots = new Object[]{initialBack, initialMiddle, initialFront};
+        back = 0;
+        middle = new AtomicInteger(1);
+        front = 2;
+    }
+
+    /**
+     * Gets the item the producer should write into. Only to be called from the producer thread
+     *
+     * @return The back item
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) slots[back];
+    }
+
+    /**
+     * Publishes the back item as the newest completed item and hands the producer a new back item.
+     * Only to be called from the producer thread
+     *
+     * @return The new back item
+     */
+    @SuppressWarnings("unchecked")
+    public T publish() {
+        int previous = middle.getAndSet(back | FRESH);
+        //  Single writer for the producer side counters
+        //noinspection NonAtomicOperationOnVolatileField
+        publishedCount++;
+        if ((previous & FRESH) != 0) {
+            //noinspection NonAtomicOperationOnVolatileField
+            droppedCount++;
+        }
+        back = previous & INDEX_MASK;
+        return (T) slots[back];
+    }
+
+    /**
+     * Acquires the newest completed item. Only to be called from the consumer thread
+     *
+     * @return True if a new item was acquired, false if nothing has been published since the last acquire
+     */
+    public boolean acquire() {
+        //  Single writer for the consumer side counters
+        //noinspection NonAtomicOperationOnVolatileField
+        acquiredCount++;
+        if ((middle.get() & FRESH) == 0) {
+            //noinspection NonAtomicOperationOnVolatileField
+            staleCount++;
+            return false;
+        }
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return true;
+    }
+
+    /**
+     * Gets the item the consumer currently owns. Only to be called from the consumer thread
+     *
+     * @return The front item
+     */
+    @SuppressWarnings("unchecked")
+    public T getFront() {
+        return (T) slots[front];
+    }
+
+    /**
+     * Gets the number of items published by the producer
+     *
+     * @return The total published count
+     */
+    public long getPublishedCount() {
+        return publishedCount;
+    }
+
+    /**
+     * Gets the number of published items that were replaced before the consumer acquired them
+     *
+     * @return The total dropped count
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Gets the number of times the consumer acquired
+     *
+     * @return The total acquire count, including stale acquires
+     */
+    public long getAcquiredCount() {
+        return acquiredCount;
+    }
+
+    /**
+     * Gets the number of times the consumer acquired with nothing new published, and kept its current item
+     *
+     * @return The total stale count
+     */
+    public long getStaleCount() {
+        return staleCount;
+    }
+}
@@ -0,0 +1,221 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+/**
+ * A mutable {@link GridMap} held in arrays on the heap, for maps built in code or edited at runtime.
+ * <p>
+ * Cells are stored in the order of a {@link TileLayout}, row-major unless another is chosen. The material and
+ * elevation planes are only allocated once a nonzero value is set in them.
+ */
+public class ArrayGridMap implements GridMap {
+
+    private final int width;
+    private final int height;
+    private final TileLayout layout;
+    /**
+     * The offset of each column and each row in the planes, whose sum is the index of a cell
+     */
+    private final int[] columnOffsets;
+    private final int[] rowOffsets;
+    /**
+     * The tiles of the map, in layout order
+     */
+    private final int[] tiles;
+    /**
+     * The materials of the map, in layout order, or null while all are 0
+     */
+    private byte[] materials;
+    /**
+     * The elevations of the map, in layout order, or null while all are 0
+     */
+    private byte[] elevations;
+
+    private double spawnX;
+    private double spawnY;
+    private double spawnAngle;
+
+    /**
+     * Creates an empty map
+     *
+     * @param width  The width of the map, in tiles
+     * @param height The height of the map, in tiles
+     */
+    public ArrayGridMap(int width, int height) {
+        this(width, height, TileLayout.ROW_MAJOR);
+    }
+
+    /**
+     * Creates an empty map with its cells in a given order
+     *
+     * @param width  The width of the map, in tiles
+     * @param height The height of the map, in tiles
+     * @param layout The order to store cells in
+     */
+    public ArrayGridMap(int width, int height, TileLayout layout) {
+        this(new int[checkSize(width, height, layout)], width, height, layout);
+    }
+
+    /**
+     * Creates a map over an existing array of tiles. The array is used directly, not copied
+     *
+     * @param tiles  The tiles of the map, row-major, 0 for empty space
+     * @param width  The width of the map, in tiles
+     * @param height The height of the map, in tiles
+     */
+    public ArrayGridMap(int[] tiles, int width, int height) {
+        this(tiles, width, height, TileLayout.ROW_MAJOR);
+    }
+
+    private ArrayGridMap(int[] tiles, int width, int height, TileLayout layout) {
+        if (tiles.length < checkSize(width, height, layout)) {
+            throw new IllegalArgumentException("Map has fewer than " + width + "x" + height + " tiles");
+        }
+        this.width = width;
+        this.height = height;
+        this.layout = layout;
+        this.tiles = tiles;
+        columnOffsets = layout.columnOffsets(width, height);
+        rowOffsets = layout.rowOffsets(width, height);
+        spawnX = width / 2 + 0.5;
+        spawnY = height / 2 + 0.5;
+    }
+
+    private static int checkSize(int width, int height, TileLayout layout) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Map dimensions must be positive");
+        }
+        long size = layout.getSize(width, height);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Map of " + width + "x" + height + " tiles is too large for an array");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Copies every plane and the spawn point of another map into memory, e.g. to edit it
+     *
+     * @param source The map to copy
+     * @return The copy
+     */
+    public static ArrayGridMap copyOf(GridMap source) {
+        return copyOf(source, TileLayout.ROW_MAJOR);
+    }
+
+    /**
+     * Copies every plane and the spawn point of another map into memory, with its cells in a given order
+     *
+     * @param source The map to copy
+     * @param layout The order to store cells in
+     * @return The copy
+     */
+    public static ArrayGridMap copyOf(GridMap source, TileLayout layout) {
+        ArrayGridMap map = new ArrayGridMap(source.getWidth(), source.getHeight(), layout);
+        for (int y = 0; y < map.height; y++) {
+            for (int x = 0; x < map.width; x++) {
+                map.setTile(x, y, source.getTile(x, y));
+                map.setMaterial(x, y, source.getMaterial(x, y));
+                map.setElevation(x, y, source.getElevation(x, y));
+            }
+        }
+        map.setSpawn(source.getSpawnX(), source.getSpawnY(), source.getSpawnAngle());
+        return map;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    public TileLayout getLayout() {
+        return layout;
+    }
+
+    private int index(int x, int y) {
+        return columnOffsets[x] + rowOffsets[y];
+    }
+
+    @Override
+    public int getTile(int x, int y) {
+        return tiles[index(x, y)];
+    }
+
+    public void setTile(int x, int y, int tile) {
+        tiles[index(x, y)] = tile;
+    }
+
+    @Override
+    public int getMaterial(int x, int y) {
+        return materials == null ? 0 : materials[index(x, y)] & 0xFF;
+    }
+
+    /**
+     * Sets the material of a cell
+     *
+     * @param x        The x coordinate of the cell
+     * @param y        The y coordinate of the cell
+     * @param material The material, [0, 256)
+     */
+    public void setMaterial(int x, int y, int material) {
+        if (materials == null) {
+            if (material == 0) {
+                return;
+            }
+            materials = new byte[tiles.length];
+        }
+        materials[index(x, y)] = (byte) material;
+    }
+
+    @Override
+    public int getElevation(int x, int y) {
+        return elevations == null ? 0 : elevations[index(x, y)] & 0xFF;
+    }
+
+    /**
+     * Sets the elevation of a cell
+     *
+     * @param x         The x coordinate of the cell
+     * @param y         The y coordinate of the cell
+     * @param elevation The elevation, [0, 256)
+     */
+    public void setElevation(int x, int y, int elevation) {
+        if (elevations == null) {
+            if (elevation == 0) {
+                return;
+            }
+            elevations = new byte[tiles.length];
+        }
+        elevations[index(x, y)] = (byte) elevation;
+    }
+
+    @Override
+    public double getSpawnX() {
+        return spawnX;
+    }
+
+    @Override
+    public double getSpawnY() {
+        return spawnY;
+    }
+
+    @Override
+    public double getSpawnAngle() {
+        return spawnAngle;
+    }
+
+    /**
+     * Sets where the camera starts. Defaults to facing +x from the center of the map
+     *
+     * @param spawnX     The x position, in tiles
+     * @param spawnY     The y position, in tiles
+     * @param spawnAngle The direction, in radians counterclockwise from the +x axis
+     */
+    public void setSpawn(double spawnX, double spawnY, double spawnAngle) {
+        this.spawnX = spawnX;
+        this.spawnY = spawnY;
+        this.spawnAngle = spawnAngle;
+    }
+}
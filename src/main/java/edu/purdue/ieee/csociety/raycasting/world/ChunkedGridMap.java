@@ -0,0 +1,396 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+import edu.purdue.ieee.csociety.raycasting.Main;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static edu.purdue.ieee.csociety.raycasting.world.GridMapFormat.*;
+
+/**
+ * A read-only {@link GridMap} for worlds too large to keep in memory, streaming chunks of a file in the
+ * {@link GridMapFormat binary map format} through a cache with a fixed memory budget.
+ * <p>
+ * Uniform chunks, which is most of an open world, cost nothing beyond their directory entry: one shared chunk object
+ * per distinct value is resident for good from the moment the map is opened. Stored chunks are read on demand by a
+ * background loader thread. Looking a tile up is two array reads when its chunk is resident; when it isn't, the chunk
+ * is queued for loading and the tile reads as empty, so casting never waits on I/O. Once the chunk arrives the
+ * {@link #getRevision() revision} changes, prompting another cast.
+ * <p>
+ * Each lookup stamps its chunk with a coarse clock. Once the loaded chunks exceed the budget the loader evicts the
+ * least recently used ones, never evicting chunks used in the current clock tick, down to a little under the budget
+ * so eviction isn't needed again after every load.
+ */
+public class ChunkedGridMap implements GridMap, Closeable {
+
+    /**
+     * Length of a tick of the clock chunks are stamped with when used
+     */
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    /**
+     * How long the loader idles for when there is nothing to load
+     */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    /**
+     * Fraction of the budget eviction frees memory down to
+     */
+    private static final double EVICTION_TARGET = 0.9;
+
+    /**
+     * A chunk of the map, either stored in full or uniform
+     */
+    private static final class Chunk {
+
+        /**
+         * The planes of a stored chunk, or null if the chunk is uniform
+         */
+        final byte[] planes;
+        /**
+         * The packed cell of a uniform chunk
+         */
+        final int uniformCell;
+        /**
+         * The clock tick the chunk was last used in. Written racily by casting threads, which is fine for an
+         * approximate age
+         */
+        int lastUsedTick;
+
+        Chunk(byte[] planes, int uniformCell) {
+            this.planes = planes;
+            this.uniformCell = uniformCell;
+        }
+    }
+
+    /**
+     * Stands in for stored chunks that have been queued for loading, reading as empty
+     */
+    private static final Chunk PENDING = new Chunk(null, 0);
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long directoryOffset;
+
+    private final int width;
+    private final int height;
+    private final int chunkShift;
+    private final int chunkMask;
+    private final int chunksX;
+    private final int planeSize;
+
+    private final double spawnX;
+    private final double spawnY;
+    private final double spawnAngle;
+
+    /**
+     * Resident chunk of each chunk position, row-major. Null for stored chunks that haven't been requested, and
+     * {@link #PENDING} for ones that are queued
+     */
+    private final AtomicReferenceArray<Chunk> chunks;
+    /**
+     * Indexes of chunks queued for loading
+     */
+    private final Queue<Integer> loadQueue;
+
+    private final long cacheBudgetBytes;
+    /**
+     * Indexes of the stored chunks that are resident. Only touched by the loader
+     */
+    private int[] residentIndexes;
+    private int residentCount;
+    private volatile long residentBytes;
+
+    private volatile int tick;
+    private volatile int revision;
+    private volatile long loadedChunkCount;
+    private volatile long evictedChunkCount;
+
+    private volatile boolean running;
+    private final Thread loaderThread;
+
+    private ChunkedGridMap(Path path, FileChannel channel, long cacheBudgetBytes) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.cacheBudgetBytes = cacheBudgetBytes;
+        long fileSize = channel.size();
+        ByteBuffer headerBytes = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+        readFully(headerBytes, 0);
+        GridMapHeader header = new GridMapHeader(headerBytes, fileSize, path);
+        if (header.getChunkCount() > Integer.MAX_VALUE) {
+            throw new IOException(path + " has too many chunks");
+        }
+        width = header.width;
+        height = header.height;
+        chunkShift = header.chunkShift;
+        chunkMask = (1 << chunkShift) - 1;
+        chunksX = header.chunksX;
+        planeSize = header.getPlaneSize();
+        spawnX = header.spawnX;
+        spawnY = header.spawnY;
+        spawnAngle = header.spawnAngle;
+        directoryOffset = header.directoryOffset;
+        //  Make every uniform chunk resident, sharing one chunk between all those with the same value
+        int chunkCount = (int) header.getChunkCount();
+        chunks = new AtomicReferenceArray<>(chunkCount);
+        Map<Integer, Chunk> uniformChunks = new HashMap<>();
+        ByteBuffer directory = ByteBuffer.allocate(Long.BYTES * DIRECTORY_BLOCK_ENTRIES).order(BYTE_ORDER);
+        for (int start = 0; start < chunkCount; start += directory.capacity() / Long.BYTES) {
+            directory.clear();
+            directory.limit(Math.min(directory.capacity(), (chunkCount - start) * Long.BYTES));
+            readFully(directory, directoryOffset + (long) start * Long.BYTES);
+            directory.flip();
+            for (int i = start; directory.hasRemaining(); i++) {
+                long entry = directory.getLong();
+                header.checkDirectoryEntry(entry, fileSize, path);
+                if (entry < 0) {
+                    int cell = (int) ~entry;
+                    chunks.set(i, uniformChunks.computeIfAbsent(cell, c -> new Chunk(null, c)));
+                }
+            }
+        }
+        residentIndexes = new int[64];
+        loadQueue = new ConcurrentLinkedQueue<>();
+        tick = currentTick();
+        loaderThread = new Thread(this::runLoader, "chunk-loader");
+        loaderThread.setDaemon(true);
+    }
+
+    /**
+     * Opens a map file and starts loading chunks in the background
+     *
+     * @param path             The file to open
+     * @param cacheBudgetBytes The most memory loaded chunks may take up, in bytes
+     * @return The map
+     * @throws IOException If the file could not be opened or is not a valid map
+     */
+    public static ChunkedGridMap open(Path path, long cacheBudgetBytes) throws IOException {
+        if (cacheBudgetBytes <= 0) {
+            throw new IllegalArgumentException("Cache budget must be positive");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        ChunkedGridMap map;
+        try {
+            map = new ChunkedGridMap(path, channel, cacheBudgetBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        map.running = true;
+        map.loaderThread.start();
+        return map;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getTile(int x, int y) {
+        return getPlane(x, y, TILE_PLANE);
+    }
+
+    @Override
+    public int getMaterial(int x, int y) {
+        return getPlane(x, y, MATERIAL_PLANE);
+    }
+
+    @Override
+    public int getElevation(int x, int y) {
+        return getPlane(x, y, ELEVATION_PLANE);
+    }
+
+    private int getPlane(int x, int y, int plane) {
+        int index = (y >> chunkShift) * chunksX + (x >> chunkShift);
+        Chunk chunk = chunks.get(index);
+        if (chunk == null) {
+            requestChunk(index);
+            return 0;
+        }
+        //  Only write the stamp when it changes, so casting threads don't fight over the chunk's cache line
+        int tick = this.tick;
+        if (chunk.lastUsedTick != tick) {
+            chunk.lastUsedTick = tick;
+        }
+        if (chunk.planes == null) {
+            return unpackPlane(chunk.uniformCell, plane);
+        }
+        return chunk.planes[plane * planeSize + ((y & chunkMask) << chunkShift) + (x & chunkMask)] & MAX_VALUE;
+    }
+
+    private void requestChunk(int index) {
+        //  Only the thread that marks the chunk pending queues it
+        if (chunks.compareAndSet(index, null, PENDING)) {
+            loadQueue.offer(index);
+            LockSupport.unpark(loaderThread);
+        }
+    }
+
+    private void runLoader() {
+        ByteBuffer entry = ByteBuffer.allocate(Long.BYTES).order(BYTE_ORDER);
+        int storedChunkSize = PLANE_COUNT * planeSize;
+        while (running) {
+            tick = currentTick();
+            Integer index = loadQueue.poll();
+            if (index == null) {
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            try {
+                entry.clear();
+                readFully(entry, directoryOffset + (long) index * Long.BYTES);
+                byte[] planes = new byte[storedChunkSize];
+                readFully(ByteBuffer.wrap(planes), entry.getLong(0));
+                Chunk chunk = new Chunk(planes, 0);
+                chunk.lastUsedTick = tick;
+                //  Final fields make the planes visible to casting threads that see the chunk
+                chunks.set(index, chunk);
+            } catch (IOException e) {
+                //  The chunk stays pending, reading as empty, rather than being retried every frame
+                Main.LOGGER.error("Unable to load chunk " + index + " of " + path, e);
+                continue;
+            }
+            if (residentCount == residentIndexes.length) {
+                residentIndexes = Arrays.copyOf(residentIndexes, residentCount * 2);
+            }
+            residentIndexes[residentCount++] = index;
+            residentBytes += storedChunkSize;
+            loadedChunkCount++;
+            revision++;
+            if (residentBytes > cacheBudgetBytes) {
+                evict(storedChunkSize);
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used chunks until the loaded chunks are back under budget
+     */
+    private void evict(int storedChunkSize) {
+        //  Sort by age, with each chunk's slot in the resident list in the low half
+        long[] ages = new long[residentCount];
+        for (int i = 0; i < residentCount; i++) {
+            int age = tick - chunks.get(residentIndexes[i]).lastUsedTick;
+            ages[i] = (long) -age << 32 | i;
+        }
+        Arrays.sort(ages);
+        long targetBytes = (long) (cacheBudgetBytes * EVICTION_TARGET);
+        boolean[] evicted = new boolean[residentCount];
+        for (int i = 0; i < ages.length && residentBytes > targetBytes; i++) {
+            if (ages[i] >> 32 == 0) {
+                //  Everything left is in use right now
+                Main.LOGGER.warn("Chunks in view of {} exceed the {} byte cache budget", path, cacheBudgetBytes);
+                break;
+            }
+            int slot = (int) ages[i];
+            chunks.set(residentIndexes[slot], null);
+            evicted[slot] = true;
+            residentBytes -= storedChunkSize;
+            evictedChunkCount++;
+        }
+        int kept = 0;
+        for (int i = 0; i < residentCount; i++) {
+            if (!evicted[i]) {
+                residentIndexes[kept++] = residentIndexes[i];
+            }
+        }
+        residentCount = kept;
+    }
+
+    private int currentTick() {
+        return (int) (System.nanoTime() / TICK_NANOS);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException(path + " ended unexpectedly");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Stops the loader and closes the file. Chunks that are already resident stay readable
+     *
+     * @throws IOException If the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(loaderThread);
+        try {
+            loaderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    @Override
+    public double getSpawnX() {
+        return spawnX;
+    }
+
+    @Override
+    public double getSpawnY() {
+        return spawnY;
+    }
+
+    @Override
+    public double getSpawnAngle() {
+        return spawnAngle;
+    }
+
+    @Override
+    public int getRevision() {
+        return revision;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getCacheBudgetBytes() {
+        return cacheBudgetBytes;
+    }
+
+    /**
+     * Gets the memory taken up by loaded chunks
+     *
+     * @return The size of the resident stored chunks, in bytes
+     */
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * Gets the number of chunks loaded since the map was opened, including ones loaded again after being evicted
+     *
+     * @return The number of loads
+     */
+    public long getLoadedChunkCount() {
+        return loadedChunkCount;
+    }
+
+    public long getEvictedChunkCount() {
+        return evictedChunkCount;
+    }
+}
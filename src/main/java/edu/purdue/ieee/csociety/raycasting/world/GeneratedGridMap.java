@@ -0,0 +1,111 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+/**
+ * A {@link GridMap} computed from its coordinates rather than stored: a walled map with scattered pillars and a few
+ * partitions. Takes no memory however large it is, which makes it a cheap source for generating large test maps.
+ * <p>
+ * A sparse map is mostly open space, like an open world: the pattern only appears in scattered settlements, with
+ * solid blocks of rock between them.
+ */
+public class GeneratedGridMap implements GridMap {
+
+    /**
+     * log2 of the size of the regions a sparse map is divided into, in tiles
+     */
+    private static final int REGION_SHIFT = 7;
+    /**
+     * Number of regions between settlements, and between blocks of rock, in a sparse map
+     */
+    private static final int REGION_SPACING = 8;
+    private static final int ROCK_TILE = 9;
+
+    private final int width;
+    private final int height;
+    private final boolean sparse;
+
+    /**
+     * Creates the map
+     *
+     * @param width  The width of the map, in tiles
+     * @param height The height of the map, in tiles
+     */
+    public GeneratedGridMap(int width, int height) {
+        this(width, height, false);
+    }
+
+    /**
+     * Creates the map
+     *
+     * @param width  The width of the map, in tiles
+     * @param height The height of the map, in tiles
+     * @param sparse True to only fill scattered regions of the map
+     */
+    public GeneratedGridMap(int width, int height, boolean sparse) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Map dimensions must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.sparse = sparse;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getTile(int x, int y) {
+        boolean border = x == 0 || y == 0 || x == width - 1 || y == height - 1;
+        boolean pillar = x % 8 == 4 && y % 8 == 4;
+        boolean partition = x % 16 == 0 && y % 16 > 4 && y % 16 < 12;
+        if (border) {
+            return 1;
+        }
+        if (sparse) {
+            int regionX = (x >> REGION_SHIFT) % REGION_SPACING;
+            int regionY = (y >> REGION_SHIFT) % REGION_SPACING;
+            if (regionX == REGION_SPACING / 2 && regionY == REGION_SPACING / 2) {
+                return ROCK_TILE;
+            } else if (regionX != 0 || regionY != 0) {
+                return 0;
+            }
+        }
+        if (pillar) {
+            return 2 + (x / 8 + y / 8) % 6;
+        } else if (partition) {
+            return 8;
+        }
+        return 0;
+    }
+
+    @Override
+    public int getMaterial(int x, int y) {
+        return 0;
+    }
+
+    @Override
+    public int getElevation(int x, int y) {
+        return 0;
+    }
+
+    @Override
+    public double getSpawnX() {
+        return width / 2 + 0.5;
+    }
+
+    @Override
+    public double getSpawnY() {
+        return height / 2 + 0.5;
+    }
+
+    @Override
+    public double getSpawnAngle() {
+        return 0;
+    }
+}
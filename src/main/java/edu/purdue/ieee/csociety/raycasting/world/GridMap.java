@@ -0,0 +1,85 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+/**
+ * A 2D grid of tiles for a grid raycaster to cast against.
+ * <p>
+ * Every cell has three planes: the tile type, where 0 is empty space and any other value is a wall, the material the
+ * wall is drawn with, and the elevation of the wall. Coordinates must be within the map; callers are expected to
+ * bounds check against {@link #getWidth()} and {@link #getHeight()} first, since they already do to stop rays leaving
+ * the map. Reads may happen from several strip filling threads at once.
+ */
+public interface GridMap {
+
+    /**
+     * Gets the width of the map
+     *
+     * @return The width, in tiles
+     */
+    int getWidth();
+
+    /**
+     * Gets the height of the map
+     *
+     * @return The height, in tiles
+     */
+    int getHeight();
+
+    /**
+     * Gets the tile type of a cell
+     *
+     * @param x The x coordinate of the cell, [0, width)
+     * @param y The y coordinate of the cell, [0, height)
+     * @return The tile type, 0 for empty space
+     */
+    int getTile(int x, int y);
+
+    /**
+     * Gets the material of a cell
+     *
+     * @param x The x coordinate of the cell, [0, width)
+     * @param y The y coordinate of the cell, [0, height)
+     * @return The material, 0 for the tile type's own color
+     */
+    int getMaterial(int x, int y);
+
+    /**
+     * Gets the elevation of a cell
+     *
+     * @param x The x coordinate of the cell, [0, width)
+     * @param y The y coordinate of the cell, [0, height)
+     * @return The elevation, 0 for a wall of the default height
+     */
+    int getElevation(int x, int y);
+
+    /**
+     * Gets the x position the camera starts at
+     *
+     * @return The x position, in tiles
+     */
+    double getSpawnX();
+
+    /**
+     * Gets the y position the camera starts at
+     *
+     * @return The y position, in tiles
+     */
+    double getSpawnY();
+
+    /**
+     * Gets the direction the camera starts facing
+     *
+     * @return The direction, in radians counterclockwise from the +x axis
+     */
+    double getSpawnAngle();
+
+    /**
+     * Gets a counter that changes whenever the contents of the map change on their own, such as a chunk finishing
+     * loading in the background, so anything cast against the old contents needs to be cast again. Edits made
+     * through the map's owner don't count
+     *
+     * @return The revision, 0 for maps that never change on their own
+     */
+    default int getRevision() {
+        return 0;
+    }
+}
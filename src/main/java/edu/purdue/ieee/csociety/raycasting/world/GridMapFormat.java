@@ -0,0 +1,110 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the binary map format read by {@link MappedGridMap} and written by {@link GridMapWriter}.
+ * <p>
+ * All values are little-endian. The file starts with a fixed size header:
+ * <pre>
+ *  0  int    magic, {@value #MAGIC}
+ *  4  short  format version, {@value #VERSION}
+ *  6  short  log2 of the chunk size, in tiles
+ *  8  int    width of the map, in tiles
+ * 12  int    height of the map, in tiles
+ * 16  int    number of chunks across
+ * 20  int    number of chunks down
+ * 24  double spawn x
+ * 32  double spawn y
+ * 40  double spawn angle
+ * 48  long   file offset of the chunk directory
+ * 56  int    number of stored (non-uniform) chunks
+ * 60  int    reserved
+ * </pre>
+ * The chunk directory holds a long entry for every chunk, row-major. A positive entry is the file offset of a stored
+ * chunk. Chunks with the same value in every cell aren't stored: their entry is the bitwise complement of the value
+ * packed as {@code tile | material << 8 | elevation << 16}, which is always negative, and -1 for empty chunks. A
+ * stored chunk is three planes of chunk size * chunk size unsigned bytes, each row-major within the chunk: tile
+ * types, then materials, then elevations. Chunks at the right and bottom edges are padded to the full chunk size,
+ * so a tile's offset within its chunk never depends on where the chunk is. Chunk data starts page aligned.
+ */
+final class GridMapFormat {
+
+    static final int MAGIC = 0x4D474352;
+
+    static final short VERSION = 1;
+
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final int HEADER_SIZE = 64;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int CHUNK_SHIFT_OFFSET = 6;
+    static final int WIDTH_OFFSET = 8;
+    static final int HEIGHT_OFFSET = 12;
+    static final int CHUNKS_X_OFFSET = 16;
+    static final int CHUNKS_Y_OFFSET = 20;
+    static final int SPAWN_X_OFFSET = 24;
+    static final int SPAWN_Y_OFFSET = 32;
+    static final int SPAWN_ANGLE_OFFSET = 40;
+    static final int DIRECTORY_OFFSET_OFFSET = 48;
+    static final int STORED_CHUNKS_OFFSET = 56;
+
+    /**
+     * Number of planes in a stored chunk
+     */
+    static final int PLANE_COUNT = 3;
+
+    static final int TILE_PLANE = 0;
+    static final int MATERIAL_PLANE = 1;
+    static final int ELEVATION_PLANE = 2;
+
+    /**
+     * Largest value a plane can hold
+     */
+    static final int MAX_VALUE = 0xFF;
+
+    /**
+     * Largest packed cell
+     */
+    static final int MAX_PACKED_CELL = 0xFFFFFF;
+
+    /**
+     * Smallest chunk shift, no smaller than a level 1 block of an {@link OccupancyPyramid}
+     */
+    static final int MIN_CHUNK_SHIFT = 2;
+    static final int MAX_CHUNK_SHIFT = 10;
+
+    /**
+     * Alignment of the start of the chunk data, so chunks don't straddle more pages than they have to
+     */
+    static final int DATA_ALIGNMENT = 4096;
+
+    /**
+     * Number of chunk directory entries read or written at a time, so huge maps don't need the whole directory in one
+     * buffer
+     */
+    static final int DIRECTORY_BLOCK_ENTRIES = 8192;
+
+    private GridMapFormat() {
+    }
+
+    /**
+     * Packs the values of a cell into the form uniform chunks are stored in
+     */
+    static int packCell(int tile, int material, int elevation) {
+        return tile | material << 8 | elevation << 16;
+    }
+
+    /**
+     * Gets the value of one plane out of a packed cell
+     */
+    static int unpackPlane(int packed, int plane) {
+        return packed >>> (plane << 3) & MAX_VALUE;
+    }
+
+    static int chunkCount(int size, int chunkShift) {
+        return (int) (((long) size + (1 << chunkShift) - 1) >> chunkShift);
+    }
+}
@@ -0,0 +1,100 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static edu.purdue.ieee.csociety.raycasting.world.GridMapFormat.*;
+
+/**
+ * The validated header of a file in the {@link GridMapFormat binary map format}
+ */
+final class GridMapHeader {
+
+    final int width;
+    final int height;
+    final int chunkShift;
+    final int chunksX;
+    final int chunksY;
+    final double spawnX;
+    final double spawnY;
+    final double spawnAngle;
+    final long directoryOffset;
+    final int storedChunkCount;
+
+    /**
+     * Reads a header
+     *
+     * @param header   The start of the file, in {@link GridMapFormat#BYTE_ORDER}
+     * @param fileSize The size of the file, in bytes
+     * @param path     The file, for error messages
+     * @throws IOException If the header is not valid
+     */
+    GridMapHeader(ByteBuffer header, long fileSize, Path path) throws IOException {
+        if (fileSize < HEADER_SIZE || header.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException(path + " is not a map file");
+        }
+        short version = header.getShort(VERSION_OFFSET);
+        if (version != VERSION) {
+            throw new IOException(path + " has unsupported map format version " + version);
+        }
+        chunkShift = header.getShort(CHUNK_SHIFT_OFFSET);
+        width = header.getInt(WIDTH_OFFSET);
+        height = header.getInt(HEIGHT_OFFSET);
+        chunksX = header.getInt(CHUNKS_X_OFFSET);
+        chunksY = header.getInt(CHUNKS_Y_OFFSET);
+        if (chunkShift < MIN_CHUNK_SHIFT || chunkShift > MAX_CHUNK_SHIFT || width <= 0 || height <= 0 ||
+                chunksX != chunkCount(width, chunkShift) || chunksY != chunkCount(height, chunkShift)) {
+            throw new IOException(path + " has a corrupt header");
+        }
+        spawnX = header.getDouble(SPAWN_X_OFFSET);
+        spawnY = header.getDouble(SPAWN_Y_OFFSET);
+        spawnAngle = header.getDouble(SPAWN_ANGLE_OFFSET);
+        directoryOffset = header.getLong(DIRECTORY_OFFSET_OFFSET);
+        storedChunkCount = header.getInt(STORED_CHUNKS_OFFSET);
+        //  Compared this way round so a corrupt offset can't overflow past the file size
+        if (directoryOffset < HEADER_SIZE || directoryOffset > fileSize - getChunkCount() * Long.BYTES) {
+            throw new IOException(path + " has a truncated chunk directory");
+        }
+    }
+
+    long getChunkCount() {
+        return (long) chunksX * chunksY;
+    }
+
+    /**
+     * Gets the size of one plane of a chunk
+     *
+     * @return The size, in bytes
+     */
+    int getPlaneSize() {
+        return 1 << (2 * chunkShift);
+    }
+
+    /**
+     * Gets the size of a stored chunk
+     *
+     * @return The size, in bytes
+     */
+    int getStoredChunkSize() {
+        return PLANE_COUNT * getPlaneSize();
+    }
+
+    /**
+     * Checks a chunk directory entry
+     *
+     * @param entry    The entry
+     * @param fileSize The size of the file, in bytes
+     * @param path     The file, for error messages
+     * @throws IOException If the entry is for a stored chunk that lies outside of the file, or a uniform chunk with
+     *                     an invalid cell
+     */
+    void checkDirectoryEntry(long entry, long fileSize, Path path) throws IOException {
+        if (entry >= 0 && (entry < HEADER_SIZE || entry > fileSize - getStoredChunkSize())) {
+            throw new IOException(path + " has a chunk outside of the file");
+        }
+        if (entry < 0 && ~entry > MAX_PACKED_CELL) {
+            throw new IOException(path + " has a corrupt uniform chunk");
+        }
+    }
+}
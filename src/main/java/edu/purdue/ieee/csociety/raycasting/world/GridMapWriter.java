@@ -0,0 +1,190 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static edu.purdue.ieee.csociety.raycasting.world.GridMapFormat.*;
+
+/**
+ * Writes any {@link GridMap} in the {@link GridMapFormat binary map format} for {@link MappedGridMap} or
+ * {@link ChunkedGridMap} to open.
+ * <p>
+ * Chunks are written one at a time, so only one chunk of the map needs to be in memory beyond what the source map
+ * holds itself. Chunks with the same value in every cell, most commonly empty ones, are left out of the file and
+ * recorded in the chunk directory instead.
+ */
+public class GridMapWriter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 32;
+
+    private final int chunkShift;
+
+    /**
+     * Creates a writer with the default chunk size
+     */
+    public GridMapWriter() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a writer
+     *
+     * @param chunkSize The width and height of a chunk, in tiles. Must be a power of two
+     */
+    public GridMapWriter(int chunkSize) {
+        if (Integer.bitCount(chunkSize) != 1) {
+            throw new IllegalArgumentException("Chunk size must be a power of two");
+        }
+        chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+        if (chunkShift < MIN_CHUNK_SHIFT || chunkShift > MAX_CHUNK_SHIFT) {
+            throw new IllegalArgumentException("Chunk size must be between " + (1 << MIN_CHUNK_SHIFT) +
+                    " and " + (1 << MAX_CHUNK_SHIFT));
+        }
+    }
+
+    /**
+     * Writes a map, replacing the file if it exists
+     *
+     * @param map  The map to write
+     * @param path The file to write to
+     * @throws IOException              If the file could not be written
+     * @throws IllegalArgumentException If a plane of the map holds a value that doesn't fit in a byte, or the map
+     *                                  has too many chunks to be opened again
+     */
+    public void write(GridMap map, Path path) throws IOException {
+        int chunkSize = 1 << chunkShift;
+        int chunksX = chunkCount(map.getWidth(), chunkShift);
+        int chunksY = chunkCount(map.getHeight(), chunkShift);
+        long chunkCount = (long) chunksX * chunksY;
+        //  The readers index chunks with ints
+        if (chunkCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A " + map.getWidth() + "x" + map.getHeight() + " map has too many " +
+                    chunkSize + " tile chunks, use a larger chunk size");
+        }
+        long directoryOffset = HEADER_SIZE;
+        long dataOffset = alignUp(directoryOffset + chunkCount * Long.BYTES, DATA_ALIGNMENT);
+        int planeSize = chunkSize * chunkSize;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            //  The directory is written a block at a time, in the order the chunks are visited
+            ByteBuffer directory = ByteBuffer.allocate(Long.BYTES * (int) Math.min(chunkCount, DIRECTORY_BLOCK_ENTRIES))
+                    .order(BYTE_ORDER);
+            long directoryPosition = directoryOffset;
+            ByteBuffer chunk = ByteBuffer.allocate(PLANE_COUNT * planeSize);
+            long offset = dataOffset;
+            int storedChunks = 0;
+            for (int chunkY = 0; chunkY < chunksY; chunkY++) {
+                for (int chunkX = 0; chunkX < chunksX; chunkX++) {
+                    if (!directory.hasRemaining()) {
+                        directoryPosition = writeDirectoryBlock(channel, directory, directoryPosition);
+                    }
+                    int uniformCell = fillChunk(map, chunkX << chunkShift, chunkY << chunkShift, chunk.array(),
+                            planeSize);
+                    if (uniformCell >= 0) {
+                        directory.putLong(~(long) uniformCell);
+                        continue;
+                    }
+                    directory.putLong(offset);
+                    chunk.clear();
+                    writeFully(channel, chunk, offset);
+                    offset += chunk.capacity();
+                    storedChunks++;
+                }
+            }
+            writeDirectoryBlock(channel, directory, directoryPosition);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+            header.putInt(MAGIC_OFFSET, MAGIC);
+            header.putShort(VERSION_OFFSET, VERSION);
+            header.putShort(CHUNK_SHIFT_OFFSET, (short) chunkShift);
+            header.putInt(WIDTH_OFFSET, map.getWidth());
+            header.putInt(HEIGHT_OFFSET, map.getHeight());
+            header.putInt(CHUNKS_X_OFFSET, chunksX);
+            header.putInt(CHUNKS_Y_OFFSET, chunksY);
+            header.putDouble(SPAWN_X_OFFSET, map.getSpawnX());
+            header.putDouble(SPAWN_Y_OFFSET, map.getSpawnY());
+            header.putDouble(SPAWN_ANGLE_OFFSET, map.getSpawnAngle());
+            header.putLong(DIRECTORY_OFFSET_OFFSET, directoryOffset);
+            header.putInt(STORED_CHUNKS_OFFSET, storedChunks);
+            writeFully(channel, header, 0);
+            //  Pad out to the data even if every chunk was empty, so the file is as long as its directory says
+            if (channel.size() < dataOffset) {
+                writeFully(channel, ByteBuffer.allocate(1), dataOffset - 1);
+            }
+        }
+    }
+
+    /**
+     * Copies a chunk of the map into its planes
+     *
+     * @return The packed value of every cell if they are all the same, or -1 if the chunk needs to be stored
+     */
+    private int fillChunk(GridMap map, int xStart, int yStart, byte[] chunk, int planeSize) {
+        int chunkSize = 1 << chunkShift;
+        int xEnd = Math.min(xStart + chunkSize, map.getWidth());
+        int yEnd = Math.min(yStart + chunkSize, map.getHeight());
+        int firstCell = packCell(map.getTile(xStart, yStart), map.getMaterial(xStart, yStart),
+                map.getElevation(xStart, yStart));
+        boolean uniform = true;
+        for (int y = yStart; y < yEnd; y++) {
+            int row = (y - yStart) << chunkShift;
+            for (int x = xStart; x < xEnd; x++) {
+                int index = row + x - xStart;
+                int tile = checkValue(map.getTile(x, y), "Tile", x, y);
+                int material = checkValue(map.getMaterial(x, y), "Material", x, y);
+                int elevation = checkValue(map.getElevation(x, y), "Elevation", x, y);
+                chunk[TILE_PLANE * planeSize + index] = (byte) tile;
+                chunk[MATERIAL_PLANE * planeSize + index] = (byte) material;
+                chunk[ELEVATION_PLANE * planeSize + index] = (byte) elevation;
+                uniform &= packCell(tile, material, elevation) == firstCell;
+            }
+            //  Zero the padding past the right edge of the map
+            for (int plane = 0; plane < PLANE_COUNT; plane++) {
+                int padStart = plane * planeSize + row + xEnd - xStart;
+                for (int i = padStart; i < plane * planeSize + row + chunkSize; i++) {
+                    chunk[i] = 0;
+                }
+            }
+        }
+        //  Zero the padding past the bottom edge of the map
+        for (int plane = 0; plane < PLANE_COUNT; plane++) {
+            for (int i = plane * planeSize + ((yEnd - yStart) << chunkShift); i < (plane + 1) * planeSize; i++) {
+                chunk[i] = 0;
+            }
+        }
+        return uniform ? firstCell : -1;
+    }
+
+    private static int checkValue(int value, String plane, int x, int y) {
+        if (value < 0 || value > MAX_VALUE) {
+            throw new IllegalArgumentException(plane + " " + value + " at " + x + ", " + y + " is out of range");
+        }
+        return value;
+    }
+
+    /**
+     * Writes the entries put in the directory buffer so far and empties it
+     *
+     * @return The position to write the next block at
+     */
+    private static long writeDirectoryBlock(FileChannel channel, ByteBuffer directory, long position)
+            throws IOException {
+        directory.flip();
+        int size = directory.limit();
+        writeFully(channel, directory, position);
+        directory.clear();
+        return position + size;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static long alignUp(long value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+}
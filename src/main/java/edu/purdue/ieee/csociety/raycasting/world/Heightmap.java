@@ -0,0 +1,220 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+import edu.purdue.ieee.csociety.raycasting.util.ColorUtils;
+
+/**
+ * A square, wrapping terrain of heights and colors, with precomputed mip levels, for voxel terrain rendering.
+ * <p>
+ * Every texel is one int: the packed {@link ColorUtils} color of the ground, with the height, [0, 255], in place of
+ * the alpha, so a renderer reads both with a single fetch. Each level halves the size of the one below it, averaging
+ * 2x2 blocks of heights and colors, down to 1x1, so distant terrain can be sampled as coarsely as it is stepped
+ * through without aliasing.
+ */
+public class Heightmap {
+
+    /**
+     * Height of the surface of lakes, and heights above which the ground is drawn as sand, grass, rock and snow
+     */
+    private static final int WATER_HEIGHT = 60;
+    private static final int SAND_HEIGHT = 64;
+    private static final int GRASS_HEIGHT = 72;
+    private static final int ROCK_HEIGHT = 150;
+    private static final int SNOW_HEIGHT = 200;
+
+    /**
+     * log2 of the width and height of level 0
+     */
+    private final int sizeShift;
+    private final int[][] levels;
+
+    /**
+     * Creates a flat heightmap at height 0, in black
+     *
+     * @param size The width and height, in texels. Must be a power of two
+     */
+    public Heightmap(int size) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Heightmap size must be a power of two");
+        }
+        sizeShift = Integer.numberOfTrailingZeros(size);
+        levels = new int[sizeShift + 1][];
+        for (int level = 0; level <= sizeShift; level++) {
+            levels[level] = new int[1 << 2 * (sizeShift - level)];
+        }
+    }
+
+    /**
+     * Creates rolling hills and mountains around lakes, from several octaves of value noise
+     *
+     * @param size The width and height, in texels. Must be a power of two
+     * @param seed The seed of the noise
+     * @return The heightmap
+     */
+    public static Heightmap generate(int size, long seed) {
+        Heightmap heightmap = new Heightmap(size);
+        int[] heights = new int[size * size];
+        int[] raw = new int[size * size];
+        int salt = (int) (seed ^ seed >>> 32);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                //  Octaves from a quarter of the map down to 4 texels across, halving in amplitude
+                double sum = 0;
+                double amplitude = 1;
+                double total = 0;
+                for (int period = size / 4; period >= 4; period /= 2, amplitude /= 2) {
+                    sum += smoothNoise(x, y, period, size, salt + period) * amplitude;
+                    total += amplitude;
+                }
+                //  Square the noise so valleys are broad and peaks are sharp
+                double height = sum / total;
+                raw[y * size + x] = (int) Math.min(255, height * height * 320);
+                //  Lakes fill everything below their surface flat
+                heights[y * size + x] = Math.max(raw[y * size + x], WATER_HEIGHT);
+            }
+        }
+        int[] texels = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int height = heights[y * size + x];
+                //  Light from the -x side: brighter on slopes facing it. Colors follow the ground under the water
+                int slope = heights[y * size + (x - 1 & size - 1)] - height;
+                int shade = Math.max(64, Math.min(255, 192 - slope * 16));
+                int color = groundColor(raw[y * size + x]);
+                texels[y * size + x] = ColorUtils.color(
+                        ColorUtils.getRed(color) * shade / 255,
+                        ColorUtils.getGreen(color) * shade / 255,
+                        ColorUtils.getBlue(color) * shade / 255,
+                        height);
+            }
+        }
+        heightmap.setTexels(texels);
+        return heightmap;
+    }
+
+    private static int groundColor(int height) {
+        if (height < WATER_HEIGHT) {
+            return ColorUtils.color(40, 90, 200);
+        } else if (height < GRASS_HEIGHT) {
+            return ColorUtils.color(230, 210, 150);
+        } else if (height < ROCK_HEIGHT) {
+            return ColorUtils.color(70, 170 - (height - GRASS_HEIGHT), 60);
+        } else if (height < SNOW_HEIGHT) {
+            return ColorUtils.color(140, 130, 120);
+        }
+        return ColorUtils.color(250, 250, 250);
+    }
+
+    /**
+     * Gets value noise at a point, interpolated smoothly between random values on a wrapping lattice
+     *
+     * @return The noise, [0, 1)
+     */
+    private static double smoothNoise(int x, int y, int period, int size, int salt) {
+        int cells = size / period;
+        int cellX = x / period;
+        int cellY = y / period;
+        double fractionX = smooth((x % period) / (double) period);
+        double fractionY = smooth((y % period) / (double) period);
+        double top = lerp(lattice(cellX, cellY, cells, salt), lattice(cellX + 1, cellY, cells, salt), fractionX);
+        double bottom = lerp(lattice(cellX, cellY + 1, cells, salt), lattice(cellX + 1, cellY + 1, cells, salt),
+                fractionX);
+        return lerp(top, bottom, fractionY);
+    }
+
+    private static double smooth(double t) {
+        return t * t * (3 - 2 * t);
+    }
+
+    private static double lerp(double a, double b, double t) {
+        return a + (b - a) * t;
+    }
+
+    private static double lattice(int x, int y, int cells, int salt) {
+        int hash = (x % cells) * 0x27D4EB2D ^ (y % cells) * 0x165667B1 ^ salt * 0x61C88647;
+        hash ^= hash >>> 15;
+        hash *= 0x2C1B3C6D;
+        hash ^= hash >>> 12;
+        return (hash & 0xFFFFFF) / (double) (1 << 24);
+    }
+
+    /**
+     * Replaces the terrain and regenerates its smaller levels
+     *
+     * @param texels The texels of level 0, size * size colors with heights in place of alpha, row-major
+     */
+    public void setTexels(int[] texels) {
+        int[] base = levels[0];
+        if (texels.length < base.length) {
+            throw new IllegalArgumentException("Heightmap has fewer than " + base.length + " texels");
+        }
+        System.arraycopy(texels, 0, base, 0, base.length);
+        for (int level = 1; level <= sizeShift; level++) {
+            int[] source = levels[level - 1];
+            int[] target = levels[level];
+            int sourceShift = sizeShift - level + 1;
+            int targetShift = sizeShift - level;
+            for (int y = 0; y < 1 << targetShift; y++) {
+                for (int x = 0; x < 1 << targetShift; x++) {
+                    int texel = (y << 1 + sourceShift) + (x << 1);
+                    target[(y << targetShift) + x] = average(source[texel], source[texel + 1],
+                            source[texel + (1 << sourceShift)], source[texel + (1 << sourceShift) + 1]);
+                }
+            }
+        }
+    }
+
+    private static int average(int a, int b, int c, int d) {
+        //  Every channel, height included, is averaged the same way
+        return ColorUtils.color(
+                (ColorUtils.getRed(a) + ColorUtils.getRed(b) + ColorUtils.getRed(c) + ColorUtils.getRed(d) + 2) >> 2,
+                (ColorUtils.getGreen(a) + ColorUtils.getGreen(b) + ColorUtils.getGreen(c) +
+                        ColorUtils.getGreen(d) + 2) >> 2,
+                (ColorUtils.getBlue(a) + ColorUtils.getBlue(b) + ColorUtils.getBlue(c) + ColorUtils.getBlue(d) +
+                        2) >> 2,
+                (ColorUtils.getAlpha(a) + ColorUtils.getAlpha(b) + ColorUtils.getAlpha(c) +
+                        ColorUtils.getAlpha(d) + 2) >> 2);
+    }
+
+    public int getSize() {
+        return 1 << sizeShift;
+    }
+
+    public int getLevelCount() {
+        return sizeShift + 1;
+    }
+
+    /**
+     * Gets the texels of a level, for renderers to sample directly. Must not be modified
+     *
+     * @param level The level, [0, levelCount)
+     * @return The texels, row-major, 2^(levelCount - 1 - level) on a side
+     */
+    public int[] getLevel(int level) {
+        return levels[level];
+    }
+
+    /**
+     * Gets the height of the terrain at a texel of level 0, wrapping around
+     *
+     * @param x The x coordinate, in texels
+     * @param y The y coordinate, in texels
+     * @return The height, [0, 255]
+     */
+    public int getHeight(int x, int y) {
+        int mask = (1 << sizeShift) - 1;
+        return ColorUtils.getAlpha(levels[0][((y & mask) << sizeShift) + (x & mask)]);
+    }
+
+    /**
+     * Gets the memory taken up by every level
+     *
+     * @return The size, in bytes
+     */
+    public long getSizeBytes() {
+        long size = 0;
+        for (int[] level : levels) {
+            size += (long) level.length * Integer.BYTES;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,89 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+import edu.purdue.ieee.csociety.raycasting.Main;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Converts text maps to the binary map format, or generates large maps for testing.
+ * <p>
+ * Usage: {@code LevelConverter <input.txt> <output.map> [chunkSize]} or
+ * {@code LevelConverter --generate|--generate-sparse <width> <height> <output.map> [chunkSize]}.
+ * <p>
+ * Each line of a text map is a row of tiles. A space or {@code .} is empty space, {@code 0}-{@code 9} and
+ * {@code A}-{@code Z} are tile types 0-35, and {@code @} is empty space where the camera spawns, facing +x.
+ * Rows shorter than the longest are padded with empty space.
+ */
+public class LevelConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 4 && (args[0].equals("--generate") || args[0].equals("--generate-sparse"))) {
+            int width = Integer.parseInt(args[1]);
+            int height = Integer.parseInt(args[2]);
+            Path output = Paths.get(args[3]);
+            int chunkSize = args.length > 4 ? Integer.parseInt(args[4]) : GridMapWriter.DEFAULT_CHUNK_SIZE;
+            convert(new GeneratedGridMap(width, height, args[0].equals("--generate-sparse")), output, chunkSize);
+        } else if (args.length >= 2) {
+            Path input = Paths.get(args[0]);
+            Path output = Paths.get(args[1]);
+            int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) : GridMapWriter.DEFAULT_CHUNK_SIZE;
+            convert(readTextMap(input), output, chunkSize);
+        } else {
+            System.err.println("Usage: LevelConverter <input.txt> <output.map> [chunkSize]");
+            System.err.println("       LevelConverter --generate|--generate-sparse <width> <height> <output.map> " +
+                    "[chunkSize]");
+            System.exit(1);
+        }
+    }
+
+    private static void convert(GridMap map, Path output, int chunkSize) throws IOException {
+        long startNanos = System.nanoTime();
+        new GridMapWriter(chunkSize).write(map, output);
+        Main.LOGGER.info("Wrote {}x{} map to {} ({} bytes) in {} ms", map.getWidth(), map.getHeight(), output,
+                Files.size(output), (System.nanoTime() - startNanos) / 1_000_000L);
+    }
+
+    /**
+     * Reads a text map
+     *
+     * @param path The file to read
+     * @return The map
+     * @throws IOException If the file could not be read or contains an unknown tile
+     */
+    public static ArrayGridMap readTextMap(Path path) throws IOException {
+        List<String> lines = Files.readAllLines(path, StandardCharsets.US_ASCII);
+        //  Trailing blank lines aren't rows
+        while (!lines.isEmpty() && lines.get(lines.size() - 1).trim().isEmpty()) {
+            lines.remove(lines.size() - 1);
+        }
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, line.length());
+        }
+        if (width == 0) {
+            throw new IOException(path + " is empty");
+        }
+        ArrayGridMap map = new ArrayGridMap(width, lines.size());
+        for (int y = 0; y < lines.size(); y++) {
+            String line = lines.get(y);
+            for (int x = 0; x < line.length(); x++) {
+                char c = line.charAt(x);
+                if (c == '@') {
+                    map.setSpawn(x + 0.5, y + 0.5, 0);
+                } else if (c >= '0' && c <= '9') {
+                    map.setTile(x, y, c - '0');
+                } else if (c >= 'A' && c <= 'Z') {
+                    map.setTile(x, y, c - 'A' + 10);
+                } else if (c != ' ' && c != '.') {
+                    throw new IOException("Unknown tile '" + c + "' at " + path + ":" + (y + 1) + ":" + (x + 1));
+                }
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,182 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static edu.purdue.ieee.csociety.raycasting.world.GridMapFormat.*;
+
+/**
+ * A read-only {@link GridMap} backed by a memory-mapped file in the {@link GridMapFormat binary map format}.
+ * <p>
+ * Opening a map only reads its header and chunk directory; tiles are read straight out of the mapping, so the map
+ * never occupies the Java heap and the OS only pages in the chunks rays actually pass through. Uniform chunks, like
+ * empty ones, aren't stored at all. The mapping stays valid after the file's channel is closed and is released when
+ * the map is garbage collected. Maps are limited to the 2 GB a single mapping can address.
+ */
+public class MappedGridMap implements GridMap {
+
+    private final Path path;
+    private final MappedByteBuffer data;
+
+    private final int width;
+    private final int height;
+    private final int chunkShift;
+    private final int chunkMask;
+    private final int chunksX;
+    /**
+     * Size of one plane of a chunk, in bytes
+     */
+    private final int planeSize;
+    /**
+     * File offset of each stored chunk, row-major, or the complement of the packed cell of a uniform chunk. Copied
+     * out of the directory since it is read for every tile
+     */
+    private final int[] chunkOffsets;
+    private final int storedChunkCount;
+
+    private final double spawnX;
+    private final double spawnY;
+    private final double spawnAngle;
+
+    private MappedGridMap(Path path, MappedByteBuffer data) throws IOException {
+        this.path = path;
+        this.data = data;
+        data.order(BYTE_ORDER);
+        GridMapHeader header = new GridMapHeader(data, data.capacity(), path);
+        width = header.width;
+        height = header.height;
+        chunkShift = header.chunkShift;
+        chunkMask = (1 << chunkShift) - 1;
+        chunksX = header.chunksX;
+        planeSize = header.getPlaneSize();
+        spawnX = header.spawnX;
+        spawnY = header.spawnY;
+        spawnAngle = header.spawnAngle;
+        storedChunkCount = header.storedChunkCount;
+        //  Read the directory, checking every chunk lies within the file so reads never go out of bounds
+        ByteBuffer directoryBytes = data.duplicate().order(BYTE_ORDER);
+        directoryBytes.position((int) header.directoryOffset);
+        LongBuffer directory = directoryBytes.asLongBuffer();
+        chunkOffsets = new int[(int) header.getChunkCount()];
+        for (int i = 0; i < chunkOffsets.length; i++) {
+            long entry = directory.get(i);
+            header.checkDirectoryEntry(entry, data.capacity(), path);
+            //  Offsets fit since the file does, and complemented cells keep their low 24 bits
+            chunkOffsets[i] = (int) entry;
+        }
+    }
+
+    /**
+     * Maps a map file
+     *
+     * @param path The file to open
+     * @return The map
+     * @throws IOException If the file could not be mapped or is not a valid map
+     */
+    public static MappedGridMap open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to map (" + size + " bytes)");
+            }
+            return new MappedGridMap(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getTile(int x, int y) {
+        return getPlane(x, y, TILE_PLANE);
+    }
+
+    @Override
+    public int getMaterial(int x, int y) {
+        return getPlane(x, y, MATERIAL_PLANE);
+    }
+
+    @Override
+    public int getElevation(int x, int y) {
+        return getPlane(x, y, ELEVATION_PLANE);
+    }
+
+    private int getPlane(int x, int y, int plane) {
+        int chunkOffset = chunkOffsets[(y >> chunkShift) * chunksX + (x >> chunkShift)];
+        if (chunkOffset < 0) {
+            return unpackPlane(~chunkOffset, plane);
+        }
+        return data.get(chunkOffset + plane * planeSize + ((y & chunkMask) << chunkShift) + (x & chunkMask)) &
+                MAX_VALUE;
+    }
+
+    @Override
+    public double getSpawnX() {
+        return spawnX;
+    }
+
+    @Override
+    public double getSpawnY() {
+        return spawnY;
+    }
+
+    @Override
+    public double getSpawnAngle() {
+        return spawnAngle;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the size of a chunk
+     *
+     * @return The width and height of a chunk, in tiles
+     */
+    public int getChunkSize() {
+        return 1 << chunkShift;
+    }
+
+    /**
+     * Checks whether a chunk may have walls in it, from the chunk directory alone, so no tiles are paged in
+     *
+     * @param chunkX The x coordinate of the chunk
+     * @param chunkY The y coordinate of the chunk
+     * @return False if the chunk is empty space throughout, true if it is stored or is a wall throughout
+     */
+    boolean mayHaveWalls(int chunkX, int chunkY) {
+        int chunkOffset = chunkOffsets[chunkY * chunksX + chunkX];
+        return chunkOffset >= 0 || unpackPlane(~chunkOffset, TILE_PLANE) != 0;
+    }
+
+    /**
+     * Gets the number of chunks stored in the file, which excludes uniform chunks
+     *
+     * @return The number of stored chunks
+     */
+    public int getStoredChunkCount() {
+        return storedChunkCount;
+    }
+
+    /**
+     * Gets the size of the mapping
+     *
+     * @return The size of the file, in bytes
+     */
+    public long getMappedSize() {
+        return data.capacity();
+    }
+}
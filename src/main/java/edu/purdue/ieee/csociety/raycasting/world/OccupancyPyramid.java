@@ -0,0 +1,203 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+/**
+ * A mip hierarchy over the walls of a {@link GridMap}, recording for every block of tiles whether any of them is a
+ * wall, so a ray can cross an empty block in one step instead of one step per tile.
+ * <p>
+ * Level 0 is the map itself. Each level above it groups {@value #BLOCK_SIZE}x{@value #BLOCK_SIZE} blocks of the level
+ * below, up to a level with a single block covering the whole map. Every block holds a count of the occupied blocks
+ * (or at level 1, walls) under it rather than a single bit, so editing a tile only touches the blocks above it, and
+ * only as far up as the emptiness of a block changes.
+ * <p>
+ * The pyramid of a {@link MappedGridMap} is built from its chunk directory instead of its tiles, so building it doesn't
+ * page the whole file in. Chunks recorded as empty throughout are empty in the pyramid, and every block of any other
+ * chunk counts as full, so rays skip empty chunks but step tile by tile through stored ones.
+ */
+public class OccupancyPyramid {
+
+    /**
+     * log2 of the number of blocks of a level along each side of a block of the level above
+     */
+    public static final int LEVEL_SHIFT = 2;
+
+    public static final int BLOCK_SIZE = 1 << LEVEL_SHIFT;
+
+    /**
+     * Count of a block with every tile or block under it occupied
+     */
+    private static final byte FULL_BLOCK = BLOCK_SIZE * BLOCK_SIZE;
+
+    private final int width;
+    private final int height;
+    /**
+     * Number of levels above the map
+     */
+    private final int levelCount;
+    /**
+     * Occupancy counts of each level above the map, row-major, indexed by level - 1. Counts never exceed
+     * BLOCK_SIZE * BLOCK_SIZE, so they fit in a byte
+     */
+    private final byte[][] counts;
+    /**
+     * Width in blocks of each level above the map, indexed by level - 1
+     */
+    private final int[] levelWidths;
+
+    /**
+     * Builds the pyramid for a map
+     *
+     * @param map The map
+     */
+    public OccupancyPyramid(GridMap map) {
+        width = map.getWidth();
+        height = map.getHeight();
+        int levels = 1;
+        while (((long) BLOCK_SIZE << (levels * LEVEL_SHIFT - LEVEL_SHIFT)) < Math.max(width, height)) {
+            levels++;
+        }
+        levelCount = levels;
+        counts = new byte[levelCount][];
+        levelWidths = new int[levelCount];
+        for (int level = 1; level <= levelCount; level++) {
+            int shift = level * LEVEL_SHIFT;
+            levelWidths[level - 1] = blockCount(width, shift);
+            long size = (long) levelWidths[level - 1] * blockCount(height, shift);
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Map is too large for an occupancy pyramid");
+            }
+            counts[level - 1] = new byte[(int) size];
+        }
+        //  Count walls into level 1, or chunks into every level within a chunk, then occupied blocks into each level
+        //  above from the one below
+        int countedLevels = map instanceof MappedGridMap ? countChunks((MappedGridMap) map) : countWalls(map);
+        for (int level = countedLevels + 1; level <= levelCount; level++) {
+            byte[] below = counts[level - 2];
+            int belowWidth = levelWidths[level - 2];
+            byte[] current = counts[level - 1];
+            int currentWidth = levelWidths[level - 1];
+            int belowHeight = below.length / belowWidth;
+            for (int blockY = 0; blockY < belowHeight; blockY++) {
+                int belowRow = blockY * belowWidth;
+                int row = (blockY >> LEVEL_SHIFT) * currentWidth;
+                for (int blockX = 0; blockX < belowWidth; blockX++) {
+                    if (below[belowRow + blockX] != 0) {
+                        current[row + (blockX >> LEVEL_SHIFT)]++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the walls of every level 1 block
+     *
+     * @return The number of levels counted
+     */
+    private int countWalls(GridMap map) {
+        byte[] firstLevel = counts[0];
+        int firstLevelWidth = levelWidths[0];
+        for (int y = 0; y < height; y++) {
+            int row = (y >> LEVEL_SHIFT) * firstLevelWidth;
+            for (int x = 0; x < width; x++) {
+                if (map.getTile(x, y) != 0) {
+                    firstLevel[row + (x >> LEVEL_SHIFT)]++;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Counts every block of the levels within a chunk as full if its chunk may have walls, without reading any tiles
+     *
+     * @return The number of levels counted
+     */
+    private int countChunks(MappedGridMap map) {
+        int chunkShift = Integer.numberOfTrailingZeros(map.getChunkSize());
+        //  Chunks are never smaller than a level 1 block, so each covers whole blocks of these levels
+        int chunkLevels = Math.min(chunkShift / LEVEL_SHIFT, levelCount);
+        int chunksX = blockCount(width, chunkShift);
+        int chunksY = blockCount(height, chunkShift);
+        for (int chunkY = 0; chunkY < chunksY; chunkY++) {
+            for (int chunkX = 0; chunkX < chunksX; chunkX++) {
+                if (!map.mayHaveWalls(chunkX, chunkY)) {
+                    continue;
+                }
+                for (int level = 1; level <= chunkLevels; level++) {
+                    byte[] levelCounts = counts[level - 1];
+                    int levelWidth = levelWidths[level - 1];
+                    int blockShift = chunkShift - level * LEVEL_SHIFT;
+                    int blockXEnd = Math.min((chunkX + 1) << blockShift, levelWidth);
+                    int blockYEnd = Math.min((chunkY + 1) << blockShift, levelCounts.length / levelWidth);
+                    for (int blockY = chunkY << blockShift; blockY < blockYEnd; blockY++) {
+                        int row = blockY * levelWidth;
+                        for (int blockX = chunkX << blockShift; blockX < blockXEnd; blockX++) {
+                            levelCounts[row + blockX] = FULL_BLOCK;
+                        }
+                    }
+                }
+            }
+        }
+        return chunkLevels;
+    }
+
+    private static int blockCount(int size, int shift) {
+        return (int) (((long) size + (1L << shift) - 1) >> shift);
+    }
+
+    /**
+     * Gets the number of levels above the map
+     *
+     * @return The index of the top level, whose single block covers the whole map
+     */
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    /**
+     * Checks whether the block of a level containing a tile has no walls in it
+     *
+     * @param level The level, [1, levelCount]
+     * @param x     The x coordinate of the tile, [0, width)
+     * @param y     The y coordinate of the tile, [0, height)
+     * @return True if every tile in the block is empty
+     */
+    public boolean isEmpty(int level, int x, int y) {
+        int shift = level * LEVEL_SHIFT;
+        return counts[level - 1][(y >> shift) * levelWidths[level - 1] + (x >> shift)] == 0;
+    }
+
+    /**
+     * Updates the pyramid for a tile that has changed between empty and a wall
+     *
+     * @param x        The x coordinate of the tile
+     * @param y        The y coordinate of the tile
+     * @param occupied True if the tile became a wall, false if it became empty
+     */
+    public void setOccupied(int x, int y, boolean occupied) {
+        int delta = occupied ? 1 : -1;
+        for (int level = 1; level <= levelCount; level++) {
+            int shift = level * LEVEL_SHIFT;
+            int index = (y >> shift) * levelWidths[level - 1] + (x >> shift);
+            int count = counts[level - 1][index] + delta;
+            counts[level - 1][index] = (byte) count;
+            //  The level above only counts whether this block is empty
+            if (count != (occupied ? 1 : 0)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Gets the memory taken up by the pyramid
+     *
+     * @return The size of the counts, in bytes
+     */
+    public long getSizeBytes() {
+        long size = 0;
+        for (byte[] level : counts) {
+            size += level.length;
+        }
+        return size;
+    }
+}
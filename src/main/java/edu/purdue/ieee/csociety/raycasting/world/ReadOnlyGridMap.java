@@ -0,0 +1,64 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+/**
+ * A read-only view of another {@link GridMap}, for handing out a map that may only be edited through its owner, e.g.
+ * so anything the owner derives from the map is kept up to date
+ */
+public class ReadOnlyGridMap implements GridMap {
+
+    private final GridMap map;
+
+    /**
+     * Creates a view of a map
+     *
+     * @param map The map to view
+     */
+    public ReadOnlyGridMap(GridMap map) {
+        this.map = map;
+    }
+
+    @Override
+    public int getWidth() {
+        return map.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return map.getHeight();
+    }
+
+    @Override
+    public int getTile(int x, int y) {
+        return map.getTile(x, y);
+    }
+
+    @Override
+    public int getMaterial(int x, int y) {
+        return map.getMaterial(x, y);
+    }
+
+    @Override
+    public int getElevation(int x, int y) {
+        return map.getElevation(x, y);
+    }
+
+    @Override
+    public double getSpawnX() {
+        return map.getSpawnX();
+    }
+
+    @Override
+    public double getSpawnY() {
+        return map.getSpawnY();
+    }
+
+    @Override
+    public double getSpawnAngle() {
+        return map.getSpawnAngle();
+    }
+
+    @Override
+    public int getRevision() {
+        return map.getRevision();
+    }
+}
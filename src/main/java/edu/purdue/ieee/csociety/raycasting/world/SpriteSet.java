@@ -0,0 +1,254 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+import java.util.Arrays;
+
+/**
+ * Billboarded objects placed on a map, such as items, enemies and particles, held as parallel primitive arrays so
+ * that thousands of them can be moved every frame without creating garbage.
+ * <p>
+ * Sprites are numbered densely from 0. Removing one moves the last sprite into its place, so an index is only stable
+ * until the next removal. Arrays only grow, doubling when full.
+ * <p>
+ * Sprites are found by area through a spatial hash: a uniform grid of {@value #CELL_SIZE} tile cells, hashed into a
+ * power of two number of buckets so the grid costs nothing for empty parts of even the largest maps. The hash is
+ * rebuilt from scratch by {@link #updateIndex()}, a counting sort over the sprites, which is cheaper than tracking
+ * every move when most sprites move every frame. Not safe for concurrent use.
+ */
+public class SpriteSet {
+
+    private static final int CELL_SHIFT = 3;
+
+    public static final int CELL_SIZE = 1 << CELL_SHIFT;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int count;
+    private double[] x;
+    private double[] y;
+    private int[] textures;
+    /**
+     * Height of each sprite, relative to a wall
+     */
+    private float[] scales;
+    /**
+     * Incremented by every change, so renderers can tell when to redraw
+     */
+    private int revision;
+
+    /**
+     * Bucket of each sprite, as of the last index update
+     */
+    private int[] spriteBuckets;
+    /**
+     * Sprites sorted by bucket, and where each bucket's sprites start in that order, with one extra entry for the end
+     */
+    private int[] bucketSprites;
+    private int[] bucketStarts;
+    /**
+     * The query each bucket was last visited by, so buckets shared by several cells of a query are only read once
+     */
+    private int[] bucketVisits;
+    private int queryStamp;
+    private boolean indexValid;
+
+    public SpriteSet() {
+        x = new double[INITIAL_CAPACITY];
+        y = new double[INITIAL_CAPACITY];
+        textures = new int[INITIAL_CAPACITY];
+        scales = new float[INITIAL_CAPACITY];
+        spriteBuckets = new int[INITIAL_CAPACITY];
+        bucketSprites = new int[INITIAL_CAPACITY];
+        allocateBuckets(INITIAL_CAPACITY);
+    }
+
+    private void allocateBuckets(int bucketCount) {
+        bucketStarts = new int[bucketCount + 1];
+        bucketVisits = new int[bucketCount];
+    }
+
+    /**
+     * Adds a sprite
+     *
+     * @param x       The x position, in tiles
+     * @param y       The y position, in tiles
+     * @param texture The texture to draw it with
+     * @param scale   Its height relative to a wall, standing on the floor
+     * @return The index of the new sprite
+     */
+    public int add(double x, double y, int texture, float scale) {
+        if (count == this.x.length) {
+            int capacity = count * 2;
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            textures = Arrays.copyOf(textures, capacity);
+            scales = Arrays.copyOf(scales, capacity);
+            spriteBuckets = new int[capacity];
+            bucketSprites = new int[capacity];
+            allocateBuckets(capacity);
+        }
+        this.x[count] = x;
+        this.y[count] = y;
+        textures[count] = texture;
+        scales[count] = scale;
+        indexValid = false;
+        revision++;
+        return count++;
+    }
+
+    /**
+     * Removes a sprite, moving the last sprite into its index
+     *
+     * @param index The sprite, [0, count)
+     */
+    public void remove(int index) {
+        checkIndex(index);
+        int last = --count;
+        x[index] = x[last];
+        y[index] = y[last];
+        textures[index] = textures[last];
+        scales[index] = scales[last];
+        indexValid = false;
+        revision++;
+    }
+
+    /**
+     * Removes every sprite
+     */
+    public void clear() {
+        count = 0;
+        indexValid = false;
+        revision++;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Sprite " + index + " of " + count);
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public int getTexture(int index) {
+        return textures[index];
+    }
+
+    public float getScale(int index) {
+        return scales[index];
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    /**
+     * Moves a sprite
+     *
+     * @param index The sprite, [0, count)
+     * @param x     The new x position, in tiles
+     * @param y     The new y position, in tiles
+     */
+    public void setPosition(int index, double x, double y) {
+        this.x[index] = x;
+        this.y[index] = y;
+        indexValid = false;
+        revision++;
+    }
+
+    public void setTexture(int index, int texture) {
+        textures[index] = texture;
+        revision++;
+    }
+
+    public void setScale(int index, float scale) {
+        scales[index] = scale;
+        revision++;
+    }
+
+    private int bucket(int cellX, int cellY) {
+        int hash = cellX * 0x9E3779B1 ^ cellY * 0x85EBCA77;
+        return (hash ^ hash >>> 16) & bucketVisits.length - 1;
+    }
+
+    /**
+     * Rebuilds the spatial hash if any sprite was added, removed or moved since it was last built
+     */
+    public void updateIndex() {
+        if (indexValid) {
+            return;
+        }
+        int[] starts = bucketStarts;
+        Arrays.fill(starts, 0);
+        for (int i = 0; i < count; i++) {
+            int bucket = bucket((int) Math.floor(x[i]) >> CELL_SHIFT, (int) Math.floor(y[i]) >> CELL_SHIFT);
+            spriteBuckets[i] = bucket;
+            starts[bucket + 1]++;
+        }
+        for (int bucket = 0; bucket < bucketVisits.length; bucket++) {
+            starts[bucket + 1] += starts[bucket];
+        }
+        //  Place each sprite at the next free slot of its bucket, then shift the starts back
+        for (int i = 0; i < count; i++) {
+            bucketSprites[starts[spriteBuckets[i]]++] = i;
+        }
+        System.arraycopy(starts, 0, starts, 1, bucketVisits.length);
+        starts[0] = 0;
+        indexValid = true;
+    }
+
+    /**
+     * Finds the sprites within a rectangle, using the spatial hash. The index is updated first if needed
+     *
+     * @param minX   The left edge of the rectangle, in tiles
+     * @param minY   The top edge of the rectangle, in tiles
+     * @param maxX   The right edge of the rectangle, in tiles
+     * @param maxY   The bottom edge of the rectangle, in tiles
+     * @param result The array to write the indices of the sprites found to, at least count long
+     * @return The number of sprites found
+     */
+    public int query(double minX, double minY, double maxX, double maxY, int[] result) {
+        updateIndex();
+        int found = 0;
+        int cellMinX = (int) Math.floor(minX) >> CELL_SHIFT;
+        int cellMinY = (int) Math.floor(minY) >> CELL_SHIFT;
+        int cellMaxX = (int) Math.floor(maxX) >> CELL_SHIFT;
+        int cellMaxY = (int) Math.floor(maxY) >> CELL_SHIFT;
+        long cells = ((long) cellMaxX - cellMinX + 1) * ((long) cellMaxY - cellMinY + 1);
+        if (cells >= bucketVisits.length) {
+            //  Every bucket would be read anyway
+            for (int i = 0; i < count; i++) {
+                if (x[i] >= minX && x[i] <= maxX && y[i] >= minY && y[i] <= maxY) {
+                    result[found++] = i;
+                }
+            }
+            return found;
+        }
+        int stamp = ++queryStamp;
+        for (int cellY = cellMinY; cellY <= cellMaxY; cellY++) {
+            for (int cellX = cellMinX; cellX <= cellMaxX; cellX++) {
+                int bucket = bucket(cellX, cellY);
+                if (bucketVisits[bucket] == stamp) {
+                    continue;
+                }
+                bucketVisits[bucket] = stamp;
+                for (int slot = bucketStarts[bucket]; slot < bucketStarts[bucket + 1]; slot++) {
+                    int i = bucketSprites[slot];
+                    //  Other cells share the bucket
+                    if (x[i] >= minX && x[i] <= maxX && y[i] >= minY && y[i] <= maxY) {
+                        result[found++] = i;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+}
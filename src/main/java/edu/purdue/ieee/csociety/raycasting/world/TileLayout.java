@@ -0,0 +1,161 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+/**
+ * The order an {@link ArrayGridMap} stores its cells in.
+ * <p>
+ * Rows are the simplest, but a ray heading mostly along y lands on a different cache line at every step once a row is
+ * wider than a line, and on a different page once the map is large. The other layouts keep cells that are close in
+ * both directions close in memory, so a ray in any direction reuses the lines it has already fetched.
+ * <p>
+ * Every layout is separable: the index of a cell is the sum of an offset for its column and an offset for its row, so
+ * a map precomputes both offset tables once and finds a cell with two table lookups and an add, whatever the layout.
+ * A ray only moves along one axis per step, so one of the two lookups is always the one it just made.
+ */
+public enum TileLayout {
+
+    /**
+     * Row after row, the index being {@code y * width + x}
+     */
+    ROW_MAJOR {
+        @Override
+        int[] columnOffsets(int width, int height) {
+            int[] offsets = new int[width];
+            for (int x = 0; x < width; x++) {
+                offsets[x] = x;
+            }
+            return offsets;
+        }
+
+        @Override
+        int[] rowOffsets(int width, int height) {
+            int[] offsets = new int[height];
+            for (int y = 0; y < height; y++) {
+                offsets[y] = y * width;
+            }
+            return offsets;
+        }
+
+        @Override
+        long getSize(int width, int height) {
+            return (long) width * height;
+        }
+    },
+    /**
+     * Z-order, the index interleaving the bits of x and y, so every aligned power of two square of cells is
+     * contiguous. The map is padded out to power of two dimensions; when they differ, the extra high bits of the
+     * longer side go above the interleaved bits
+     */
+    MORTON {
+        @Override
+        int[] columnOffsets(int width, int height) {
+            return mortonOffsets(width, height, 0);
+        }
+
+        @Override
+        int[] rowOffsets(int width, int height) {
+            return mortonOffsets(height, width, 1);
+        }
+
+        @Override
+        long getSize(int width, int height) {
+            return (long) paddedSize(width) * paddedSize(height);
+        }
+    },
+    /**
+     * {@value #BRICK_SIZE}x{@value #BRICK_SIZE} bricks of cells, one 64 byte cache line of tiles each, row-major
+     * within a brick and bricks row-major across the map. The map is padded out to whole bricks
+     */
+    BRICK {
+        @Override
+        int[] columnOffsets(int width, int height) {
+            int[] offsets = new int[width];
+            for (int x = 0; x < width; x++) {
+                offsets[x] = (x >> BRICK_SHIFT << 2 * BRICK_SHIFT) + (x & BRICK_SIZE - 1);
+            }
+            return offsets;
+        }
+
+        @Override
+        int[] rowOffsets(int width, int height) {
+            int brickRowSize = bricks(width) << 2 * BRICK_SHIFT;
+            int[] offsets = new int[height];
+            for (int y = 0; y < height; y++) {
+                offsets[y] = (y >> BRICK_SHIFT) * brickRowSize + ((y & BRICK_SIZE - 1) << BRICK_SHIFT);
+            }
+            return offsets;
+        }
+
+        @Override
+        long getSize(int width, int height) {
+            return (long) bricks(width) * bricks(height) << 2 * BRICK_SHIFT;
+        }
+    };
+
+    /**
+     * log2 of the width and height of a brick
+     */
+    private static final int BRICK_SHIFT = 2;
+
+    public static final int BRICK_SIZE = 1 << BRICK_SHIFT;
+
+    /**
+     * Gets the offset each column of a map adds to the index of its cells
+     *
+     * @param width  The width of the map, in tiles
+     * @param height The height of the map, in tiles
+     * @return The offset of every column
+     */
+    abstract int[] columnOffsets(int width, int height);
+
+    /**
+     * Gets the offset each row of a map adds to the index of its cells
+     *
+     * @param width  The width of the map, in tiles
+     * @param height The height of the map, in tiles
+     * @return The offset of every row
+     */
+    abstract int[] rowOffsets(int width, int height);
+
+    /**
+     * Gets the number of cells needed to hold a map, including any padding
+     *
+     * @param width  The width of the map, in tiles
+     * @param height The height of the map, in tiles
+     * @return The number of cells
+     */
+    abstract long getSize(int width, int height);
+
+    private static int bricks(int size) {
+        return (size + BRICK_SIZE - 1) >> BRICK_SHIFT;
+    }
+
+    private static int paddedSize(int size) {
+        return size == 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    /**
+     * Spreads the bits of every coordinate along one side of a map into its share of a Morton index
+     *
+     * @param size      The length of this side, in tiles
+     * @param otherSize The length of the other side, in tiles
+     * @param bit       The bit this side's lowest bit goes to: 0 for x, 1 for y
+     * @return The offset of every coordinate
+     */
+    private static int[] mortonOffsets(int size, int otherSize, int bit) {
+        int bits = Integer.numberOfTrailingZeros(paddedSize(size));
+        int otherBits = Integer.numberOfTrailingZeros(paddedSize(otherSize));
+        int sharedBits = Math.min(bits, otherBits);
+        int sharedMask = (1 << sharedBits) - 1;
+        int[] offsets = new int[size];
+        for (int i = 0; i < size; i++) {
+            //  Interleave the bits both sides have, then put the rest of this side's above them
+            int spread = i & sharedMask;
+            spread = (spread | spread << 8) & 0x00FF00FF;
+            spread = (spread | spread << 4) & 0x0F0F0F0F;
+            spread = (spread | spread << 2) & 0x33333333;
+            spread = (spread | spread << 1) & 0x55555555;
+            offsets[i] = spread << bit | (i >> sharedBits) << 2 * sharedBits;
+        }
+        return offsets;
+    }
+}
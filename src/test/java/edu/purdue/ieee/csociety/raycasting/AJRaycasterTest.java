@@ -0,0 +1,72 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.world.ArrayGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.GeneratedGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.GridMap;
+import org.junit.Test;
+
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks {@link AJRaycaster} keeps what it derives from its map in step with edits
+ */
+public class AJRaycasterTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+    private static final int MAP_SIZE = 64;
+    private static final long SEED = 13;
+
+    @Test
+    public void mapIsHandedOutReadOnly() {
+        AJRaycaster raycaster = new AJRaycaster();
+        raycaster.setMap(new ArrayGridMap(MAP_SIZE, MAP_SIZE));
+        assertFalse(raycaster.getMap() instanceof ArrayGridMap);
+    }
+
+    @Test
+    public void editedMapSkipsOnlyEmptySpace() {
+        Random random = new Random(SEED);
+        AJRaycaster skipping = new AJRaycaster();
+        skipping.setEmptySpaceSkipping(true);
+        skipping.setMap(ArrayGridMap.copyOf(new GeneratedGridMap(MAP_SIZE, MAP_SIZE)));
+        skipping.setViewportSize(WIDTH, HEIGHT);
+        for (int round = 0; round < 10; round++) {
+            //  Knock down and put up walls inside the border, enough to empty and fill whole blocks
+            for (int edit = 0; edit < 400; edit++) {
+                int x = 1 + random.nextInt(MAP_SIZE - 2);
+                int y = 1 + random.nextInt(MAP_SIZE - 2);
+                skipping.setTile(x, y, random.nextInt(3) == 0 ? 1 + random.nextInt(8) : 0);
+            }
+            //  Every ray of a raycaster stepping through every tile of the same map must hit the same walls
+            AJRaycaster stepping = new AJRaycaster();
+            stepping.setEmptySpaceSkipping(false);
+            stepping.setMap(ArrayGridMap.copyOf(skipping.getMap()));
+            stepping.setViewportSize(WIDTH, HEIGHT);
+            for (int camera = 0; camera < 10; camera++) {
+                GridMap map = skipping.getMap();
+                double x;
+                double y;
+                do {
+                    x = 1 + random.nextDouble() * (MAP_SIZE - 2);
+                    y = 1 + random.nextDouble() * (MAP_SIZE - 2);
+                } while (map.getTile((int) x, (int) y) != 0);
+                double angle = random.nextDouble() * 2 * Math.PI;
+                skipping.setCamera(x, y, angle, skipping.getFov());
+                stepping.setCamera(x, y, angle, stepping.getFov());
+                assertArrayEquals("Round " + round + ", camera " + camera, render(stepping), render(skipping));
+            }
+        }
+    }
+
+    private static int[] render(AJRaycaster raycaster) {
+        IntBuffer pixels = IntBuffer.allocate(WIDTH * HEIGHT);
+        raycaster.startFrame();
+        raycaster.fillStrips(pixels, new int[HEIGHT], 0, WIDTH);
+        return pixels.array();
+    }
+}
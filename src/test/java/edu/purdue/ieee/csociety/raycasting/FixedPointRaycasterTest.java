@@ -0,0 +1,191 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.world.ArrayGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.GeneratedGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.GridMap;
+import org.junit.Test;
+
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Renders the same scenes with {@link FixedPointRaycaster} and {@link AJRaycaster} from a fixed set of cameras, and
+ * checks the fixed-point frames match the floating-point ones within a stated tolerance.
+ * <p>
+ * 16.16 can't match doubles exactly. Wherever a wall's height in pixels is close to a whole number the two engines can
+ * round it differently, which moves an edge by a pixel and, on textured walls, samples the column's texels a row or
+ * two apart. A ray that passes within rounding of a corner can also hit the neighboring cell. Walls very close to the
+ * camera are affected most, as their distance is only a few thousand steps of 2^-16.
+ */
+public class FixedPointRaycasterTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int MAP_SIZE = 64;
+    private static final int CAMERAS = 100;
+    private static final long SEED = 19;
+
+    /**
+     * Furthest a wall's top or bottom edge may move, in pixels
+     */
+    private static final int EDGE_TOLERANCE = 1;
+    /**
+     * Fraction of columns whose edges may move further, for rays that pass a corner and hit a different cell
+     */
+    private static final double COLUMN_TOLERANCE = 0.001;
+    /**
+     * Fraction of pixels that may differ with flat-colored walls
+     */
+    private static final double FLAT_PIXEL_TOLERANCE = 0.0001;
+    /**
+     * Fraction of pixels that may differ with textured walls
+     */
+    private static final double TEXTURED_PIXEL_TOLERANCE = 0.0015;
+
+    @Test
+    public void wallEdgesMatch() {
+        for (GridMap map : createMaps()) {
+            AJRaycaster reference = createRaycaster(new AJRaycaster(), map, null);
+            AJRaycaster fixedPoint = createRaycaster(new FixedPointRaycaster(), map, null);
+            int ceilingColor = reference.getCeilingColor();
+            int floorColor = reference.getFloorColor();
+            long columns = 0;
+            long movedColumns = 0;
+            long pixels = 0;
+            long differentPixels = 0;
+            Random random = new Random(SEED);
+            for (int camera = 0; camera < CAMERAS; camera++) {
+                placeCamera(random, map, reference, fixedPoint);
+                int[] expected = render(reference);
+                int[] actual = render(fixedPoint);
+                for (int x = 0; x < WIDTH; x++) {
+                    int topShift = Math.abs(wallTop(expected, x, ceilingColor) - wallTop(actual, x, ceilingColor));
+                    int bottomShift = Math.abs(wallBottom(expected, x, floorColor) -
+                            wallBottom(actual, x, floorColor));
+                    if (topShift > EDGE_TOLERANCE || bottomShift > EDGE_TOLERANCE) {
+                        movedColumns++;
+                    }
+                    columns++;
+                }
+                differentPixels += countDifferences(expected, actual);
+                pixels += expected.length;
+            }
+            assertTrue(movedColumns + " of " + columns + " columns have edges more than " + EDGE_TOLERANCE +
+                    " px out", movedColumns <= columns * COLUMN_TOLERANCE);
+            assertTrue(differentPixels + " of " + pixels + " pixels differ",
+                    differentPixels <= pixels * FLAT_PIXEL_TOLERANCE);
+        }
+    }
+
+    @Test
+    public void texturedWallsMatch() {
+        TextureAtlas textures = TextureAtlas.generate(64, 8);
+        for (GridMap map : createMaps()) {
+            AJRaycaster reference = createRaycaster(new AJRaycaster(), map, textures);
+            AJRaycaster fixedPoint = createRaycaster(new FixedPointRaycaster(), map, textures);
+            long pixels = 0;
+            long differentPixels = 0;
+            Random random = new Random(SEED);
+            for (int camera = 0; camera < CAMERAS; camera++) {
+                placeCamera(random, map, reference, fixedPoint);
+                int[] expected = render(reference);
+                differentPixels += countDifferences(expected, render(fixedPoint));
+                pixels += expected.length;
+            }
+            assertTrue(differentPixels + " of " + pixels + " pixels differ",
+                    differentPixels <= pixels * TEXTURED_PIXEL_TOLERANCE);
+        }
+    }
+
+    /**
+     * Creates the maps to render: the generated map, with scattered pillars and partitions, and a grid of rooms joined
+     * by doorways, with long corridors that rays graze along
+     */
+    private static GridMap[] createMaps() {
+        ArrayGridMap rooms = new ArrayGridMap(MAP_SIZE, MAP_SIZE);
+        for (int y = 0; y < MAP_SIZE; y++) {
+            for (int x = 0; x < MAP_SIZE; x++) {
+                boolean border = x == 0 || y == 0 || x == MAP_SIZE - 1 || y == MAP_SIZE - 1;
+                boolean wall = x % 8 == 0 && y % 8 != 4 || y % 8 == 0 && x % 8 != 4;
+                if (border || wall) {
+                    rooms.setTile(x, y, 1 + (x + y) % 7);
+                }
+            }
+        }
+        return new GridMap[]{ArrayGridMap.copyOf(new GeneratedGridMap(MAP_SIZE, MAP_SIZE)), rooms};
+    }
+
+    private static AJRaycaster createRaycaster(AJRaycaster raycaster, GridMap map, TextureAtlas textures) {
+        raycaster.setMap(map);
+        raycaster.setViewportSize(WIDTH, HEIGHT);
+        raycaster.setTextures(textures);
+        return raycaster;
+    }
+
+    /**
+     * Moves both raycasters to the same random open cell, facing a random way. Every fourth camera faces straight
+     * along an axis, and every other one has a wider field of view
+     */
+    private static void placeCamera(Random random, GridMap map, AJRaycaster... raycasters) {
+        double x;
+        double y;
+        do {
+            x = 1 + random.nextDouble() * (map.getWidth() - 2);
+            y = 1 + random.nextDouble() * (map.getHeight() - 2);
+        } while (map.getTile((int) x, (int) y) != 0);
+        double angle = random.nextDouble() * 2 * Math.PI;
+        if (random.nextInt(4) == 0) {
+            angle = random.nextInt(4) * Math.PI / 2;
+        }
+        double fov = Math.toRadians(random.nextBoolean() ? 66 : 90);
+        for (AJRaycaster raycaster : raycasters) {
+            raycaster.setCamera(x, y, angle, fov);
+        }
+    }
+
+    /**
+     * Renders a frame
+     *
+     * @return The pixels of the frame, column-major
+     */
+    private static int[] render(AJRaycaster raycaster) {
+        IntBuffer pixels = IntBuffer.allocate(WIDTH * HEIGHT);
+        raycaster.startFrame();
+        raycaster.fillStrips(pixels, new int[HEIGHT], 0, WIDTH);
+        return pixels.array();
+    }
+
+    /**
+     * Finds the first row of a column below the ceiling
+     */
+    private static int wallTop(int[] pixels, int x, int ceilingColor) {
+        int row = 0;
+        while (row < HEIGHT && pixels[x * HEIGHT + row] == ceilingColor) {
+            row++;
+        }
+        return row;
+    }
+
+    /**
+     * Finds the first row of a column's floor
+     */
+    private static int wallBottom(int[] pixels, int x, int floorColor) {
+        int row = HEIGHT;
+        while (row > 0 && pixels[x * HEIGHT + row - 1] == floorColor) {
+            row--;
+        }
+        return row;
+    }
+
+    private static long countDifferences(int[] expected, int[] actual) {
+        long differences = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i]) {
+                differences++;
+            }
+        }
+        return differences;
+    }
+}
@@ -0,0 +1,140 @@
+package edu.purdue.ieee.csociety.raycasting;
+
+import edu.purdue.ieee.csociety.raycasting.world.ArrayGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.GeneratedGridMap;
+import edu.purdue.ieee.csociety.raycasting.world.SpriteSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Checks a {@link StripFiller} fills the same pixels with workers as it does serially
+ */
+public class StripFillerTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int MAP_SIZE = 64;
+    private static final int WORKERS = 4;
+    private static final long SEED = 1;
+    /**
+     * Written to the output before filling, so clean columns left untouched compare equal and ones written by
+     * mistake don't
+     */
+    private static final int UNTOUCHED = 0x12345678;
+
+    private AJRaycaster raycaster;
+    private StripFiller serial;
+    private StripFiller parallel;
+
+    @Before
+    public void setUp() {
+        raycaster = new AJRaycaster();
+        raycaster.setMap(ArrayGridMap.copyOf(new GeneratedGridMap(MAP_SIZE, MAP_SIZE)));
+        raycaster.setTextures(TextureAtlas.generate(64, 16));
+        raycaster.setFloorTexture(2);
+        raycaster.setCeilingTexture(7);
+        Random random = new Random(SEED);
+        SpriteSet sprites = new SpriteSet();
+        while (sprites.getCount() < 50) {
+            int x = random.nextInt(MAP_SIZE);
+            int y = random.nextInt(MAP_SIZE);
+            if (raycaster.getTile(x, y) == 0) {
+                sprites.add(x + 0.5, y + 0.5, random.nextInt(8), 0.5F + random.nextFloat() / 2);
+            }
+        }
+        raycaster.setSprites(sprites, TextureAtlas.generateSprites(64, 8));
+        raycaster.setViewportSize(WIDTH, HEIGHT);
+        serial = new StripFiller(raycaster);
+        serial.setViewportSize(WIDTH, HEIGHT);
+        parallel = new StripFiller(raycaster);
+        parallel.setWorkerCount(WORKERS);
+        parallel.setViewportSize(WIDTH, HEIGHT);
+    }
+
+    @After
+    public void tearDown() {
+        parallel.shutdown();
+    }
+
+    @Test
+    public void dirtyRangesMatchSerial() {
+        Random random = new Random(SEED);
+        DirtyColumns dirty = new DirtyColumns();
+        dirty.setWidth(WIDTH);
+        for (int frame = 0; frame < 50; frame++) {
+            moveCamera(random);
+            markRandomRanges(random, dirty, frame);
+            int[] expected = fill(serial, dirty);
+            int[] actual = fill(parallel, dirty);
+            assertArrayEquals("Frame " + frame, expected, actual);
+        }
+    }
+
+    @Test
+    public void indexedDirtyRangesMatchSerial() {
+        raycaster.setIndexedColor(true);
+        Random random = new Random(SEED);
+        DirtyColumns dirty = new DirtyColumns();
+        dirty.setWidth(WIDTH);
+        for (int frame = 0; frame < 50; frame++) {
+            moveCamera(random);
+            markRandomRanges(random, dirty, frame);
+            byte[] expected = fillIndexed(serial, dirty);
+            byte[] actual = fillIndexed(parallel, dirty);
+            assertArrayEquals("Frame " + frame, expected, actual);
+        }
+    }
+
+    private void moveCamera(Random random) {
+        double x;
+        double y;
+        do {
+            x = 1 + random.nextDouble() * (MAP_SIZE - 2);
+            y = 1 + random.nextDouble() * (MAP_SIZE - 2);
+        } while (raycaster.getTile((int) x, (int) y) != 0);
+        raycaster.setCamera(x, y, random.nextDouble() * 2 * Math.PI, raycaster.getFov());
+    }
+
+    /**
+     * Marks a few random ranges dirty, including single columns and ranges that run over slice boundaries, and every
+     * so often none or all of them
+     */
+    private static void markRandomRanges(Random random, DirtyColumns dirty, int frame) {
+        dirty.clear();
+        if (frame % 10 == 9) {
+            dirty.markAllDirty();
+            return;
+        }
+        int ranges = frame % 10 == 8 ? 0 : 1 + random.nextInt(8);
+        for (int i = 0; i < ranges; i++) {
+            int xStart = random.nextInt(WIDTH);
+            dirty.markDirty(xStart, xStart + 1 + random.nextInt(random.nextBoolean() ? 2 : WIDTH / 3));
+        }
+    }
+
+    private int[] fill(StripFiller filler, DirtyColumns dirty) {
+        IntBuffer pixels = IntBuffer.allocate(WIDTH * HEIGHT);
+        Arrays.fill(pixels.array(), UNTOUCHED);
+        filler.startFrame(0);
+        raycaster.startFrame();
+        filler.fill(pixels, dirty);
+        return pixels.array();
+    }
+
+    private byte[] fillIndexed(StripFiller filler, DirtyColumns dirty) {
+        ByteBuffer indices = ByteBuffer.allocate(WIDTH * HEIGHT);
+        Arrays.fill(indices.array(), (byte) UNTOUCHED);
+        filler.startFrame(0);
+        raycaster.startFrame();
+        filler.fill(indices, dirty);
+        return indices.array();
+    }
+}
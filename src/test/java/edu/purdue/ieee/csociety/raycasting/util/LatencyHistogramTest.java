@@ -0,0 +1,85 @@
+package edu.purdue.ieee.csociety.raycasting.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link LatencyHistogram} percentiles against the exact percentiles of the recorded samples
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Relative error of values large enough to share buckets, one sub-bucket's share of a power of two
+     */
+    private static final double RELATIVE_ERROR = 1 / 64D;
+    private static final double[] PERCENTILES = {0, 1, 10, 25, 50, 75, 90, 99, 99.9, 99.99, 100};
+
+    @Test
+    public void emptyReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMean());
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 100; value >= 1; value--) {
+            histogram.record(value);
+        }
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(1, histogram.getValueAtPercentile(1));
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(99.5));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getMin());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50, histogram.getMean());
+    }
+
+    @Test
+    public void percentilesMatchSortedSamples() {
+        Random random = new Random(9);
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int round = 0; round < 3; round++) {
+            histogram.reset();
+            //  Spread over ns to seconds, as frame and pacing times are
+            long[] samples = new long[10_000 + round * 7];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = (long) Math.pow(2, random.nextDouble() * 32);
+                histogram.record(samples[i]);
+            }
+            Arrays.sort(samples);
+            assertEquals(samples.length, histogram.getTotalCount());
+            assertEquals(samples[0], histogram.getMin());
+            assertEquals(samples[samples.length - 1], histogram.getMax());
+            for (double percentile : PERCENTILES) {
+                long exact = samples[(int) Math.max(0, Math.ceil(percentile / 100 * samples.length) - 1)];
+                long reported = histogram.getValueAtPercentile(percentile);
+                String message = "p" + percentile + " of round " + round + ": exact " + exact + ", reported " +
+                        reported;
+                assertTrue(message, reported >= exact);
+                assertTrue(message, reported <= exact + (long) (exact * RELATIVE_ERROR));
+                assertTrue(message, reported <= histogram.getMax());
+            }
+        }
+    }
+
+    @Test
+    public void negativeValuesCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(10);
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(10, histogram.getValueAtPercentile(100));
+    }
+}
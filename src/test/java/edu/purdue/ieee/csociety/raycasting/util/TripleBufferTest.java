@@ -0,0 +1,66 @@
+package edu.purdue.ieee.csociety.raycasting.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks a {@link TripleBuffer} hands items from a producer thread to a consumer thread without repeating or tearing
+ * them, and accounts for every item
+ */
+public class TripleBufferTest {
+
+    private static final long ITEMS = 1_000_000;
+
+    @Test
+    public void nothingPublishedIsStale() {
+        TripleBuffer<long[]> buffer = new TripleBuffer<>(new long[2], new long[2], new long[2]);
+        assertFalse(buffer.acquire());
+        assertEquals(1, buffer.getStaleCount());
+    }
+
+    @Test(timeout = 60_000)
+    public void itemsAreAcquiredOnceOrDropped() throws InterruptedException {
+        //  Each item holds a sequence number and its negation, written apart, so an item written while the consumer
+        //  reads it shows up as a mismatch
+        TripleBuffer<long[]> buffer = new TripleBuffer<>(new long[2], new long[2], new long[2]);
+        AtomicReference<Throwable> producerFailure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                long[] item = buffer.getBack();
+                for (long sequence = 1; sequence <= ITEMS; sequence++) {
+                    item[0] = sequence;
+                    item[1] = -sequence;
+                    item = buffer.publish();
+                }
+            } catch (Throwable t) {
+                producerFailure.set(t);
+            }
+        }, "producer");
+        producer.start();
+        long lastSequence = 0;
+        long freshAcquires = 0;
+        while (lastSequence < ITEMS) {
+            if (!buffer.acquire()) {
+                continue;
+            }
+            freshAcquires++;
+            long[] item = buffer.getFront();
+            long sequence = item[0];
+            //  Strictly increasing means nothing is handed out twice, including the initial middle item
+            assertTrue("Acquired " + sequence + " after " + lastSequence, sequence > lastSequence);
+            assertEquals("Item " + sequence + " was torn", -sequence, item[1]);
+            lastSequence = sequence;
+        }
+        producer.join();
+        assertNull(producerFailure.get());
+        assertEquals(ITEMS, buffer.getPublishedCount());
+        assertEquals(freshAcquires, buffer.getAcquiredCount() - buffer.getStaleCount());
+        assertEquals(buffer.getPublishedCount(), freshAcquires + buffer.getDroppedCount());
+    }
+}
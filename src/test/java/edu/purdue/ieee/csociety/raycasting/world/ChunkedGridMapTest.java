@@ -0,0 +1,129 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which chunks a {@link ChunkedGridMap} evicts once its cache is over budget
+ */
+public class ChunkedGridMapTest {
+
+    private static final int SIZE = 64;
+    private static final int CHUNK_SIZE = 4;
+    /**
+     * Size of a loaded chunk: a byte per cell of each of the three planes
+     */
+    private static final int CHUNK_BYTES = 3 * CHUNK_SIZE * CHUNK_SIZE;
+    /**
+     * Longer than a tick of the clock chunks are stamped with, so chunks used either side of a wait differ in age
+     */
+    private static final long TICK_WAIT_MILLIS = 60;
+    private static final long LOAD_TIMEOUT_NANOS = 10_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+
+    @Before
+    public void setUp() throws IOException {
+        //  Every chunk varies, so all of them are stored, and no tile is empty, so a tile reads as empty only when its
+        //  chunk isn't resident
+        ArrayGridMap map = new ArrayGridMap(SIZE, SIZE);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                map.setTile(x, y, 1 + ((x ^ y) & 7));
+            }
+        }
+        path = folder.newFile("stored.map").toPath();
+        new GridMapWriter(CHUNK_SIZE).write(map, path);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException, InterruptedException {
+        try (ChunkedGridMap map = ChunkedGridMap.open(path, 3 * CHUNK_BYTES)) {
+            int[] a = chunk(0);
+            int[] b = chunk(1);
+            int[] c = chunk(2);
+            int[] d = chunk(3);
+            load(map, a, 1);
+            Thread.sleep(TICK_WAIT_MILLIS);
+            load(map, b, 2);
+            Thread.sleep(TICK_WAIT_MILLIS);
+            load(map, c, 3);
+            Thread.sleep(TICK_WAIT_MILLIS);
+            //  Using A again leaves B and C the least recently used
+            assertResident(map, a);
+            Thread.sleep(TICK_WAIT_MILLIS);
+            //  A fourth chunk puts the cache over budget, and freeing 10% of it takes two chunks
+            load(map, d, 4);
+            awaitEvictions(map, 2);
+            assertEquals(2 * CHUNK_BYTES, map.getResidentBytes());
+            assertResident(map, a);
+            assertResident(map, d);
+            assertEquals(0, map.getTile(b[0], b[1]));
+            assertEquals(0, map.getTile(c[0], c[1]));
+        }
+    }
+
+    @Test
+    public void neverEvictsChunksInUse() throws IOException, InterruptedException {
+        //  Too small for even one chunk
+        try (ChunkedGridMap map = ChunkedGridMap.open(path, 1)) {
+            int[] a = chunk(0);
+            int[] b = chunk(1);
+            //  A chunk is used in the tick it is loaded in, so it stays even though it is over budget
+            load(map, a, 1);
+            assertEquals(0, map.getEvictedChunkCount());
+            assertResident(map, a);
+            Thread.sleep(TICK_WAIT_MILLIS);
+            //  Once a tick has passed it is the one evicted to make room for the next
+            load(map, b, 2);
+            awaitEvictions(map, 1);
+            assertEquals(CHUNK_BYTES, map.getResidentBytes());
+            assertResident(map, b);
+            assertEquals(0, map.getTile(a[0], a[1]));
+        }
+    }
+
+    /**
+     * Gets the position of a tile of a chunk along the top of the map
+     */
+    private static int[] chunk(int chunkX) {
+        return new int[]{chunkX * CHUNK_SIZE, 0};
+    }
+
+    /**
+     * Requests a chunk and waits for it to be loaded
+     */
+    private static void load(ChunkedGridMap map, int[] tile, int loadedChunks) throws InterruptedException {
+        assertEquals(0, map.getTile(tile[0], tile[1]));
+        long deadline = System.nanoTime() + LOAD_TIMEOUT_NANOS;
+        while (map.getLoadedChunkCount() < loadedChunks) {
+            assertTrue("Timed out loading chunks", deadline - System.nanoTime() > 0);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void awaitEvictions(ChunkedGridMap map, int evictedChunks) throws InterruptedException {
+        long deadline = System.nanoTime() + LOAD_TIMEOUT_NANOS;
+        while (map.getEvictedChunkCount() < evictedChunks) {
+            assertTrue("Timed out evicting chunks", deadline - System.nanoTime() > 0);
+            Thread.sleep(1);
+        }
+        assertEquals(evictedChunks, map.getEvictedChunkCount());
+    }
+
+    private static void assertResident(ChunkedGridMap map, int[] tile) {
+        assertNotEquals(0, map.getTile(tile[0], tile[1]));
+    }
+}
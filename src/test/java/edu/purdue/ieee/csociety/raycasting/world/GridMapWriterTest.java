@@ -0,0 +1,116 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks maps written by {@link GridMapWriter} read back the same through {@link MappedGridMap} and
+ * {@link ChunkedGridMap}
+ */
+public class GridMapWriterTest {
+
+    /**
+     * Size of the test map, not a multiple of any chunk size so edge chunks are padded, and with more 4 tile chunks
+     * than a block of the chunk directory holds
+     */
+    private static final int WIDTH = 600;
+    private static final int HEIGHT = 400;
+    private static final long SEED = 11;
+    private static final long LOAD_TIMEOUT_NANOS = 10_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mapsRoundTrip() throws IOException, InterruptedException {
+        ArrayGridMap map = createMap(new Random(SEED));
+        for (int chunkSize : new int[]{4, 16, 32}) {
+            Path path = folder.newFile("roundtrip" + chunkSize + ".map").toPath();
+            new GridMapWriter(chunkSize).write(map, path);
+            MappedGridMap mapped = MappedGridMap.open(path);
+            int chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+            int chunkCount = GridMapFormat.chunkCount(WIDTH, chunkShift) * GridMapFormat.chunkCount(HEIGHT, chunkShift);
+            //  Both kinds of chunk must have been written for the test to cover them
+            assertTrue(mapped.getStoredChunkCount() > 0);
+            assertTrue(mapped.getStoredChunkCount() < chunkCount);
+            assertSameMap(chunkSize + " tile chunks, mapped", map, mapped);
+            try (ChunkedGridMap chunked = ChunkedGridMap.open(path, Long.MAX_VALUE)) {
+                //  Request every stored chunk, then wait for the loader to bring them all in
+                assertSameSize(map, chunked);
+                for (int y = 0; y < HEIGHT; y++) {
+                    for (int x = 0; x < WIDTH; x++) {
+                        chunked.getTile(x, y);
+                    }
+                }
+                long deadline = System.nanoTime() + LOAD_TIMEOUT_NANOS;
+                while (chunked.getLoadedChunkCount() < mapped.getStoredChunkCount()) {
+                    assertTrue("Timed out loading chunks", deadline - System.nanoTime() > 0);
+                    Thread.sleep(1);
+                }
+                assertSameMap(chunkSize + " tile chunks, streamed", map, chunked);
+            }
+        }
+    }
+
+    private static void assertSameSize(GridMap expected, GridMap actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+    }
+
+    private static void assertSameMap(String message, GridMap expected, GridMap actual) {
+        assertSameSize(expected, actual);
+        assertEquals(expected.getSpawnX(), actual.getSpawnX(), 0);
+        assertEquals(expected.getSpawnY(), actual.getSpawnY(), 0);
+        assertEquals(expected.getSpawnAngle(), actual.getSpawnAngle(), 0);
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                String cell = message + " at " + x + ", " + y;
+                assertEquals(cell, expected.getTile(x, y), actual.getTile(x, y));
+                assertEquals(cell, expected.getMaterial(x, y), actual.getMaterial(x, y));
+                assertEquals(cell, expected.getElevation(x, y), actual.getElevation(x, y));
+            }
+        }
+    }
+
+    /**
+     * Creates a mostly empty map with a solid block of one value, random cells in every plane in the middle, and
+     * random cells along the right and bottom edges so the padded edge chunks are stored
+     */
+    private static ArrayGridMap createMap(Random random) {
+        ArrayGridMap map = new ArrayGridMap(WIDTH, HEIGHT);
+        //  Aligned to every chunk size, so it is written as uniform chunks that aren't empty
+        for (int y = 64; y < 128; y++) {
+            for (int x = 64; x < 128; x++) {
+                setCell(map, x, y, 3, 2, 5);
+            }
+        }
+        for (int y = 140; y < 180; y++) {
+            for (int x = 150; x < 230; x++) {
+                setCell(map, x, y, random.nextInt(256), random.nextInt(256), random.nextInt(256));
+            }
+        }
+        for (int i = 0; i < 200; i++) {
+            int x = WIDTH - 1 - random.nextInt(12);
+            int y = random.nextInt(HEIGHT);
+            setCell(map, x, y, 1 + random.nextInt(255), random.nextInt(256), random.nextInt(256));
+            setCell(map, y, HEIGHT - 1 - random.nextInt(8), 1 + random.nextInt(255), random.nextInt(256),
+                    random.nextInt(256));
+        }
+        map.setSpawn(1.5, 2.5, 0.75);
+        return map;
+    }
+
+    private static void setCell(ArrayGridMap map, int x, int y, int tile, int material, int elevation) {
+        map.setTile(x, y, tile);
+        map.setMaterial(x, y, material);
+        map.setElevation(x, y, elevation);
+    }
+}
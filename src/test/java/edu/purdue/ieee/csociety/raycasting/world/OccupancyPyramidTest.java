@@ -0,0 +1,109 @@
+package edu.purdue.ieee.csociety.raycasting.world;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link OccupancyPyramid}s against the maps they were built from
+ */
+public class OccupancyPyramidTest {
+
+    /**
+     * Size of the test maps, not a multiple of any chunk size so edge chunks are padded
+     */
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+    private static final long SEED = 13;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mappedPyramidOnlySkipsEmptyChunks() throws IOException {
+        ArrayGridMap map = createPatchyMap(new Random(SEED));
+        OccupancyPyramid exact = new OccupancyPyramid(map);
+        for (int chunkSize : new int[]{4, 16, 32}) {
+            Path path = folder.newFile("patchy" + chunkSize + ".map").toPath();
+            new GridMapWriter(chunkSize).write(map, path);
+            OccupancyPyramid fromChunks = new OccupancyPyramid(MappedGridMap.open(path));
+            assertEquals(exact.getLevelCount(), fromChunks.getLevelCount());
+            int chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+            for (int level = 1; level <= exact.getLevelCount(); level++) {
+                //  Blocks at least as large as a chunk are empty exactly when all of their chunks are
+                boolean wholeChunks = level * OccupancyPyramid.LEVEL_SHIFT >= chunkShift;
+                for (int y = 0; y < HEIGHT; y++) {
+                    for (int x = 0; x < WIDTH; x++) {
+                        String cell = "Level " + level + " at " + x + ", " + y + " with " + chunkSize + " tile chunks";
+                        if (wholeChunks) {
+                            assertEquals(cell, exact.isEmpty(level, x, y), fromChunks.isEmpty(level, x, y));
+                        } else if (fromChunks.isEmpty(level, x, y)) {
+                            assertTrue(cell, exact.isEmpty(level, x, y));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void editsMatchRebuiltPyramid() {
+        Random random = new Random(SEED);
+        ArrayGridMap map = createPatchyMap(random);
+        OccupancyPyramid pyramid = new OccupancyPyramid(map);
+        for (int round = 0; round < 20; round++) {
+            //  Edits cluster in a corner of the map, so blocks fill up and empty out again
+            for (int edit = 0; edit < 500; edit++) {
+                int x = random.nextInt(WIDTH / 4);
+                int y = random.nextInt(HEIGHT / 4);
+                int tile = random.nextInt(2) == 0 ? 0 : 1 + random.nextInt(8);
+                int oldTile = map.getTile(x, y);
+                map.setTile(x, y, tile);
+                if ((oldTile == 0) != (tile == 0)) {
+                    pyramid.setOccupied(x, y, tile != 0);
+                }
+            }
+            assertSameOccupancy(new OccupancyPyramid(map), pyramid);
+        }
+    }
+
+    private static void assertSameOccupancy(OccupancyPyramid expected, OccupancyPyramid actual) {
+        assertEquals(expected.getLevelCount(), actual.getLevelCount());
+        for (int level = 1; level <= expected.getLevelCount(); level++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    assertEquals("Level " + level + " at " + x + ", " + y, expected.isEmpty(level, x, y),
+                            actual.isEmpty(level, x, y));
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a map of open space with walls scattered through a few rectangular patches
+     */
+    static ArrayGridMap createPatchyMap(Random random) {
+        ArrayGridMap map = new ArrayGridMap(WIDTH, HEIGHT);
+        for (int patch = 0; patch < 12; patch++) {
+            int patchX = random.nextInt(WIDTH - 24);
+            int patchY = random.nextInt(HEIGHT - 24);
+            int patchWidth = 1 + random.nextInt(24);
+            int patchHeight = 1 + random.nextInt(24);
+            for (int y = patchY; y < patchY + patchHeight; y++) {
+                for (int x = patchX; x < patchX + patchWidth; x++) {
+                    if (random.nextInt(3) == 0) {
+                        map.setTile(x, y, 1 + random.nextInt(8));
+                    }
+                }
+            }
+        }
+        return map;
+    }
+}